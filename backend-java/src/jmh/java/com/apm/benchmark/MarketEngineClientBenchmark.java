@@ -0,0 +1,107 @@
+package com.apm.benchmark;
+
+import com.apm.config.MarketEngineClientConfig;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Single price lookups against a local stub engine, through the bare
+ * {@code new RestTemplate()} RealStockService used to build and through
+ * the pooled client from MarketEngineClientConfig. Run with {@code -t 16}
+ * to see the clients under concurrent requests.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(3)
+public class MarketEngineClientBenchmark {
+
+    private static final byte[] PRICE = "{\"ticker\":\"AAPL\",\"price\":185.92,\"currency\":\"USD\"}"
+            .getBytes(StandardCharsets.UTF_8);
+
+    @Param({"simple", "pooled"})
+    public String client;
+
+    private HttpServer engine;
+    private ExecutorService engineThreads;
+    private PoolingHttpClientConnectionManager connectionManager;
+    private CloseableHttpClient httpClient;
+    private RestTemplate restTemplate;
+    private String url;
+
+    @Setup
+    public void setUp() throws IOException {
+        // Without TCP_NODELAY the stub's separate header and body writes
+        // stall on delayed ACKs for about 40 ms per request
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        engineThreads = Executors.newFixedThreadPool(32);
+        engine = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        engine.setExecutor(engineThreads);
+        engine.createContext("/price/", MarketEngineClientBenchmark::price);
+        engine.start();
+        url = "http://127.0.0.1:" + engine.getAddress().getPort() + "/price/AAPL";
+
+        if ("pooled".equals(client)) {
+            MarketEngineClientConfig config = new MarketEngineClientConfig();
+            SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+            connectionManager = config.marketEngineConnectionManager(meterRegistry, 50, 20,
+                    Duration.ofSeconds(2), Duration.ofSeconds(5), Duration.ofMinutes(5));
+            httpClient = config.marketEngineHttpClient(connectionManager, Duration.ofSeconds(1),
+                    Duration.ofSeconds(5), Duration.ofSeconds(30), Duration.ofSeconds(30));
+            restTemplate = config.marketEngineRestTemplate(new RestTemplateBuilder(), httpClient);
+        } else {
+            restTemplate = new RestTemplate();
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        if (httpClient != null) {
+            httpClient.close();
+        }
+        engine.stop(0);
+        engineThreads.shutdownNow();
+    }
+
+    @Benchmark
+    public Map<?, ?> getPrice() {
+        return restTemplate.getForObject(url, Map.class);
+    }
+
+    private static void price(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, PRICE.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(PRICE);
+        }
+    }
+}
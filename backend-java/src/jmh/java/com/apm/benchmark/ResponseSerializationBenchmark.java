@@ -0,0 +1,77 @@
+package com.apm.benchmark;
+
+import com.apm.dto.AnalyticsResponse;
+import com.apm.dto.PortfolioResponse;
+import com.apm.repository.PositionSnapshotRepository;
+import com.apm.repository.TradeRepository;
+import com.apm.service.AnalyticsService;
+import com.apm.service.CostBasisMethod;
+import com.apm.service.PortfolioService;
+import com.apm.service.PositionBook;
+import com.apm.service.StockService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JSON serialization of the portfolio and analytics responses with the
+ * precomputed writers the controllers use. Run with {@code -prof gc} for
+ * bytes allocated per response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseSerializationBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    private int trades;
+
+    private PortfolioResponse portfolio;
+    private AnalyticsResponse analytics;
+    private ObjectWriter portfolioWriter;
+    private ObjectWriter analyticsWriter;
+
+    @Setup
+    public void setUp() {
+        SyntheticPortfolio synthetic = SyntheticPortfolio.of(trades);
+        TradeRepository tradeRepository = SyntheticPortfolio.noOpRepository(TradeRepository.class);
+        PositionBook positionBook = new PositionBook(tradeRepository,
+                SyntheticPortfolio.noOpRepository(PositionSnapshotRepository.class));
+        positionBook.recordAll(synthetic.getTrades());
+        StockService stockService = synthetic.stockService();
+
+        portfolio = new PortfolioService(tradeRepository, stockService, positionBook, null, null)
+                .calculatePortfolioValue(SyntheticPortfolio.USER_ID);
+        analytics = new AnalyticsService(synthetic.lotBook(CostBasisMethod.FIFO), stockService)
+                .calculatePortfolioAnalytics(SyntheticPortfolio.USER_ID);
+
+        ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+        portfolioWriter = objectMapper.writerFor(PortfolioResponse.class);
+        analyticsWriter = objectMapper.writerFor(AnalyticsResponse.class);
+    }
+
+    @Benchmark
+    public byte[] portfolio() throws JsonProcessingException {
+        return portfolioWriter.writeValueAsBytes(portfolio);
+    }
+
+    @Benchmark
+    public byte[] analytics() throws JsonProcessingException {
+        return analyticsWriter.writeValueAsBytes(analytics);
+    }
+}
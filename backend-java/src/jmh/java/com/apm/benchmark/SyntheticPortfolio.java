@@ -0,0 +1,163 @@
+package com.apm.benchmark;
+
+import com.apm.model.Trade;
+import com.apm.model.TradeType;
+import com.apm.repository.PositionSnapshotRepository;
+import com.apm.repository.TradeRepository;
+import com.apm.service.CostBasisMethod;
+import com.apm.service.LotBook;
+import com.apm.service.PositionBook;
+import com.apm.service.StockService;
+import com.apm.service.TradeQueryService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Deterministic synthetic trade history for benchmarks.
+ * Trades are spread over one ticker per 20 trades (at least 5, at most
+ * 5,000), mostly buys with two-decimal prices like the market engine
+ * returns, so a given size always produces the same portfolio.
+ */
+public final class SyntheticPortfolio {
+
+    public static final UUID USER_ID = UUID.fromString("00000000-0000-0000-0000-000000000001");
+
+    private final List<Trade> trades;
+    private final Map<String, BigDecimal> prices;
+
+    private SyntheticPortfolio(List<Trade> trades, Map<String, BigDecimal> prices) {
+        this.trades = trades;
+        this.prices = prices;
+    }
+
+    /**
+     * Build a portfolio of the given number of trades.
+     *
+     * @param tradeCount number of trades
+     * @return the portfolio
+     */
+    public static SyntheticPortfolio of(int tradeCount) {
+        Random random = new Random(tradeCount);
+        int tickerCount = Math.min(5_000, Math.max(5, tradeCount / 20));
+        LocalDateTime start = LocalDateTime.of(2020, 1, 2, 9, 30);
+
+        Map<String, BigDecimal> prices = new HashMap<>();
+        for (int i = 0; i < tickerCount; i++) {
+            prices.put(ticker(i), BigDecimal.valueOf(100 + random.nextInt(100_000), 2));
+        }
+
+        List<Trade> trades = new ArrayList<>(tradeCount);
+        for (int i = 0; i < tradeCount; i++) {
+            String ticker = ticker(i % tickerCount);
+            TradeType type = i >= tickerCount && random.nextInt(5) == 0 ? TradeType.SELL : TradeType.BUY;
+            int quantity = type == TradeType.SELL ? 1 : 1 + random.nextInt(100);
+            Trade trade = new Trade(USER_ID, ticker, type, quantity, BigDecimal.valueOf(100 + random.nextInt(100_000), 2));
+            trade.setId(i + 1L);
+            trade.setTimestamp(start.plusMinutes(i));
+            trades.add(trade);
+        }
+        return new SyntheticPortfolio(trades, prices);
+    }
+
+    public List<Trade> getTrades() {
+        return trades;
+    }
+
+    /**
+     * In-memory price source with a fixed price for every ticker in the
+     * portfolio, in the manner of MockStockService.
+     *
+     * @return the price source
+     */
+    public StockService stockService() {
+        return new StockService() {
+            @Override
+            public BigDecimal getCurrentPrice(String ticker) {
+                return prices.get(ticker.toUpperCase());
+            }
+
+            @Override
+            public Map<String, BigDecimal> getCurrentPrices(Collection<String> tickers) {
+                Map<String, BigDecimal> result = new HashMap<>();
+                for (String ticker : tickers) {
+                    BigDecimal price = prices.get(ticker.toUpperCase());
+                    if (price != null) {
+                        result.put(ticker.toUpperCase(), price);
+                    }
+                }
+                return result;
+            }
+        };
+    }
+
+    /**
+     * Lot book over this portfolio's trades, which all belong to
+     * {@link #USER_ID}. No trades are added after the first read, so later
+     * reads are served from memory.
+     *
+     * @param method cost basis method
+     * @return the lot book
+     */
+    public LotBook lotBook(CostBasisMethod method) {
+        TradeRepository tradeRepository = noOpRepository(TradeRepository.class);
+        TradeQueryService tradeQueryService = new TradeQueryService(tradeRepository, null) {
+            @Override
+            public long streamByTime(UUID userId, Consumer<Trade> consumer) {
+                trades.forEach(consumer);
+                return trades.size();
+            }
+        };
+        PositionBook positionBook = new PositionBook(tradeRepository,
+                noOpRepository(PositionSnapshotRepository.class));
+        return new LotBook(tradeQueryService, positionBook, method, 10, Duration.ofHours(1),
+                new SimpleMeterRegistry());
+    }
+
+    /**
+     * Repository that stores nothing: finders return empty results, saves
+     * return null. Enough for the position book, which only writes
+     * snapshots.
+     *
+     * @param type the repository interface
+     * @param <T>  the repository type
+     * @return a no-op implementation
+     */
+    public static <T> T noOpRepository(Class<T> type) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type},
+                (proxy, method, args) -> {
+                    Class<?> returnType = method.getReturnType();
+                    if (returnType == Optional.class) {
+                        return Optional.empty();
+                    }
+                    if (List.class.isAssignableFrom(returnType)) {
+                        return List.of();
+                    }
+                    if (returnType == boolean.class) {
+                        return false;
+                    }
+                    if (returnType == long.class) {
+                        return 0L;
+                    }
+                    if (returnType == int.class) {
+                        return 0;
+                    }
+                    return null;
+                }));
+    }
+
+    private static String ticker(int index) {
+        return "T" + index;
+    }
+}
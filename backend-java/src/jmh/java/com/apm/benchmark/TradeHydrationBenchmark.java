@@ -0,0 +1,91 @@
+package com.apm.benchmark;
+
+import com.apm.model.Trade;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Loading a user's trades as Trade entities from an in-memory H2 database,
+ * through a regular session (what the repositories do) and through a
+ * stateless session without a persistence context.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TradeHydrationBenchmark {
+
+    private static final String QUERY = "from Trade t where t.userId = :userId order by t.id";
+
+    @Param({"10", "1000", "100000"})
+    private int trades;
+
+    private SessionFactory sessionFactory;
+
+    @Setup
+    public void setUp() {
+        StandardServiceRegistry registry = new StandardServiceRegistryBuilder()
+                .applySetting("hibernate.connection.url", "jdbc:h2:mem:hydration;DB_CLOSE_DELAY=-1")
+                .applySetting("hibernate.connection.username", "sa")
+                .applySetting("hibernate.hbm2ddl.auto", "create-drop")
+                .applySetting("hibernate.jdbc.batch_size", "1000")
+                .build();
+        sessionFactory = new MetadataSources(registry)
+                .addAnnotatedClass(Trade.class)
+                .buildMetadata()
+                .buildSessionFactory();
+
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            Transaction transaction = session.beginTransaction();
+            for (Trade trade : SyntheticPortfolio.of(trades).getTrades()) {
+                trade.setId(null);
+                session.insert(trade);
+            }
+            transaction.commit();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    @Benchmark
+    public List<Trade> session() {
+        try (Session session = sessionFactory.openSession()) {
+            return session.createQuery(QUERY, Trade.class)
+                    .setParameter("userId", SyntheticPortfolio.USER_ID)
+                    .getResultList();
+        }
+    }
+
+    @Benchmark
+    public List<Trade> statelessSession() {
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            return session.createQuery(QUERY, Trade.class)
+                    .setParameter("userId", SyntheticPortfolio.USER_ID)
+                    .getResultList();
+        }
+    }
+}
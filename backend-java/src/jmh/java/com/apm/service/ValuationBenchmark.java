@@ -0,0 +1,103 @@
+package com.apm.service;
+
+import com.apm.benchmark.SyntheticPortfolio;
+import com.apm.dto.AnalyticsResponse;
+import com.apm.dto.PortfolioResponse;
+import com.apm.model.Trade;
+import com.apm.repository.PositionSnapshotRepository;
+import com.apm.repository.TradeRepository;
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Portfolio valuation and analytics over synthetic portfolios. The
+ * calculate* benchmarks run the whole service call; the others time only
+ * the calculation on prepared positions and prices. Prices come from an
+ * in-memory source. taxLots times a full rebuild of the lots from the
+ * trade history.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValuationBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    private int trades;
+
+    private PortfolioService portfolioService;
+    private AnalyticsService analyticsService;
+    private List<Trade> history;
+    private Map<String, LotPosition> positions;
+    private Map<String, Integer> holdings;
+    private Map<String, BigDecimal> prices;
+    private int openPositions;
+
+    @Setup
+    public void setUp() {
+        SyntheticPortfolio portfolio = SyntheticPortfolio.of(trades);
+        TradeRepository tradeRepository = SyntheticPortfolio.noOpRepository(TradeRepository.class);
+        PositionBook positionBook = new PositionBook(tradeRepository,
+                SyntheticPortfolio.noOpRepository(PositionSnapshotRepository.class));
+        positionBook.recordAll(portfolio.getTrades());
+
+        StockService stockService = portfolio.stockService();
+        portfolioService = new PortfolioService(tradeRepository, stockService, positionBook, null, null);
+        LotBook lotBook = portfolio.lotBook(CostBasisMethod.FIFO);
+        analyticsService = new AnalyticsService(lotBook, stockService);
+        history = portfolio.getTrades();
+
+        positions = lotBook.getPositions(SyntheticPortfolio.USER_ID);
+        holdings = new HashMap<>();
+        positions.forEach((ticker, position) -> {
+            if (position.quantity() > 0) {
+                holdings.put(ticker, position.quantity());
+            }
+        });
+        prices = stockService.getCurrentPrices(holdings.keySet());
+        openPositions = holdings.size();
+    }
+
+    @Benchmark
+    public PortfolioResponse calculatePortfolioValue() {
+        return portfolioService.calculatePortfolioValue(SyntheticPortfolio.USER_ID);
+    }
+
+    @Benchmark
+    public PortfolioResponse portfolioValue() {
+        return portfolioService.portfolioValue(holdings, prices);
+    }
+
+    @Benchmark
+    public AnalyticsResponse calculatePortfolioAnalytics() {
+        return analyticsService.calculatePortfolioAnalytics(SyntheticPortfolio.USER_ID);
+    }
+
+    @Benchmark
+    public AnalyticsResponse portfolioAnalytics() {
+        return analyticsService.analytics(positions, prices, Map.of(), openPositions);
+    }
+
+    @Benchmark
+    public Map<String, LotPosition> taxLots() {
+        TaxLotEngine engine = new TaxLotEngine(CostBasisMethod.FIFO);
+        history.forEach(engine::apply);
+        return engine.getPositions();
+    }
+}
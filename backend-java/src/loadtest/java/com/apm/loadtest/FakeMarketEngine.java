@@ -0,0 +1,146 @@
+package com.apm.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process stand-in for the Flask market engine. It serves the same
+ * {@code GET /price/{ticker}} and {@code POST /prices} responses, with a
+ * stable made-up price per ticker rounded to cents as the real engine
+ * does. Each request is delayed by a draw from the latency distribution
+ * and fails with a 500 at the configured error rate.
+ */
+final class FakeMarketEngine implements AutoCloseable {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final LatencyDistribution latency;
+    private final double errorRate;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder injectedErrors = new LongAdder();
+
+    FakeMarketEngine(LatencyDistribution latency, double errorRate, int threads) throws IOException {
+        this.latency = latency;
+        this.errorRate = errorRate;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        this.executor = Executors.newFixedThreadPool(threads);
+        server.setExecutor(executor);
+        server.createContext("/price/", this::price);
+        server.createContext("/prices", this::prices);
+        server.start();
+    }
+
+    String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    long getRequests() {
+        return requests.sum();
+    }
+
+    long getInjectedErrors() {
+        return injectedErrors.sum();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void price(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (delayOrFail(exchange)) {
+                return;
+            }
+            String ticker = exchange.getRequestURI().getPath().substring("/price/".length()).toUpperCase();
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("ticker", ticker);
+            body.put("price", priceOf(ticker));
+            body.put("currency", "USD");
+            body.put("timestamp", Instant.now().toString());
+            send(exchange, 200, body);
+        }
+    }
+
+    private void prices(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            JsonNode request;
+            try (InputStream in = exchange.getRequestBody()) {
+                request = objectMapper.readTree(in);
+            }
+            if (delayOrFail(exchange)) {
+                return;
+            }
+            if (request == null || !request.has("tickers")) {
+                send(exchange, 400, Map.of("error", "Missing 'tickers' in request body"));
+                return;
+            }
+            Map<String, Object> results = new LinkedHashMap<>();
+            for (JsonNode node : request.get("tickers")) {
+                String ticker = node.asText().toUpperCase();
+                results.put(ticker, Map.of("price", priceOf(ticker), "currency", "USD"));
+            }
+            send(exchange, 200, Map.of("prices", results, "timestamp", Instant.now().toString()));
+        }
+    }
+
+    /**
+     * Sleep for one latency draw, then maybe answer with an injected 500.
+     *
+     * @return true if the request was failed
+     */
+    private boolean delayOrFail(HttpExchange exchange) throws IOException {
+        requests.increment();
+        Random random = ThreadLocalRandom.current();
+        long delay = latency.sampleNanos(random);
+        if (delay > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (errorRate > 0 && random.nextDouble() < errorRate) {
+            injectedErrors.increment();
+            send(exchange, 500, Map.of("error", "Injected failure"));
+            return true;
+        }
+        return false;
+    }
+
+    private void send(HttpExchange exchange, int status, Object body) throws IOException {
+        byte[] bytes = objectMapper.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * A stable price between 10.00 and 510.00 derived from the ticker.
+     */
+    private static BigDecimal priceOf(String ticker) {
+        return BigDecimal.valueOf(1_000 + Math.floorMod(ticker.hashCode() * 7919L, 50_000L), 2);
+    }
+}
@@ -0,0 +1,78 @@
+package com.apm.loadtest;
+
+import java.util.Random;
+
+/**
+ * Response delay of the fake market engine, parsed from a spec:
+ * <ul>
+ *   <li>{@code none} - no delay</li>
+ *   <li>{@code fixed:20ms} - always the same delay</li>
+ *   <li>{@code uniform:10ms:50ms} - uniform between the two bounds</li>
+ *   <li>{@code lognormal:20ms:200ms} - log-normal with the given median and
+ *       99th percentile, the long tail real upstreams show</li>
+ * </ul>
+ */
+abstract class LatencyDistribution {
+
+    /**
+     * Z-score of the 99th percentile of the standard normal distribution.
+     */
+    private static final double Z_99 = 2.3263;
+
+    /**
+     * Draw one delay.
+     *
+     * @param random source of randomness, one per thread
+     * @return the delay in nanoseconds
+     */
+    abstract long sampleNanos(Random random);
+
+    static LatencyDistribution parse(String spec) {
+        String[] parts = spec.split(":");
+        switch (parts[0]) {
+            case "none":
+                return fixed(0);
+            case "fixed":
+                return fixed(nanos(parts, 1));
+            case "uniform": {
+                long min = nanos(parts, 1);
+                long max = nanos(parts, 2);
+                return new LatencyDistribution() {
+                    @Override
+                    long sampleNanos(Random random) {
+                        return min + (long) (random.nextDouble() * (max - min));
+                    }
+                };
+            }
+            case "lognormal": {
+                double mu = Math.log(nanos(parts, 1));
+                double sigma = (Math.log(nanos(parts, 2)) - mu) / Z_99;
+                return new LatencyDistribution() {
+                    @Override
+                    long sampleNanos(Random random) {
+                        return (long) Math.exp(mu + sigma * random.nextGaussian());
+                    }
+                };
+            }
+            default:
+                throw new IllegalArgumentException("Unknown latency distribution '" + spec
+                        + "', expected none, fixed:D, uniform:MIN:MAX or lognormal:MEDIAN:P99");
+        }
+    }
+
+    private static LatencyDistribution fixed(long nanos) {
+        return new LatencyDistribution() {
+            @Override
+            long sampleNanos(Random random) {
+                return nanos;
+            }
+        };
+    }
+
+    private static long nanos(String[] parts, int index) {
+        if (parts.length <= index) {
+            throw new IllegalArgumentException("Missing duration in '" + String.join(":", parts) + "'");
+        }
+        return LoadTestOptions.parseDuration(parts[index]).toNanos();
+    }
+}
@@ -0,0 +1,91 @@
+package com.apm.loadtest;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Latencies and error counts of one virtual user, merged into a report
+ * when the step ends. Every sample is kept so percentiles are exact.
+ */
+final class LatencyRecorder {
+
+    private final Map<Operation, Samples> samples = new EnumMap<>(Operation.class);
+
+    LatencyRecorder() {
+        for (Operation operation : Operation.values()) {
+            samples.put(operation, new Samples());
+        }
+    }
+
+    void record(Operation operation, long nanos, boolean success) {
+        Samples s = samples.get(operation);
+        if (s.count == s.nanos.length) {
+            s.nanos = Arrays.copyOf(s.nanos, s.nanos.length * 2);
+        }
+        s.nanos[s.count++] = nanos;
+        if (!success) {
+            s.errors++;
+        }
+    }
+
+    void mergeInto(LatencyRecorder total) {
+        samples.forEach((operation, s) -> {
+            Samples target = total.samples.get(operation);
+            long[] merged = Arrays.copyOf(target.nanos, Math.max(1, target.count + s.count));
+            System.arraycopy(s.nanos, 0, merged, target.count, s.count);
+            target.nanos = merged;
+            target.count += s.count;
+            target.errors += s.errors;
+        });
+    }
+
+    Samples get(Operation operation) {
+        return samples.get(operation);
+    }
+
+    /**
+     * All samples across operations.
+     */
+    Samples all() {
+        Samples all = new Samples();
+        all.nanos = new long[Math.max(1, samples.values().stream().mapToInt(s -> s.count).sum())];
+        for (Samples s : samples.values()) {
+            System.arraycopy(s.nanos, 0, all.nanos, all.count, s.count);
+            all.count += s.count;
+            all.errors += s.errors;
+        }
+        return all;
+    }
+
+    static final class Samples {
+
+        private long[] nanos = new long[1024];
+        private int count;
+        private long errors;
+        private boolean sorted;
+
+        int getCount() {
+            return count;
+        }
+
+        long getErrors() {
+            return errors;
+        }
+
+        /**
+         * Latency at the given percentile, in milliseconds.
+         */
+        double percentileMillis(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            if (!sorted) {
+                Arrays.sort(nanos, 0, count);
+                sorted = true;
+            }
+            int index = (int) Math.ceil(percentile / 100.0 * count) - 1;
+            return nanos[Math.max(0, Math.min(count - 1, index))] / 1_000_000.0;
+        }
+    }
+}
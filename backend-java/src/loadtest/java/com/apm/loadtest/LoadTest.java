@@ -0,0 +1,204 @@
+package com.apm.loadtest;
+
+import com.apm.Application;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Self-contained load test: starts a fake market engine and the
+ * application in this JVM, drives a closed-loop mix of trade, portfolio
+ * and analytics requests from virtual users, and prints throughput and
+ * latency percentiles per operation. With several user counts, e.g.
+ * {@code --users=8,32,128}, each runs as its own step against the same
+ * application, which gives a throughput-versus-latency curve.
+ * Needs nothing but this machine; the database is the default in-memory
+ * H2 unless a datasource property is passed.
+ */
+public final class LoadTest {
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        // Keep one idle connection per virtual user (the JDK default is 5)
+        System.setProperty("http.maxConnections",
+                String.valueOf(options.users.stream().mapToInt(Integer::intValue).max().orElse(1)));
+
+        try (FakeMarketEngine engine = new FakeMarketEngine(
+                LatencyDistribution.parse(options.engineLatency), options.engineErrorRate, options.engineThreads)) {
+            List<String> applicationArgs = new ArrayList<>(options.applicationArgs);
+            addDefault(applicationArgs, "server.port", "0");
+            addDefault(applicationArgs, "market.service.url", engine.getUrl());
+            // Every virtual user comes from this one address
+            addDefault(applicationArgs, "rate-limit.enabled", "false");
+            // Per-request logging would dominate the profile; keep errors only
+            addDefault(applicationArgs, "logging.level.root", "WARN");
+            addDefault(applicationArgs, "logging.level.com.apm", "ERROR");
+
+            try (ConfigurableApplicationContext context =
+                    SpringApplication.run(Application.class, applicationArgs.toArray(new String[0]))) {
+                int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+                String baseUrl = "http://127.0.0.1:" + port + "/api/v1";
+
+                System.out.printf("%nMarket engine %s, latency %s, error rate %.3f; mix %s, %d tickers%n",
+                        engine.getUrl(), options.engineLatency, options.engineErrorRate, options.mix, options.tickers);
+                for (int users : options.users) {
+                    long engineRequests = engine.getRequests();
+                    long engineErrors = engine.getInjectedErrors();
+                    LatencyRecorder result = runStep(baseUrl, users, options);
+                    print(users, options.duration, result,
+                            engine.getRequests() - engineRequests, engine.getInjectedErrors() - engineErrors);
+                }
+            }
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Add an application property unless it was given on the command line,
+     * where a second value would turn it into a list.
+     */
+    private static void addDefault(List<String> args, String name, String value) {
+        if (args.stream().noneMatch(arg -> arg.startsWith("--" + name + "="))) {
+            args.add("--" + name + "=" + value);
+        }
+    }
+
+    /**
+     * Run the virtual users for warmup plus duration; only requests started
+     * and finished inside the measured window are recorded.
+     */
+    private static LatencyRecorder runStep(String baseUrl, int users, LoadTestOptions options)
+            throws Exception {
+        long start = System.nanoTime();
+        long measureFrom = start + options.warmup.toNanos();
+        long measureUntil = measureFrom + options.duration.toNanos();
+
+        ExecutorService executor = Executors.newFixedThreadPool(users);
+        List<Future<LatencyRecorder>> futures = new ArrayList<>();
+        for (int i = 0; i < users; i++) {
+            futures.add(executor.submit(() -> runUser(baseUrl, options, measureFrom, measureUntil)));
+        }
+        LatencyRecorder total = new LatencyRecorder();
+        for (Future<LatencyRecorder> future : futures) {
+            future.get().mergeInto(total);
+        }
+        executor.shutdown();
+        return total;
+    }
+
+    private static LatencyRecorder runUser(String baseUrl, LoadTestOptions options,
+            long measureFrom, long measureUntil) throws InterruptedException {
+        LatencyRecorder recorder = new LatencyRecorder();
+        Random random = ThreadLocalRandom.current();
+        int totalWeight = options.mix.values().stream().mapToInt(Integer::intValue).sum();
+
+        while (System.nanoTime() < measureUntil) {
+            Operation operation = pick(options.mix, random.nextInt(totalWeight));
+            long begin = System.nanoTime();
+            boolean success = send(baseUrl, operation, options.tickers, random);
+            long end = System.nanoTime();
+            if (begin >= measureFrom && end <= measureUntil) {
+                recorder.record(operation, end - begin, success);
+            }
+            if (!options.thinkTime.isZero()) {
+                Thread.sleep(options.thinkTime.toMillis());
+            }
+        }
+        return recorder;
+    }
+
+    private static Operation pick(Map<Operation, Integer> mix, int draw) {
+        for (Map.Entry<Operation, Integer> entry : mix.entrySet()) {
+            draw -= entry.getValue();
+            if (draw < 0) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalStateException("Empty traffic mix");
+    }
+
+    /**
+     * One request over a pooled keep-alive connection.
+     *
+     * @return true for a 2xx response
+     */
+    private static boolean send(String baseUrl, Operation operation, int tickers, Random random) {
+        try {
+            HttpURLConnection connection;
+            switch (operation) {
+                case TRADE: {
+                    connection = (HttpURLConnection) new URL(baseUrl + "/trades").openConnection();
+                    connection.setRequestMethod("POST");
+                    connection.setDoOutput(true);
+                    connection.setRequestProperty("Content-Type", "application/json");
+                    String body = String.format("{\"ticker\":\"LT%d\",\"type\":\"%s\",\"quantity\":%d,\"price\":0}",
+                            random.nextInt(tickers), random.nextInt(5) == 0 ? "SELL" : "BUY",
+                            1 + random.nextInt(100));
+                    try (OutputStream out = connection.getOutputStream()) {
+                        out.write(body.getBytes(StandardCharsets.UTF_8));
+                    }
+                    break;
+                }
+                case PORTFOLIO:
+                    connection = (HttpURLConnection) new URL(baseUrl + "/portfolio").openConnection();
+                    break;
+                case ANALYTICS:
+                    connection = (HttpURLConnection) new URL(baseUrl + "/analytics/portfolio").openConnection();
+                    break;
+                default:
+                    throw new IllegalArgumentException(operation.name());
+            }
+            int status = connection.getResponseCode();
+            // Read the body to the end so the connection goes back to the pool
+            try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+                if (in != null) {
+                    in.transferTo(OutputStream.nullOutputStream());
+                }
+            }
+            return status / 100 == 2;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static void print(int users, Duration duration, LatencyRecorder result,
+            long engineRequests, long engineErrors) {
+        double seconds = duration.toNanos() / 1e9;
+        System.out.printf("%n%d users, %.0f s measured%n", users, seconds);
+        System.out.printf("%-10s %9s %7s %9s %8s %8s %8s %8s %8s%n",
+                "operation", "requests", "errors", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (Operation operation : Operation.values()) {
+            printRow(operation.name().toLowerCase(), result.get(operation), seconds);
+        }
+        printRow("all", result.all(), seconds);
+        System.out.printf("market engine: %d requests, %d injected errors%n", engineRequests, engineErrors);
+    }
+
+    private static void printRow(String name, LatencyRecorder.Samples samples, double seconds) {
+        if (samples.getCount() == 0) {
+            return;
+        }
+        System.out.printf("%-10s %9d %7d %9.1f %8.2f %8.2f %8.2f %8.2f %8.2f%n",
+                name, samples.getCount(), samples.getErrors(), samples.getCount() / seconds,
+                samples.percentileMillis(50), samples.percentileMillis(90), samples.percentileMillis(99),
+                samples.percentileMillis(99.9), samples.percentileMillis(100));
+    }
+}
@@ -0,0 +1,93 @@
+package com.apm.loadtest;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import org.springframework.boot.convert.DurationStyle;
+
+/**
+ * Command line options of the load test. Options it does not know are
+ * handed to the application, so any Spring property can be set, e.g.
+ * {@code --trades.group-commit.enabled=true}.
+ */
+final class LoadTestOptions {
+
+    /**
+     * Concurrent virtual users per step; several values run one step each.
+     */
+    List<Integer> users = List.of(16);
+    Duration warmup = Duration.ofSeconds(10);
+    Duration duration = Duration.ofSeconds(30);
+    Duration thinkTime = Duration.ZERO;
+    Map<Operation, Integer> mix = parseMix("trade:20,portfolio:40,analytics:40");
+    int tickers = 50;
+    String engineLatency = "lognormal:20ms:150ms";
+    double engineErrorRate = 0.0;
+    int engineThreads = 64;
+    final List<String> applicationArgs = new ArrayList<>();
+
+    static LoadTestOptions parse(String[] args) {
+        LoadTestOptions options = new LoadTestOptions();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            String name = equals < 0 ? arg : arg.substring(0, equals);
+            String value = equals < 0 ? "" : arg.substring(equals + 1);
+            switch (name) {
+                case "--users":
+                    options.users = new ArrayList<>();
+                    for (String users : value.split(",")) {
+                        options.users.add(Integer.parseInt(users.trim()));
+                    }
+                    break;
+                case "--warmup":
+                    options.warmup = parseDuration(value);
+                    break;
+                case "--duration":
+                    options.duration = parseDuration(value);
+                    break;
+                case "--think-time":
+                    options.thinkTime = parseDuration(value);
+                    break;
+                case "--mix":
+                    options.mix = parseMix(value);
+                    break;
+                case "--tickers":
+                    options.tickers = Integer.parseInt(value);
+                    break;
+                case "--engine-latency":
+                    options.engineLatency = value;
+                    break;
+                case "--engine-error-rate":
+                    options.engineErrorRate = Double.parseDouble(value);
+                    break;
+                case "--engine-threads":
+                    options.engineThreads = Integer.parseInt(value);
+                    break;
+                default:
+                    options.applicationArgs.add(arg);
+            }
+        }
+        return options;
+    }
+
+    static Duration parseDuration(String value) {
+        return DurationStyle.detectAndParse(value.trim());
+    }
+
+    /**
+     * Parse weights like {@code trade:20,portfolio:40,analytics:40}.
+     */
+    private static Map<Operation, Integer> parseMix(String value) {
+        Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+        for (String entry : value.split(",")) {
+            String[] parts = entry.trim().split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Expected operation:weight in --mix but got '" + entry + "'");
+            }
+            mix.put(Operation.valueOf(parts[0].trim().toUpperCase()), Integer.parseInt(parts[1].trim()));
+        }
+        return mix;
+    }
+}
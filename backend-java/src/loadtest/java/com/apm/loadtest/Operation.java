@@ -0,0 +1,22 @@
+package com.apm.loadtest;
+
+/**
+ * Request types in the traffic mix.
+ */
+enum Operation {
+
+    /**
+     * POST /api/v1/trades at the live price.
+     */
+    TRADE,
+
+    /**
+     * GET /api/v1/portfolio.
+     */
+    PORTFOLIO,
+
+    /**
+     * GET /api/v1/analytics/portfolio.
+     */
+    ANALYTICS
+}
@@ -0,0 +1,50 @@
+package com.apm.config;
+
+import com.apm.service.CachingStockService;
+import com.apm.service.StockService;
+import java.time.Duration;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Wiring for market data access.
+ * The raw price source (real market engine or mock) is wrapped in a cache
+ * that the rest of the application sees as the primary StockService.
+ */
+@Configuration
+public class MarketDataConfig {
+
+    /**
+     * Executor for background price refreshes, kept off the request threads.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor priceRefreshExecutor(
+            @Value("${market.service.cache.refresh-threads:4}") int threads) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(1000);
+        executor.setThreadNamePrefix("price-refresh-");
+        executor.setDaemon(true);
+        return executor;
+    }
+
+    /**
+     * Primary StockService: the configured price source behind a bounded cache.
+     */
+    @Bean
+    @Primary
+    public CachingStockService stockService(
+            @Qualifier("priceSource") StockService priceSource,
+            @Qualifier("priceRefreshExecutor") ThreadPoolTaskExecutor priceRefreshExecutor,
+            @Value("${market.service.cache.max-size:1000}") long maximumSize,
+            @Value("${market.service.cache.ttl:60s}") Duration timeToLive,
+            @Value("${market.service.cache.refresh-after:15s}") Duration refreshAfter) {
+        return new CachingStockService(priceSource, maximumSize, timeToLive,
+                refreshAfter, priceRefreshExecutor);
+    }
+}
@@ -0,0 +1,150 @@
+package com.apm.config;
+
+import com.apm.service.Bulkhead;
+import com.apm.service.CircuitBreaker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import java.time.Duration;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.ManagedHttpClientConnectionFactory;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.BufferingClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * HTTP client for the Python Market Engine.
+ * Uses a pooled keep-alive connection manager with explicit connect, read
+ * and pool-acquire timeouts so a slow engine cannot pin request threads,
+ * plus a circuit breaker and bulkhead that fail calls fast when it is down.
+ */
+@Configuration
+public class MarketEngineClientConfig {
+
+    /**
+     * Connection pool shared by all market engine requests.
+     */
+    @Bean(destroyMethod = "close")
+    public PoolingHttpClientConnectionManager marketEngineConnectionManager(
+            MeterRegistry meterRegistry,
+            @Value("${market.service.http.max-connections:50}") int maxConnections,
+            @Value("${market.service.http.max-connections-per-route:20}") int maxPerRoute,
+            @Value("${market.service.http.connect-timeout:2s}") Duration connectTimeout,
+            @Value("${market.service.http.read-timeout:5s}") Duration readTimeout,
+            @Value("${market.service.http.connection-ttl:5m}") Duration connectionTtl) {
+        Counter opened = Counter.builder("market.engine.connections.opened")
+                .description("New TCP connections opened to the market engine")
+                .register(meterRegistry);
+
+        return PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxPerRoute)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.of(connectTimeout))
+                        .setSocketTimeout(Timeout.of(readTimeout))
+                        .setTimeToLive(TimeValue.of(connectionTtl))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                        .build())
+                .setConnectionFactory(socket -> {
+                    opened.increment();
+                    return ManagedHttpClientConnectionFactory.INSTANCE.createConnection(socket);
+                })
+                .build();
+    }
+
+    /**
+     * Pool gauges (leased, available, pending, max) for the market engine
+     * client; compared with request counts they show how often connections
+     * are reused.
+     */
+    @Bean
+    public PoolingHttpClientConnectionManagerMetricsBinder marketEngineConnectionPoolMetrics(
+            PoolingHttpClientConnectionManager marketEngineConnectionManager) {
+        return new PoolingHttpClientConnectionManagerMetricsBinder(
+                marketEngineConnectionManager, "market-engine");
+    }
+
+    /**
+     * Apache HttpClient on top of the pool with keep-alive and idle eviction.
+     */
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient marketEngineHttpClient(
+            PoolingHttpClientConnectionManager marketEngineConnectionManager,
+            @Value("${market.service.http.connection-request-timeout:1s}") Duration acquireTimeout,
+            @Value("${market.service.http.read-timeout:5s}") Duration readTimeout,
+            @Value("${market.service.http.keep-alive:30s}") Duration keepAlive,
+            @Value("${market.service.http.idle-timeout:30s}") Duration idleTimeout) {
+        return HttpClients.custom()
+                .setConnectionManager(marketEngineConnectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.of(acquireTimeout))
+                        .setResponseTimeout(Timeout.of(readTimeout))
+                        .setConnectionKeepAlive(TimeValue.of(keepAlive))
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.of(idleTimeout))
+                .build();
+    }
+
+    /**
+     * Circuit breaker for market engine calls; its state is exported as the
+     * market.engine.circuit.state gauge (0 closed, 1 open, 2 half-open).
+     */
+    @Bean
+    public CircuitBreaker marketEngineCircuitBreaker(
+            MeterRegistry meterRegistry,
+            @Value("${market.service.breaker.window-size:20}") int windowSize,
+            @Value("${market.service.breaker.minimum-calls:10}") int minimumCalls,
+            @Value("${market.service.breaker.failure-rate-threshold:50}") int failureRateThreshold,
+            @Value("${market.service.breaker.open-duration:30s}") Duration openDuration,
+            @Value("${market.service.breaker.half-open-calls:2}") int halfOpenCalls) {
+        CircuitBreaker circuitBreaker = new CircuitBreaker("market-engine", windowSize, minimumCalls,
+                failureRateThreshold, openDuration, halfOpenCalls);
+        Gauge.builder("market.engine.circuit.state", circuitBreaker, cb -> cb.getState().ordinal())
+                .description("Market engine circuit breaker state (0 closed, 1 open, 2 half-open)")
+                .register(meterRegistry);
+        return circuitBreaker;
+    }
+
+    /**
+     * Bulkhead capping concurrent market engine calls.
+     */
+    @Bean
+    public Bulkhead marketEngineBulkhead(
+            MeterRegistry meterRegistry,
+            @Value("${market.service.bulkhead.max-concurrent-calls:20}") int maxConcurrentCalls,
+            @Value("${market.service.bulkhead.max-wait:500ms}") Duration maxWait) {
+        Bulkhead bulkhead = new Bulkhead(maxConcurrentCalls, maxWait);
+        Gauge.builder("market.engine.bulkhead.available", bulkhead, Bulkhead::getAvailablePermits)
+                .description("Free market engine call slots")
+                .register(meterRegistry);
+        return bulkhead;
+    }
+
+    /**
+     * RestTemplate used by RealStockService. Request bodies are buffered so
+     * bulk requests carry a Content-Length instead of chunked encoding, which
+     * not every WSGI server accepts.
+     */
+    @Bean
+    public RestTemplate marketEngineRestTemplate(RestTemplateBuilder restTemplateBuilder,
+            @Qualifier("marketEngineHttpClient") CloseableHttpClient marketEngineHttpClient) {
+        return restTemplateBuilder
+                .requestFactory(() -> new BufferingClientHttpRequestFactory(
+                        new HttpComponentsClientHttpRequestFactory(marketEngineHttpClient)))
+                .build();
+    }
+}
@@ -1,22 +1,26 @@
 package com.apm.config;
 
+import com.apm.security.RateLimitFilter;
+import com.apm.security.RateLimiter;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.AnonymousAuthenticationFilter;
 
 /**
  * Security configuration for the application.
- * Allows public access to auth endpoints and health checks.
+ * Allows public access to auth endpoints and health checks, and rate
+ * limits requests once the caller is known.
  */
 @Configuration
 @EnableWebSecurity
 public class SecurityConfig {
 
     @Bean
-    public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain filterChain(HttpSecurity http, RateLimiter rateLimiter) throws Exception {
         http
                 .csrf(csrf -> csrf.disable())
                 .sessionManagement(session -> session
@@ -25,6 +29,7 @@ public class SecurityConfig {
                         // Public endpoints
                         .requestMatchers("/api/v1/auth/**").permitAll()
                         .requestMatchers("/api/health").permitAll()
+                        .requestMatchers("/actuator/health/**").permitAll()
                         .requestMatchers("/api/v1/trades/**").permitAll()
                         .requestMatchers("/api/v1/portfolio/**").permitAll()
                         .requestMatchers("/api/v1/analytics/**").permitAll()
@@ -34,6 +39,11 @@ public class SecurityConfig {
                 // Allow H2 console frames
                 .headers(headers -> headers.frameOptions(frame -> frame.disable()));
 
+        if (rateLimiter.isEnabled()) {
+            // After authentication, so users are limited by name rather than address
+            http.addFilterAfter(new RateLimitFilter(rateLimiter), AnonymousAuthenticationFilter.class);
+        }
+
         return http.build();
     }
 }
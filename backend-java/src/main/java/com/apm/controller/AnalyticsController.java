@@ -1,12 +1,16 @@
 package com.apm.controller;
 
+import com.apm.dto.AnalyticsResponse;
 import com.apm.service.AnalyticsService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.util.Map;
+import java.io.IOException;
 import java.util.UUID;
 
 /**
@@ -17,22 +21,28 @@ import java.util.UUID;
 public class AnalyticsController {
 
     private final AnalyticsService analyticsService;
+    private final ObjectWriter analyticsWriter;
 
     // Demo user ID (in production, this would come from JWT token)
     private static final UUID DEMO_USER_ID = UUID.fromString("00000000-0000-0000-0000-000000000001");
 
-    public AnalyticsController(AnalyticsService analyticsService) {
+    public AnalyticsController(AnalyticsService analyticsService, ObjectMapper objectMapper) {
         this.analyticsService = analyticsService;
+        this.analyticsWriter = objectMapper.writerFor(AnalyticsResponse.class);
     }
 
     /**
-     * Get comprehensive portfolio analytics with P&L breakdown.
+     * Get comprehensive portfolio analytics with P&L breakdown, serialized
+     * with a writer prepared for the response type.
      *
      * @return portfolio analytics including cost basis, current value, and P&L
+     * @throws IOException if the response cannot be serialized
      */
     @GetMapping("/portfolio")
-    public ResponseEntity<Map<String, Object>> getPortfolioAnalytics() {
-        Map<String, Object> analytics = analyticsService.calculatePortfolioAnalytics(DEMO_USER_ID);
-        return ResponseEntity.ok(analytics);
+    public ResponseEntity<byte[]> getPortfolioAnalytics() throws IOException {
+        AnalyticsResponse analytics = analyticsService.calculatePortfolioAnalytics(DEMO_USER_ID);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(analyticsWriter.writeValueAsBytes(analytics));
     }
 }
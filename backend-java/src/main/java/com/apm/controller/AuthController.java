@@ -4,8 +4,10 @@ import com.apm.dto.AuthRequest;
 import com.apm.dto.AuthResponse;
 import com.apm.model.User;
 import com.apm.security.JwtUtil;
+import com.apm.service.PasswordHashRejectedException;
 import com.apm.service.UserService;
 import jakarta.validation.Valid;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -24,6 +26,11 @@ import java.util.Map;
 @RequestMapping("/api/v1/auth")
 public class AuthController {
 
+    /**
+     * Seconds a client is asked to wait when password hashing is saturated.
+     */
+    private static final String RETRY_AFTER_SECONDS = "1";
+
     private final UserService userService;
     private final JwtUtil jwtUtil;
 
@@ -71,4 +78,16 @@ public class AuthController {
         error.put("error", e.getMessage());
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error);
     }
+
+    /**
+     * Handle signups and logins turned away by a saturated password hashing pool.
+     */
+    @ExceptionHandler(PasswordHashRejectedException.class)
+    public ResponseEntity<Map<String, String>> handlePasswordHashRejectedException(PasswordHashRejectedException e) {
+        Map<String, String> error = new HashMap<>();
+        error.put("error", e.getMessage());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                .body(error);
+    }
 }
@@ -1,23 +1,40 @@
 package com.apm.controller;
 
+import com.apm.dto.PortfolioResponse;
+import com.apm.dto.TradeImportResult;
 import com.apm.dto.TradeRequest;
 import com.apm.dto.TradeResponse;
 import com.apm.model.Trade;
+import com.apm.service.InvalidIdempotencyKeyException;
 import com.apm.service.PortfolioService;
 import com.apm.service.StockServiceException;
+import com.apm.service.TradeImportException;
+import com.apm.service.TradeImportService;
+import com.apm.service.TradeQueryService;
+import com.apm.service.TradeWriteRejectedException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import jakarta.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 /**
  * REST controller for trade operations and portfolio management.
@@ -26,31 +43,63 @@ import org.springframework.web.bind.annotation.RestController;
 @RequestMapping("/api/v1")
 public class TradeController {
 
+    /**
+     * Response header carrying the cursor of the next trades page.
+     */
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    /**
+     * Request header with the client chosen key that makes a trade retry safe.
+     */
+    static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+    static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
     private final PortfolioService portfolioService;
+    private final TradeQueryService tradeQueryService;
+    private final TradeImportService tradeImportService;
+    private final ObjectWriter tradeWriter;
+    private final ObjectWriter portfolioWriter;
+    private final int defaultPageSize;
+    private final int maxPageSize;
 
     // Demo user ID (in production, this would come from authentication)
     private static final UUID DEMO_USER_ID = UUID.fromString("00000000-0000-0000-0000-000000000001");
 
-    public TradeController(PortfolioService portfolioService) {
+    public TradeController(PortfolioService portfolioService, TradeQueryService tradeQueryService,
+            TradeImportService tradeImportService, ObjectMapper objectMapper,
+            @Value("${trades.page.default-size:100}") int defaultPageSize,
+            @Value("${trades.page.max-size:1000}") int maxPageSize) {
         this.portfolioService = portfolioService;
+        this.tradeQueryService = tradeQueryService;
+        this.tradeImportService = tradeImportService;
+        this.tradeWriter = objectMapper.writerFor(Trade.class);
+        this.portfolioWriter = objectMapper.writerFor(PortfolioResponse.class);
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
     }
 
     /**
      * Record a new trade (BUY/SELL).
-     * Supports both real-time and historical/backdated trades.
+     * Supports both real-time and historical/backdated trades. A retry
+     * carrying the same Idempotency-Key header gets the original trade back
+     * instead of recording it again.
      *
-     * @param request the trade details
+     * @param request        the trade details
+     * @param idempotencyKey client chosen key identifying this trade (optional)
      * @return trade confirmation with execution price
      */
     @PostMapping("/trades")
-    public ResponseEntity<TradeResponse> createTrade(@Valid @RequestBody TradeRequest request) {
+    public ResponseEntity<TradeResponse> createTrade(@Valid @RequestBody TradeRequest request,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
         Trade trade = portfolioService.recordTrade(
                 DEMO_USER_ID,
                 request.getTicker(),
                 request.getType(),
                 request.getQuantity(),
                 request.getPrice(),
-                request.getTimestamp());
+                request.getTimestamp(),
+                idempotencyKey);
 
         TradeResponse response = new TradeResponse(
                 trade.getId(),
@@ -61,24 +110,131 @@ public class TradeController {
     }
 
     /**
-     * Get all trades.
+     * Import a JSON array of trades in bulk. Every trade needs a price;
+     * invalid rows are skipped and listed in the result.
      *
-     * @return list of all trades
+     * @param body the JSON array, read as a stream
+     * @return imported and rejected row counts with the first errors
+     * @throws IOException if the upload cannot be read
+     */
+    @PostMapping(value = "/trades/import", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<TradeImportResult> importJson(InputStream body) throws IOException {
+        return ResponseEntity.ok(tradeImportService.importJson(DEMO_USER_ID, body));
+    }
+
+    /**
+     * Import trades in bulk from a CSV upload with a header row of
+     * ticker, type, quantity, price and optionally timestamp.
+     *
+     * @param body the CSV upload, read as a stream
+     * @return imported and rejected row counts with the first errors
+     * @throws IOException if the upload cannot be read
+     */
+    @PostMapping(value = "/trades/import", consumes = "text/csv")
+    public ResponseEntity<TradeImportResult> importCsv(InputStream body) throws IOException {
+        return ResponseEntity.ok(tradeImportService.importCsv(DEMO_USER_ID, body));
+    }
+
+    /**
+     * Get one page of trades in id order. If more trades follow, the
+     * X-Next-Cursor header holds the value to pass as {@code after} for the
+     * next page.
+     *
+     * @param userId only this user's trades (optional)
+     * @param ticker only this ticker (optional)
+     * @param after  cursor returned with the previous page (optional)
+     * @param limit  page size, capped at the configured maximum (optional)
+     * @return the page of trades
      */
     @GetMapping("/trades")
-    public ResponseEntity<List<Trade>> getAllTrades() {
-        return ResponseEntity.ok(portfolioService.getAllTrades());
+    public ResponseEntity<List<Trade>> getTrades(
+            @RequestParam(required = false) UUID userId,
+            @RequestParam(required = false) String ticker,
+            @RequestParam(required = false) Long after,
+            @RequestParam(required = false) Integer limit) {
+        int pageSize = limit == null ? defaultPageSize : Math.max(1, Math.min(limit, maxPageSize));
+
+        // Ask for one extra row to learn whether another page follows
+        List<Trade> trades = tradeQueryService.findPage(userId, ticker, after, pageSize + 1);
+        if (trades.size() <= pageSize) {
+            return ResponseEntity.ok(trades);
+        }
+        List<Trade> page = trades.subList(0, pageSize);
+        return ResponseEntity.ok()
+                .header(NEXT_CURSOR_HEADER, String.valueOf(page.get(pageSize - 1).getId()))
+                .body(page);
+    }
+
+    /**
+     * Stream all matching trades as newline-delimited JSON, one trade per
+     * line, read from a database cursor so memory use does not depend on
+     * the number of trades.
+     *
+     * @param userId only this user's trades (optional)
+     * @param ticker only this ticker (optional)
+     * @param after  only trades with a greater id (optional)
+     * @return the NDJSON stream
+     */
+    @GetMapping(value = "/trades/stream", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> streamTrades(
+            @RequestParam(required = false) UUID userId,
+            @RequestParam(required = false) String ticker,
+            @RequestParam(required = false) Long after) {
+        StreamingResponseBody body = out -> tradeQueryService.stream(userId, ticker, after, trade -> {
+            try {
+                out.write(tradeWriter.writeValueAsBytes(trade));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
     }
 
     /**
-     * Get portfolio summary with current values.
+     * Get portfolio summary with current values, serialized with a writer
+     * prepared for the response type.
      *
-     * @return portfolio holdings and total value
+     * @return portfolio holdings and total value as JSON
+     * @throws IOException if the response cannot be serialized
      */
     @GetMapping("/portfolio")
-    public ResponseEntity<Map<String, Object>> getPortfolio() {
-        Map<String, Object> portfolio = portfolioService.calculatePortfolioValue(DEMO_USER_ID);
-        return ResponseEntity.ok(portfolio);
+    public ResponseEntity<byte[]> getPortfolio() throws IOException {
+        PortfolioResponse portfolio = portfolioService.calculatePortfolioValue(DEMO_USER_ID);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(portfolioWriter.writeValueAsBytes(portfolio));
+    }
+
+    /**
+     * Handle import uploads that cannot be read.
+     */
+    @ExceptionHandler(TradeImportException.class)
+    public ResponseEntity<Map<String, String>> handleTradeImportException(TradeImportException e) {
+        Map<String, String> error = new HashMap<>();
+        error.put("error", e.getMessage());
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error);
+    }
+
+    /**
+     * Handle malformed or reused idempotency keys.
+     */
+    @ExceptionHandler(InvalidIdempotencyKeyException.class)
+    public ResponseEntity<Map<String, String>> handleInvalidIdempotencyKeyException(
+            InvalidIdempotencyKeyException e) {
+        Map<String, String> error = new HashMap<>();
+        error.put("error", e.getMessage());
+        return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(error);
+    }
+
+    /**
+     * Handle trades turned away by a full group commit queue.
+     */
+    @ExceptionHandler(TradeWriteRejectedException.class)
+    public ResponseEntity<Map<String, String>> handleTradeWriteRejectedException(TradeWriteRejectedException e) {
+        Map<String, String> error = new HashMap<>();
+        error.put("error", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(error);
     }
 
     /**
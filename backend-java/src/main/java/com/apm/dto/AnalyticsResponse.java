@@ -0,0 +1,30 @@
+package com.apm.dto;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Portfolio analytics with cost basis and P&L per holding and in total.
+ * Totals are rounded to cents; holdings without a price count towards the
+ * cost basis but not the current value. Realized P&L includes positions
+ * that have since been closed.
+ *
+ * @param holdings                analytics per open position
+ * @param costBasisMethod         how sold shares were matched to lots
+ * @param totalCostBasis          cost of all open positions
+ * @param totalCurrentValue       current value of the priced positions
+ * @param totalProfitLoss         unrealized P&L: current value minus cost basis
+ * @param totalPercentChange      unrealized P&L as a percentage of cost basis
+ * @param totalRealizedProfitLoss P&L realized by all sales so far
+ * @param currency                currency of all amounts
+ */
+public record AnalyticsResponse(
+        Map<String, HoldingAnalytics> holdings,
+        String costBasisMethod,
+        BigDecimal totalCostBasis,
+        BigDecimal totalCurrentValue,
+        BigDecimal totalProfitLoss,
+        BigDecimal totalPercentChange,
+        BigDecimal totalRealizedProfitLoss,
+        String currency) {
+}
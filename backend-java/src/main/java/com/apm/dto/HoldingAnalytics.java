@@ -0,0 +1,72 @@
+package com.apm.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import java.io.IOException;
+import java.math.BigDecimal;
+
+/**
+ * Cost basis and P&L of one open position. Without a current price the
+ * market fields are left out, currentPrice is written as "unavailable" and
+ * error says why.
+ *
+ * @param quantity           net shares held
+ * @param costBasis          cost of the shares held, by the tax lot method
+ * @param avgCostPerShare    cost basis divided by quantity
+ * @param currentPrice       current price per share, null if unavailable
+ * @param currentValue       quantity times current price
+ * @param profitLoss         unrealized P&L: current value minus cost basis
+ * @param percentChange      unrealized P&L as a percentage of cost basis
+ * @param realizedProfitLoss P&L realized by sales so far
+ * @param error              why the position could not be priced
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record HoldingAnalytics(
+        int quantity,
+        BigDecimal costBasis,
+        BigDecimal avgCostPerShare,
+        @JsonInclude(JsonInclude.Include.ALWAYS)
+        @JsonSerialize(nullsUsing = UnavailablePriceSerializer.class)
+        BigDecimal currentPrice,
+        BigDecimal currentValue,
+        BigDecimal profitLoss,
+        BigDecimal percentChange,
+        BigDecimal realizedProfitLoss,
+        String error) {
+
+    /**
+     * Position valued at the current price.
+     */
+    public static HoldingAnalytics priced(int quantity, BigDecimal costBasis, BigDecimal avgCostPerShare,
+            BigDecimal currentPrice, BigDecimal currentValue, BigDecimal profitLoss, BigDecimal percentChange,
+            BigDecimal realizedProfitLoss) {
+        return new HoldingAnalytics(quantity, costBasis, avgCostPerShare, currentPrice,
+                currentValue, profitLoss, percentChange, realizedProfitLoss, null);
+    }
+
+    /**
+     * Position without a current price.
+     *
+     * @param error why the price lookup failed, e.g. the StockServiceException message
+     */
+    public static HoldingAnalytics unavailable(int quantity, BigDecimal costBasis, BigDecimal avgCostPerShare,
+            BigDecimal realizedProfitLoss, String error) {
+        return new HoldingAnalytics(quantity, costBasis, avgCostPerShare, null, null, null, null,
+                realizedProfitLoss, error);
+    }
+
+    /**
+     * Writes a missing current price as "unavailable".
+     */
+    public static class UnavailablePriceSerializer extends JsonSerializer<Object> {
+
+        @Override
+        public void serialize(Object value, JsonGenerator generator, SerializerProvider provider)
+                throws IOException {
+            generator.writeString("unavailable");
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.apm.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import java.math.BigDecimal;
+
+/**
+ * Value of one holding: quantity times current price, or an error if the
+ * price is unavailable. Absent fields are left out of the JSON.
+ *
+ * @param quantity     net shares held
+ * @param currentPrice current price per share
+ * @param value        quantity times current price
+ * @param error        why the holding could not be valued
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record HoldingValue(int quantity, BigDecimal currentPrice, BigDecimal value, String error) {
+
+    /**
+     * Holding valued at the current price.
+     */
+    public static HoldingValue priced(int quantity, BigDecimal currentPrice, BigDecimal value) {
+        return new HoldingValue(quantity, currentPrice, value, null);
+    }
+
+    /**
+     * Holding without a current price.
+     */
+    public static HoldingValue unavailable(int quantity) {
+        return new HoldingValue(quantity, null, null, "Price unavailable");
+    }
+}
@@ -0,0 +1,14 @@
+package com.apm.dto;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Current value of a user's open positions.
+ *
+ * @param holdings   value per ticker
+ * @param totalValue sum of the holding values that could be priced
+ * @param currency   currency of all amounts
+ */
+public record PortfolioResponse(Map<String, HoldingValue> holdings, BigDecimal totalValue, String currency) {
+}
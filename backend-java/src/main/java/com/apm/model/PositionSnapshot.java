@@ -0,0 +1,146 @@
+package com.apm.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Persisted net position of one user in one ticker.
+ * Updated in the same transaction as every recorded trade; lastTradeId is
+ * the highest trade id already folded into the snapshot.
+ */
+@Entity
+@Table(name = "positions")
+@IdClass(PositionSnapshot.Key.class)
+public class PositionSnapshot {
+
+    @Id
+    @Column(name = "user_id")
+    private UUID userId;
+
+    @Id
+    @Column(length = 10)
+    private String ticker;
+
+    @Column(nullable = false)
+    private Integer quantity;
+
+    @Column(name = "total_cost", nullable = false, precision = 19, scale = 2)
+    private BigDecimal totalCost;
+
+    @Column(name = "last_trade_id", nullable = false)
+    private Long lastTradeId;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    public PositionSnapshot() {
+    }
+
+    public PositionSnapshot(UUID userId, String ticker) {
+        this.userId = userId;
+        this.ticker = ticker;
+        this.quantity = 0;
+        this.totalCost = BigDecimal.ZERO;
+        this.lastTradeId = 0L;
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    // Getters and Setters
+    public UUID getUserId() {
+        return userId;
+    }
+
+    public void setUserId(UUID userId) {
+        this.userId = userId;
+    }
+
+    public String getTicker() {
+        return ticker;
+    }
+
+    public void setTicker(String ticker) {
+        this.ticker = ticker;
+    }
+
+    public Integer getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(Integer quantity) {
+        this.quantity = quantity;
+    }
+
+    public BigDecimal getTotalCost() {
+        return totalCost;
+    }
+
+    public void setTotalCost(BigDecimal totalCost) {
+        this.totalCost = totalCost;
+    }
+
+    public Long getLastTradeId() {
+        return lastTradeId;
+    }
+
+    public void setLastTradeId(Long lastTradeId) {
+        this.lastTradeId = lastTradeId;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    /**
+     * Composite primary key (user_id, ticker).
+     */
+    public static class Key implements Serializable {
+
+        private UUID userId;
+        private String ticker;
+
+        public Key() {
+        }
+
+        public Key(UUID userId, String ticker) {
+            this.userId = userId;
+            this.ticker = ticker;
+        }
+
+        public UUID getUserId() {
+            return userId;
+        }
+
+        public String getTicker() {
+            return ticker;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return Objects.equals(userId, key.userId) && Objects.equals(ticker, key.ticker);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(userId, ticker);
+        }
+    }
+}
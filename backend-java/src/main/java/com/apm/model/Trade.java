@@ -1,5 +1,6 @@
 package com.apm.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.EnumType;
@@ -7,7 +8,9 @@ import jakarta.persistence.Enumerated;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
@@ -17,11 +20,25 @@ import java.util.UUID;
 
 /**
  * Trade entity representing individual transaction records.
+ * Indexed for the per-user and per-ticker lookups, both ordered by time.
+ * An idempotency key, if the client sent one, is unique per user.
  */
 @Entity
-@Table(name = "trades")
+@Table(name = "trades", indexes = {
+        @Index(name = "idx_trades_user_ticker_ts", columnList = "user_id, ticker, timestamp"),
+        @Index(name = "idx_trades_ticker_ts", columnList = "ticker, timestamp")
+}, uniqueConstraints = {
+        @UniqueConstraint(name = "uk_trades_user_idempotency_key", columnNames = {"user_id", "idempotency_key"})
+})
 public class Trade {
 
+    /**
+     * Decimal places stored for a price. Prices are rounded to this before
+     * a trade is built, so the row, the position snapshot and the in-memory
+     * book all see the stored value.
+     */
+    public static final int PRICE_SCALE = 2;
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -43,12 +60,16 @@ public class Trade {
     private Integer quantity;
 
     @NotNull(message = "Price is required")
-    @Column(nullable = false, precision = 10, scale = 2)
+    @Column(nullable = false, precision = 10, scale = PRICE_SCALE)
     private BigDecimal price;
 
     @Column(nullable = false)
     private LocalDateTime timestamp;
 
+    @JsonIgnore
+    @Column(name = "idempotency_key", length = 100)
+    private String idempotencyKey;
+
     public Trade() {
         this.timestamp = LocalDateTime.now();
     }
@@ -118,4 +139,12 @@ public class Trade {
     public void setTimestamp(LocalDateTime timestamp) {
         this.timestamp = timestamp;
     }
+
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    public void setIdempotencyKey(String idempotencyKey) {
+        this.idempotencyKey = idempotencyKey;
+    }
 }
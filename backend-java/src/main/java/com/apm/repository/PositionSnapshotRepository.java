@@ -0,0 +1,38 @@
+package com.apm.repository;
+
+import com.apm.model.PositionSnapshot;
+import jakarta.persistence.LockModeType;
+import java.util.Optional;
+import java.util.UUID;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Repository interface for PositionSnapshot entity database operations.
+ */
+@Repository
+public interface PositionSnapshotRepository extends JpaRepository<PositionSnapshot, PositionSnapshot.Key>,
+        PositionSnapshotRepositoryCustom {
+
+    /**
+     * Find and lock the snapshot for a user and ticker, so concurrent trades
+     * on the same position are applied one after another.
+     *
+     * @param userId the user's UUID
+     * @param ticker the stock ticker symbol
+     * @return optional containing the locked snapshot if it exists
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM PositionSnapshot s WHERE s.userId = :userId AND s.ticker = :ticker")
+    Optional<PositionSnapshot> findForUpdate(UUID userId, String ticker);
+
+    /**
+     * Highest trade id folded into any snapshot.
+     *
+     * @return the snapshot watermark, or null if there are no snapshots
+     */
+    @Query("SELECT MAX(s.lastTradeId) FROM PositionSnapshot s")
+    Long findMaxLastTradeId();
+}
@@ -0,0 +1,21 @@
+package com.apm.repository;
+
+import java.util.UUID;
+
+/**
+ * Snapshot writes that JPA cannot express.
+ */
+public interface PositionSnapshotRepositoryCustom {
+
+    /**
+     * Create an empty snapshot row for a user and ticker unless one exists,
+     * so it can then be locked with
+     * {@link PositionSnapshotRepository#findForUpdate}. Concurrent first
+     * trades on the same position both succeed; one of them waits for the
+     * other's row. Runs in the caller's transaction.
+     *
+     * @param userId the user's UUID
+     * @param ticker the stock ticker symbol
+     */
+    void insertIfAbsent(UUID userId, String ticker);
+}
@@ -0,0 +1,58 @@
+package com.apm.repository;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Insert-if-absent for position snapshots in plain JDBC. PostgreSQL does it
+ * atomically with ON CONFLICT DO NOTHING. Other databases (H2) insert only
+ * if no row is visible and treat a duplicate key from a concurrent insert
+ * as success; that is safe there because a failed statement does not
+ * abort the transaction as it does in PostgreSQL.
+ */
+public class PositionSnapshotRepositoryCustomImpl implements PositionSnapshotRepositoryCustom {
+
+    static final String UPSERT_SQL =
+            "INSERT INTO positions (user_id, ticker, quantity, total_cost, last_trade_id, updated_at)"
+                    + " VALUES (?, ?, 0, 0, 0, ?) ON CONFLICT (user_id, ticker) DO NOTHING";
+
+    static final String INSERT_MISSING_SQL =
+            "INSERT INTO positions (user_id, ticker, quantity, total_cost, last_trade_id, updated_at)"
+                    + " SELECT ?, ?, 0, 0, 0, ?"
+                    + " WHERE NOT EXISTS (SELECT 1 FROM positions WHERE user_id = ? AND ticker = ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private volatile Boolean postgres;
+
+    public PositionSnapshotRepositoryCustomImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void insertIfAbsent(UUID userId, String ticker) {
+        LocalDateTime now = LocalDateTime.now();
+        if (isPostgres()) {
+            jdbcTemplate.update(UPSERT_SQL, userId, ticker, now);
+            return;
+        }
+        try {
+            jdbcTemplate.update(INSERT_MISSING_SQL, userId, ticker, now, userId, ticker);
+        } catch (DuplicateKeyException e) {
+            // A concurrent transaction created the row first
+        }
+    }
+
+    private boolean isPostgres() {
+        Boolean result = postgres;
+        if (result == null) {
+            String product = jdbcTemplate.execute(
+                    (ConnectionCallback<String>) con -> con.getMetaData().getDatabaseProductName());
+            result = "PostgreSQL".equalsIgnoreCase(product);
+            postgres = result;
+        }
+        return result;
+    }
+}
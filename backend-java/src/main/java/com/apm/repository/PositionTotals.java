@@ -0,0 +1,29 @@
+package com.apm.repository;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * Net position of one user in one ticker, aggregated in the database.
+ */
+public interface PositionTotals {
+
+    UUID getUserId();
+
+    String getTicker();
+
+    /**
+     * Bought minus sold quantity.
+     */
+    Long getQuantity();
+
+    /**
+     * Sum of price * quantity over BUY trades.
+     */
+    BigDecimal getTotalCost();
+
+    /**
+     * Highest trade id included.
+     */
+    Long getLastTradeId();
+}
@@ -0,0 +1,69 @@
+package com.apm.repository;
+
+import com.apm.model.Trade;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Plain JDBC writes to the trades table for the bulk paths, where one JPA
+ * insert per trade (IDENTITY ids cannot be batched by Hibernate) would be
+ * too slow.
+ */
+@Repository
+public class TradeJdbcRepository {
+
+    static final String INSERT_SQL =
+            "INSERT INTO trades (user_id, ticker, type, quantity, price, timestamp, idempotency_key)"
+                    + " VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public TradeJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Insert the trades as one JDBC batch and set their generated ids.
+     * Runs in the caller's transaction, if any.
+     *
+     * @param trades new trades without ids
+     */
+    public void insertAll(List<Trade> trades) {
+        KeyHolder keys = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(con -> con.prepareStatement(INSERT_SQL, new String[] {"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        Trade trade = trades.get(i);
+                        ps.setObject(1, trade.getUserId());
+                        ps.setString(2, trade.getTicker());
+                        ps.setString(3, trade.getType().name());
+                        ps.setInt(4, trade.getQuantity());
+                        ps.setBigDecimal(5, trade.getPrice());
+                        ps.setObject(6, trade.getTimestamp());
+                        ps.setString(7, trade.getIdempotencyKey());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return trades.size();
+                    }
+                }, keys);
+
+        List<Map<String, Object>> keyList = keys.getKeyList();
+        if (keyList.size() != trades.size()) {
+            throw new IncorrectResultSizeDataAccessException("Generated trade ids", trades.size(), keyList.size());
+        }
+        for (int i = 0; i < trades.size(); i++) {
+            trades.get(i).setId(((Number) keyList.get(i).get("id")).longValue());
+        }
+    }
+}
@@ -2,8 +2,11 @@ package com.apm.repository;
 
 import com.apm.model.Trade;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
@@ -11,7 +14,7 @@ import org.springframework.stereotype.Repository;
  * Repository interface for Trade entity database operations.
  */
 @Repository
-public interface TradeRepository extends JpaRepository<Trade, Long> {
+public interface TradeRepository extends JpaRepository<Trade, Long>, JpaSpecificationExecutor<Trade> {
 
     /**
      * Find all trades for a specific user.
@@ -37,6 +40,58 @@ public interface TradeRepository extends JpaRepository<Trade, Long> {
     @Query("SELECT DISTINCT t.ticker FROM Trade t")
     List<String> findDistinctTickers();
 
+    /**
+     * Find the next trades after a given id, in id order.
+     *
+     * @param id       exclusive lower bound
+     * @param pageable page size (page number should be 0)
+     * @return trades with a greater id
+     */
+    List<Trade> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+    /**
+     * Get the highest trade id.
+     *
+     * @return the highest id, or null if there are no trades
+     */
+    @Query("SELECT MAX(t.id) FROM Trade t")
+    Long findMaxId();
+
+    /**
+     * Aggregate every user's net quantity and BUY cost per ticker in the
+     * database, without loading trade entities.
+     *
+     * @param maxId highest trade id to include
+     * @return one row per user and ticker
+     */
+    @Query("SELECT t.userId AS userId, t.ticker AS ticker, "
+            + "SUM(CASE WHEN t.type = com.apm.model.TradeType.BUY THEN t.quantity ELSE -t.quantity END) "
+            + "AS quantity, "
+            + "SUM(CASE WHEN t.type = com.apm.model.TradeType.BUY THEN t.price * t.quantity "
+            + "ELSE 0 END) AS totalCost, "
+            + "MAX(t.id) AS lastTradeId "
+            + "FROM Trade t WHERE t.userId IS NOT NULL AND t.id <= :maxId "
+            + "GROUP BY t.userId, t.ticker")
+    List<PositionTotals> findPositionTotals(Long maxId);
+
+    /**
+     * Aggregate one user's net quantity and BUY cost in a ticker over all
+     * committed trades, like {@link #findPositionTotals(Long)}.
+     *
+     * @param userId the user's UUID
+     * @param ticker the stock ticker symbol
+     * @return the totals, or empty if the user never traded the ticker
+     */
+    @Query("SELECT t.userId AS userId, t.ticker AS ticker, "
+            + "SUM(CASE WHEN t.type = com.apm.model.TradeType.BUY THEN t.quantity ELSE -t.quantity END) "
+            + "AS quantity, "
+            + "SUM(CASE WHEN t.type = com.apm.model.TradeType.BUY THEN t.price * t.quantity "
+            + "ELSE 0 END) AS totalCost, "
+            + "MAX(t.id) AS lastTradeId "
+            + "FROM Trade t WHERE t.userId = :userId AND t.ticker = :ticker "
+            + "GROUP BY t.userId, t.ticker")
+    Optional<PositionTotals> findPositionTotals(UUID userId, String ticker);
+
     /**
      * Find all trades for a user and specific ticker.
      *
@@ -45,4 +100,13 @@ public interface TradeRepository extends JpaRepository<Trade, Long> {
      * @return list of matching trades
      */
     List<Trade> findByUserIdAndTicker(UUID userId, String ticker);
+
+    /**
+     * Find the trade a user submitted with the given idempotency key.
+     *
+     * @param userId         the user's UUID
+     * @param idempotencyKey the client supplied key
+     * @return the trade, if one was recorded with this key
+     */
+    Optional<Trade> findByUserIdAndIdempotencyKey(UUID userId, String idempotencyKey);
 }
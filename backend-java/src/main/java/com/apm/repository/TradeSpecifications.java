@@ -0,0 +1,35 @@
+package com.apm.repository;
+
+import com.apm.model.Trade;
+import java.util.UUID;
+import org.springframework.data.jpa.domain.Specification;
+
+/**
+ * Query filters for trades. A null argument matches every trade.
+ */
+public final class TradeSpecifications {
+
+    private TradeSpecifications() {
+    }
+
+    /**
+     * Trades with an id greater than the cursor.
+     */
+    public static Specification<Trade> idAfter(Long id) {
+        return (root, query, cb) -> id == null ? null : cb.greaterThan(root.get("id"), id);
+    }
+
+    /**
+     * Trades of one user.
+     */
+    public static Specification<Trade> forUser(UUID userId) {
+        return (root, query, cb) -> userId == null ? null : cb.equal(root.get("userId"), userId);
+    }
+
+    /**
+     * Trades in one ticker.
+     */
+    public static Specification<Trade> forTicker(String ticker) {
+        return (root, query, cb) -> ticker == null ? null : cb.equal(root.get("ticker"), ticker.toUpperCase());
+    }
+}
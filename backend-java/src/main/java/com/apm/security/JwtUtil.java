@@ -1,33 +1,91 @@
 package com.apm.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.util.Base64;
 import java.util.Date;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
 /**
  * Utility class for JWT token operations.
+ * The signing key and the parser are built once. Verified tokens can be
+ * remembered by the SHA-256 hash of the token until they expire, so a
+ * token presented on every request is only verified the first time; a
+ * maximum cache size of 0 turns this off.
  */
 @Component
 public class JwtUtil {
 
-    @Value("${jwt.secret:apm-secret-key-for-jwt-token-generation-min-256-bits}")
-    private String secret;
+    private static final String CACHE_NAME = "jwt.verified-tokens";
 
-    @Value("${jwt.expiration:86400000}")
-    private long expiration; // 24 hours in milliseconds
+    private final SecretKey signingKey;
+    private final JwtParser parser;
+    private final long expiration;
+    private final Clock clock;
+    private final Cache<String, Claims> verifiedTokens;
 
-    private SecretKey getSigningKey() {
-        byte[] keyBytes = secret.getBytes(StandardCharsets.UTF_8);
-        return Keys.hmacShaKeyFor(keyBytes);
+    /**
+     * Create the token utility.
+     *
+     * @param secret        HMAC secret, at least 256 bits
+     * @param expiration    token lifetime in milliseconds
+     * @param cacheMaxSize  most verified tokens remembered, 0 to verify
+     *                      every time
+     * @param meterRegistry registry for cache metrics
+     */
+    @Autowired
+    public JwtUtil(
+            @Value("${jwt.secret:apm-secret-key-for-jwt-token-generation-min-256-bits}") String secret,
+            @Value("${jwt.expiration:86400000}") long expiration,
+            @Value("${jwt.cache.max-size:10000}") long cacheMaxSize,
+            MeterRegistry meterRegistry) {
+        this(secret, expiration, cacheMaxSize, meterRegistry, Clock.systemUTC(), Ticker.systemTicker());
+    }
+
+    /**
+     * Create the token utility with its own time sources, for tests.
+     *
+     * @param clock  wall clock for issuing and checking expiry
+     * @param ticker time source of the verified-token cache
+     */
+    JwtUtil(String secret, long expiration, long cacheMaxSize, MeterRegistry meterRegistry,
+            Clock clock, Ticker ticker) {
+        this.signingKey = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        this.parser = Jwts.parser()
+                .verifyWith(signingKey)
+                .clock(() -> new Date(clock.millis()))
+                .build();
+        this.expiration = expiration;
+        this.clock = clock;
+        if (cacheMaxSize > 0) {
+            this.verifiedTokens = Caffeine.newBuilder()
+                    .maximumSize(cacheMaxSize)
+                    .expireAfter(new UntilTokenExpires(clock))
+                    .ticker(ticker)
+                    .recordStats()
+                    .build();
+            CaffeineCacheMetrics.monitor(meterRegistry, verifiedTokens, CACHE_NAME);
+        } else {
+            this.verifiedTokens = null;
+        }
     }
 
     /**
@@ -37,17 +95,12 @@ public class JwtUtil {
      * @return the JWT token
      */
     public String generateToken(String email) {
-        Map<String, Object> claims = new HashMap<>();
-        return createToken(claims, email);
-    }
-
-    private String createToken(Map<String, Object> claims, String subject) {
+        long now = clock.millis();
         return Jwts.builder()
-                .claims(claims)
-                .subject(subject)
-                .issuedAt(new Date(System.currentTimeMillis()))
-                .expiration(new Date(System.currentTimeMillis() + expiration))
-                .signWith(getSigningKey())
+                .subject(email)
+                .issuedAt(new Date(now))
+                .expiration(new Date(now + expiration))
+                .signWith(signingKey)
                 .compact();
     }
 
@@ -79,12 +132,27 @@ public class JwtUtil {
         return claimsResolver.apply(claims);
     }
 
+    /**
+     * Claims of a verified token, from the cache when it has been verified
+     * before. Tokens that fail verification are never cached.
+     */
     private Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+        if (verifiedTokens == null) {
+            return parse(token);
+        }
+        String key = hash(token);
+        Claims claims = verifiedTokens.getIfPresent(key);
+        if (claims == null) {
+            claims = parse(token);
+            if (claims.getExpiration() != null) {
+                verifiedTokens.put(key, claims);
+            }
+        }
+        return claims;
+    }
+
+    private Claims parse(String token) {
+        return parser.parseSignedClaims(token).getPayload();
     }
 
     /**
@@ -94,7 +162,7 @@ public class JwtUtil {
      * @return true if expired
      */
     public Boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+        return isExpired(extractAllClaims(token));
     }
 
     /**
@@ -105,7 +173,53 @@ public class JwtUtil {
      * @return true if valid
      */
     public Boolean validateToken(String token, String email) {
-        final String tokenEmail = extractEmail(token);
-        return (tokenEmail.equals(email) && !isTokenExpired(token));
+        final Claims claims = extractAllClaims(token);
+        return (claims.getSubject().equals(email) && !isExpired(claims));
+    }
+
+    private boolean isExpired(Claims claims) {
+        Date expiresAt = claims.getExpiration();
+        return expiresAt != null && expiresAt.getTime() < clock.millis();
+    }
+
+    /**
+     * Cache key for a token: its SHA-256 hash, so the cache holds no
+     * usable bearer tokens and keys have a fixed size.
+     */
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Expire each cache entry when its token expires.
+     */
+    private static final class UntilTokenExpires implements Expiry<String, Claims> {
+
+        private final Clock clock;
+
+        UntilTokenExpires(Clock clock) {
+            this.clock = clock;
+        }
+
+        @Override
+        public long expireAfterCreate(String key, Claims claims, long currentTime) {
+            long millis = claims.getExpiration().getTime() - clock.millis();
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(0, millis));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Claims claims, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, claims, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, Claims claims, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
     }
 }
@@ -0,0 +1,84 @@
+package com.apm.security;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Admission control in front of the API. Each request is charged to its
+ * client, the authenticated user if there is one and otherwise the remote
+ * address, under the auth, write or read budget. Requests over budget get
+ * 429 with a Retry-After header and never reach a controller, so a client
+ * polling in a tight loop cannot cause unlimited market engine calls.
+ * Health checks and CORS preflights are not limited.
+ * <p>
+ * The chain has no JWT authentication filter yet, so every request is
+ * still keyed on its remote address; limits per user take effect once one
+ * runs before this filter. Behind a proxy the remote address is the
+ * client's only if server.forward-headers-strategy is set, otherwise all
+ * clients share the proxy's buckets.
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private final RateLimiter rateLimiter;
+
+    public RateLimitFilter(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return "OPTIONS".equals(request.getMethod())
+                || path.equals("/api/health")
+                || path.startsWith("/actuator/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+            FilterChain filterChain) throws ServletException, IOException {
+        long wait = rateLimiter.tryAcquire(client(request), budget(request));
+        if (wait > 0) {
+            long seconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(wait + TimeUnit.SECONDS.toNanos(1) - 1));
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(seconds));
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.getWriter().write("{\"error\":\"Too many requests, try again later\"}");
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    private static String client(HttpServletRequest request) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.isAuthenticated()
+                && !(authentication instanceof AnonymousAuthenticationToken)) {
+            return "user:" + authentication.getName();
+        }
+        return "ip:" + request.getRemoteAddr();
+    }
+
+    private static RateLimiter.Budget budget(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (path.startsWith("/api/v1/auth/")) {
+            return RateLimiter.Budget.AUTH;
+        }
+        switch (request.getMethod()) {
+            case "GET":
+            case "HEAD":
+                return RateLimiter.Budget.READ;
+            default:
+                return RateLimiter.Budget.WRITE;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.apm.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Token buckets per client and budget. Reads, writes and auth requests
+ * draw from separate budgets, so a client polling a read endpoint cannot
+ * use up its allowance for trades or logins. Buckets live in a size
+ * bounded cache and are dropped after being idle for the idle timeout; a
+ * dropped bucket comes back full, so the idle timeout should be longer
+ * than any bucket takes to refill.
+ */
+@Component
+public class RateLimiter {
+
+    /**
+     * Separately limited kinds of request.
+     */
+    public enum Budget {
+        READ, WRITE, AUTH
+    }
+
+    private final boolean enabled;
+    private final Map<Budget, Limit> limits = new EnumMap<>(Budget.class);
+    private final Map<Budget, Counter> rejected = new EnumMap<>(Budget.class);
+    private final Cache<String, TokenBucket> buckets;
+
+    /**
+     * Create the rate limiter.
+     *
+     * @param enabled       whether requests are limited at all
+     * @param readCapacity  largest burst of reads
+     * @param readRate      sustained reads per second
+     * @param writeCapacity largest burst of writes
+     * @param writeRate     sustained writes per second
+     * @param authCapacity  largest burst of signups and logins
+     * @param authRate      sustained signups and logins per second
+     * @param maxClients    most buckets kept in memory
+     * @param idleTimeout   how long an unused bucket is kept
+     * @param meterRegistry registry for rejection and bucket metrics
+     */
+    @Autowired
+    public RateLimiter(
+            @Value("${rate-limit.enabled:true}") boolean enabled,
+            @Value("${rate-limit.read.capacity:40}") int readCapacity,
+            @Value("${rate-limit.read.per-second:20}") double readRate,
+            @Value("${rate-limit.write.capacity:20}") int writeCapacity,
+            @Value("${rate-limit.write.per-second:10}") double writeRate,
+            @Value("${rate-limit.auth.capacity:5}") int authCapacity,
+            @Value("${rate-limit.auth.per-second:0.2}") double authRate,
+            @Value("${rate-limit.max-clients:100000}") long maxClients,
+            @Value("${rate-limit.idle-timeout:10m}") Duration idleTimeout,
+            MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        limits.put(Budget.READ, new Limit(readCapacity, readRate));
+        limits.put(Budget.WRITE, new Limit(writeCapacity, writeRate));
+        limits.put(Budget.AUTH, new Limit(authCapacity, authRate));
+        for (Budget budget : Budget.values()) {
+            rejected.put(budget, Counter.builder("http.rate-limit.rejected")
+                    .description("Requests rejected by the rate limiter")
+                    .tag("budget", budget.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxClients)
+                .expireAfterAccess(idleTimeout)
+                .build();
+        Gauge.builder("http.rate-limit.buckets", buckets, Cache::estimatedSize)
+                .description("Rate limit buckets in memory")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Take one request from a client's budget.
+     *
+     * @param client the client, e.g. a user name or an IP address
+     * @param budget the kind of request
+     * @return 0 if the request may proceed, otherwise nanoseconds until it
+     *         would be allowed
+     */
+    public long tryAcquire(String client, Budget budget) {
+        long now = System.nanoTime();
+        Limit limit = limits.get(budget);
+        TokenBucket bucket = buckets.get(budget.name() + ":" + client,
+                key -> new TokenBucket(limit.capacity, limit.perSecond, now));
+        long wait = bucket.tryAcquire(now);
+        if (wait > 0) {
+            rejected.get(budget).increment();
+        }
+        return wait;
+    }
+
+    private static final class Limit {
+
+        private final int capacity;
+        private final double perSecond;
+
+        Limit(int capacity, double perSecond) {
+            if (capacity < 1 || perSecond <= 0) {
+                throw new IllegalArgumentException(
+                        "Rate limit needs a capacity of at least 1 and a positive rate");
+            }
+            this.capacity = capacity;
+            this.perSecond = perSecond;
+        }
+    }
+}
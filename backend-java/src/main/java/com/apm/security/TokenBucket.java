@@ -0,0 +1,51 @@
+package com.apm.security;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket holding up to capacity tokens, refilled at a
+ * fixed rate. The state is a single timestamp updated by compare-and-set
+ * (the GCRA form of a token bucket): the time at which the bucket would be
+ * full again. Taking a token pushes it one refill interval further; a
+ * request is refused when that would put it more than capacity intervals
+ * ahead of now.
+ */
+final class TokenBucket {
+
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final AtomicLong fullAt;
+
+    /**
+     * Create a full bucket.
+     *
+     * @param capacity        most tokens held, i.e. the largest burst
+     * @param tokensPerSecond refill rate
+     * @param nowNanos        current {@link System#nanoTime()}
+     */
+    TokenBucket(int capacity, double tokensPerSecond, long nowNanos) {
+        this.intervalNanos = Math.max(1, (long) (1_000_000_000L / tokensPerSecond));
+        this.toleranceNanos = Math.multiplyExact(intervalNanos, Math.max(1, capacity));
+        this.fullAt = new AtomicLong(nowNanos);
+    }
+
+    /**
+     * Take one token if there is one.
+     *
+     * @param nowNanos current {@link System#nanoTime()}
+     * @return 0 if a token was taken, otherwise nanoseconds until one is available
+     */
+    long tryAcquire(long nowNanos) {
+        while (true) {
+            long current = fullAt.get();
+            long next = Math.max(current - nowNanos, 0) + nowNanos + intervalNanos;
+            long ahead = next - nowNanos;
+            if (ahead > toleranceNanos) {
+                return ahead - toleranceNanos;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+}
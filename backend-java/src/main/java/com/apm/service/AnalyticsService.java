@@ -1,14 +1,13 @@
 package com.apm.service;
 
-import com.apm.model.Trade;
-import com.apm.model.TradeType;
-import com.apm.repository.TradeRepository;
+import com.apm.dto.AnalyticsResponse;
+import com.apm.dto.HoldingAnalytics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -16,129 +15,123 @@ import java.util.UUID;
 
 /**
  * Service for portfolio analytics and P&L calculations.
+ * Cost basis and realized P&L come from the user's tax lots, so a SELL
+ * lowers the cost basis by the cost of the shares it sold under the
+ * configured method.
  */
 @Service
 public class AnalyticsService {
 
     private static final Logger logger = LoggerFactory.getLogger(AnalyticsService.class);
 
-    private final TradeRepository tradeRepository;
+    private static final String CURRENCY = "USD";
+    private static final String PRICE_UNAVAILABLE = "Price unavailable";
+
+    private final LotBook lotBook;
     private final StockService stockService;
 
-    public AnalyticsService(TradeRepository tradeRepository, StockService stockService) {
-        this.tradeRepository = tradeRepository;
+    public AnalyticsService(LotBook lotBook, StockService stockService) {
+        this.lotBook = lotBook;
         this.stockService = stockService;
     }
 
     /**
      * Calculate comprehensive portfolio analytics with P&L breakdown.
+     * Computed in fixed point ({@link Money}).
      *
      * @param userId the user's UUID
      * @return analytics including holdings, cost basis, current value, and P&L
      */
-    public Map<String, Object> calculatePortfolioAnalytics(UUID userId) {
-        List<Trade> trades = tradeRepository.findByUserId(userId);
-
-        // Calculate holdings per ticker with cost basis
-        Map<String, HoldingInfo> holdings = new HashMap<>();
-
-        for (Trade trade : trades) {
-            String ticker = trade.getTicker();
-            holdings.putIfAbsent(ticker, new HoldingInfo());
-            HoldingInfo info = holdings.get(ticker);
-
-            if (trade.getType() == TradeType.BUY) {
-                BigDecimal tradeCost = trade.getPrice().multiply(BigDecimal.valueOf(trade.getQuantity()));
-                info.quantity += trade.getQuantity();
-                info.totalCost = info.totalCost.add(tradeCost);
-            } else {
-                // SELL reduces quantity but doesn't affect average cost basis
-                info.quantity -= trade.getQuantity();
+    public AnalyticsResponse calculatePortfolioAnalytics(UUID userId) {
+        // Holdings per ticker with cost basis and realized P&L from the tax lots
+        Map<String, LotPosition> holdings = lotBook.getPositions(userId);
+
+        // Fetch current prices for all open positions in one bulk lookup
+        List<String> openTickers = new ArrayList<>();
+        for (Map.Entry<String, LotPosition> entry : holdings.entrySet()) {
+            if (entry.getValue().quantity() > 0) {
+                openTickers.add(entry.getKey());
             }
         }
-
-        // Calculate current values and P&L
-        Map<String, Object> result = new HashMap<>();
-        Map<String, Object> holdingsDetail = new HashMap<>();
-
-        BigDecimal totalCostBasis = BigDecimal.ZERO;
-        BigDecimal totalCurrentValue = BigDecimal.ZERO;
-
-        for (Map.Entry<String, HoldingInfo> entry : holdings.entrySet()) {
-            String ticker = entry.getKey();
-            HoldingInfo info = entry.getValue();
-
-            if (info.quantity <= 0) {
-                continue; // Skip sold-out positions
+        Map<String, BigDecimal> prices = new HashMap<>(openTickers.isEmpty()
+                ? Map.of()
+                : stockService.getCurrentPrices(openTickers));
+
+        // Tickers the bulk lookup left out are looked up alone, so the
+        // response can say why each one has no price
+        Map<String, String> errors = new HashMap<>();
+        for (String ticker : openTickers) {
+            if (prices.containsKey(ticker)) {
+                continue;
             }
-
-            Map<String, Object> tickerAnalytics = new HashMap<>();
-            tickerAnalytics.put("quantity", info.quantity);
-            tickerAnalytics.put("costBasis", info.totalCost.setScale(2, RoundingMode.HALF_UP));
-
-            // Calculate average cost per share
-            BigDecimal avgCost = info.totalCost.divide(
-                    BigDecimal.valueOf(info.quantity), 2, RoundingMode.HALF_UP);
-            tickerAnalytics.put("avgCostPerShare", avgCost);
-
             try {
-                // Fetch current price
-                BigDecimal currentPrice = stockService.getCurrentPrice(ticker);
-                BigDecimal currentValue = currentPrice.multiply(BigDecimal.valueOf(info.quantity));
-
-                tickerAnalytics.put("currentPrice", currentPrice);
-                tickerAnalytics.put("currentValue", currentValue.setScale(2, RoundingMode.HALF_UP));
-
-                // Calculate P&L
-                BigDecimal profitLoss = currentValue.subtract(info.totalCost);
-                tickerAnalytics.put("profitLoss", profitLoss.setScale(2, RoundingMode.HALF_UP));
-
-                // Calculate percentage gain/loss
-                BigDecimal percentChange = profitLoss.divide(info.totalCost, 4, RoundingMode.HALF_UP)
-                        .multiply(BigDecimal.valueOf(100));
-                tickerAnalytics.put("percentChange", percentChange.setScale(2, RoundingMode.HALF_UP));
-
-                totalCurrentValue = totalCurrentValue.add(currentValue);
-                totalCostBasis = totalCostBasis.add(info.totalCost);
-
+                prices.put(ticker, stockService.getCurrentPrice(ticker));
             } catch (StockServiceException e) {
                 logger.warn("Could not fetch price for {}: {}", ticker, e.getMessage());
-                tickerAnalytics.put("currentPrice", "unavailable");
-                tickerAnalytics.put("error", e.getMessage());
-                totalCostBasis = totalCostBasis.add(info.totalCost);
+                errors.put(ticker, e.getMessage());
             }
-
-            holdingsDetail.put(ticker, tickerAnalytics);
-        }
-
-        result.put("holdings", holdingsDetail);
-        result.put("totalCostBasis", totalCostBasis.setScale(2, RoundingMode.HALF_UP));
-        result.put("totalCurrentValue", totalCurrentValue.setScale(2, RoundingMode.HALF_UP));
-
-        // Total P&L
-        BigDecimal totalProfitLoss = totalCurrentValue.subtract(totalCostBasis);
-        result.put("totalProfitLoss", totalProfitLoss.setScale(2, RoundingMode.HALF_UP));
-
-        // Total percentage change
-        if (totalCostBasis.compareTo(BigDecimal.ZERO) > 0) {
-            BigDecimal totalPercentChange = totalProfitLoss
-                    .divide(totalCostBasis, 4, RoundingMode.HALF_UP)
-                    .multiply(BigDecimal.valueOf(100));
-            result.put("totalPercentChange", totalPercentChange.setScale(2, RoundingMode.HALF_UP));
-        } else {
-            result.put("totalPercentChange", BigDecimal.ZERO);
         }
 
-        result.put("currency", "USD");
-
-        return result;
+        return analytics(holdings, prices, errors, openTickers.size());
     }
 
     /**
-     * Helper class to track holding information during calculation.
+     * Analytics in fixed point; results are converted to BigDecimal only
+     * when they are put into the response.
+     *
+     * @param errors why a ticker missing from prices could not be priced
      */
-    private static class HoldingInfo {
-        int quantity = 0;
-        BigDecimal totalCost = BigDecimal.ZERO;
+    AnalyticsResponse analytics(Map<String, LotPosition> holdings, Map<String, BigDecimal> prices,
+            Map<String, String> errors, int openPositions) {
+        Map<String, HoldingAnalytics> holdingsDetail = new HashMap<>(openPositions * 4 / 3 + 1);
+
+        Money totalCostBasis = Money.zero(CURRENCY);
+        Money totalCurrentValue = Money.zero(CURRENCY);
+        Money totalRealized = Money.zero(CURRENCY);
+
+        for (Map.Entry<String, LotPosition> entry : holdings.entrySet()) {
+            String ticker = entry.getKey();
+            LotPosition position = entry.getValue();
+            int quantity = position.quantity();
+            Money realized = Money.of(position.realizedProfitLoss(), CURRENCY);
+            totalRealized = totalRealized.plus(realized);
+
+            if (quantity <= 0) {
+                continue; // Sold-out positions only count towards realized P&L
+            }
+            Money totalCost = Money.of(position.costBasis(), CURRENCY);
+            BigDecimal costBasis = totalCost.round(2).toBigDecimal();
+            BigDecimal avgCost = totalCost.dividedBy(quantity, 2).toBigDecimal();
+
+            BigDecimal currentPrice = prices.get(ticker);
+            if (currentPrice != null) {
+                Money currentValue = Money.of(currentPrice, CURRENCY).times(quantity);
+                Money profitLoss = currentValue.minus(totalCost);
+
+                holdingsDetail.put(ticker, HoldingAnalytics.priced(quantity, costBasis, avgCost, currentPrice,
+                        currentValue.round(2).toBigDecimal(),
+                        profitLoss.round(2).toBigDecimal(),
+                        totalCost.signum() > 0 ? profitLoss.percentOf(totalCost) : BigDecimal.ZERO,
+                        realized.round(2).toBigDecimal()));
+
+                totalCurrentValue = totalCurrentValue.plus(currentValue);
+            } else {
+                holdingsDetail.put(ticker, HoldingAnalytics.unavailable(quantity, costBasis, avgCost,
+                        realized.round(2).toBigDecimal(), errors.getOrDefault(ticker, PRICE_UNAVAILABLE)));
+            }
+            totalCostBasis = totalCostBasis.plus(totalCost);
+        }
+
+        Money totalProfitLoss = totalCurrentValue.minus(totalCostBasis);
+
+        return new AnalyticsResponse(
+                holdingsDetail,
+                lotBook.getMethod().name(),
+                totalCostBasis.round(2).toBigDecimal(),
+                totalCurrentValue.round(2).toBigDecimal(),
+                totalProfitLoss.round(2).toBigDecimal(),
+                totalCostBasis.signum() > 0 ? totalProfitLoss.percentOf(totalCostBasis) : BigDecimal.ZERO,
+                totalRealized.round(2).toBigDecimal(),
+                CURRENCY);
     }
 }
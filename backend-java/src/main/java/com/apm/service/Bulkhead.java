@@ -0,0 +1,56 @@
+package com.apm.service;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caps the number of concurrent calls to a downstream service.
+ * Callers that cannot get a slot within the wait time are rejected instead
+ * of queueing up request threads behind a slow dependency.
+ */
+public class Bulkhead {
+
+    private final int maxConcurrentCalls;
+    private final Semaphore permits;
+    private final long maxWaitNanos;
+
+    /**
+     * Create a bulkhead.
+     *
+     * @param maxConcurrentCalls calls allowed in flight at once
+     * @param maxWait            how long a caller may wait for a slot
+     */
+    public Bulkhead(int maxConcurrentCalls, Duration maxWait) {
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.permits = new Semaphore(maxConcurrentCalls, true);
+        this.maxWaitNanos = maxWait.toNanos();
+    }
+
+    /**
+     * Try to take a slot; a successful call must be paired with
+     * {@link #release()}.
+     *
+     * @return false if no slot became free in time
+     */
+    public boolean tryAcquire() {
+        try {
+            return permits.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    public int getAvailablePermits() {
+        return permits.availablePermits();
+    }
+
+    public int getMaxConcurrentCalls() {
+        return maxConcurrentCalls;
+    }
+}
@@ -0,0 +1,147 @@
+package com.apm.service;
+
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Caching decorator for StockService.
+ * Keeps recently fetched prices in a bounded cache (W-TinyLFU eviction) so
+ * repeated lookups of the same ticker do not hit the market engine. When a
+ * refresh interval is configured, entries older than it are still served
+ * while a background reload runs (stale-while-revalidate).
+ */
+public class CachingStockService implements StockService, MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(CachingStockService.class);
+
+    private static final String CACHE_NAME = "market.prices";
+
+    private final StockService delegate;
+    private final LoadingCache<String, BigDecimal> cache;
+
+    /**
+     * Create a caching decorator.
+     *
+     * @param delegate        the underlying price source
+     * @param maximumSize     maximum number of tickers kept in the cache
+     * @param timeToLive      how long a price may be served before it expires
+     * @param refreshAfter    age after which a background refresh is triggered
+     *                        (null or zero disables stale-while-revalidate)
+     * @param refreshExecutor executor running background refreshes
+     */
+    public CachingStockService(StockService delegate, long maximumSize, Duration timeToLive,
+            Duration refreshAfter, Executor refreshExecutor) {
+        this(delegate, maximumSize, timeToLive, refreshAfter, refreshExecutor, Ticker.systemTicker());
+    }
+
+    // Constructor for testing with a controllable clock
+    CachingStockService(StockService delegate, long maximumSize, Duration timeToLive,
+            Duration refreshAfter, Executor refreshExecutor, Ticker ticker) {
+        this.delegate = delegate;
+
+        Caffeine<Object, Object> builder = Caffeine.newBuilder()
+                .ticker(ticker)
+                .maximumSize(maximumSize)
+                .expireAfterWrite(timeToLive)
+                .executor(refreshExecutor)
+                .recordStats();
+
+        if (refreshAfter != null && !refreshAfter.isZero()) {
+            if (refreshAfter.compareTo(timeToLive) < 0) {
+                builder.refreshAfterWrite(refreshAfter);
+            } else {
+                logger.warn("Price refresh interval {} is not shorter than TTL {}; "
+                        + "stale-while-revalidate disabled", refreshAfter, timeToLive);
+            }
+        }
+
+        this.cache = builder.build(new PriceLoader());
+    }
+
+    @Override
+    public BigDecimal getCurrentPrice(String ticker) {
+        return cache.get(ticker.toUpperCase());
+    }
+
+    /**
+     * Serve cached prices and load all missing tickers with one bulk call.
+     */
+    @Override
+    public Map<String, BigDecimal> getCurrentPrices(Collection<String> tickers) {
+        Set<String> keys = new HashSet<>();
+        for (String ticker : tickers) {
+            keys.add(ticker.toUpperCase());
+        }
+        return cache.getAll(keys);
+    }
+
+    /**
+     * Fetch fresh prices for the tickers with one bulk call and store them,
+     * replacing cached values. Tickers without a price keep their entry.
+     *
+     * @param tickers the stock symbols
+     * @return number of prices stored
+     */
+    public int refresh(Collection<String> tickers) {
+        Map<String, BigDecimal> prices = delegate.getCurrentPrices(tickers);
+        cache.putAll(prices);
+        return prices.size();
+    }
+
+    /**
+     * Drop a cached price so the next lookup goes to the market engine.
+     *
+     * @param ticker the stock symbol
+     */
+    public void invalidate(String ticker) {
+        cache.invalidate(ticker.toUpperCase());
+    }
+
+    /**
+     * Snapshot of hit, miss, load and eviction counters.
+     *
+     * @return cache statistics since startup
+     */
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, CACHE_NAME);
+    }
+
+    /**
+     * Loads single tickers and bulk misses from the delegate.
+     */
+    private class PriceLoader implements CacheLoader<String, BigDecimal> {
+
+        @Override
+        public BigDecimal load(String ticker) {
+            logger.debug("Price cache miss for {}", ticker);
+            return delegate.getCurrentPrice(ticker);
+        }
+
+        @Override
+        public Map<String, BigDecimal> loadAll(Set<? extends String> tickers) {
+            logger.debug("Price cache miss for {} tickers", tickers.size());
+            return delegate.getCurrentPrices(new ArrayList<>(tickers));
+        }
+    }
+}
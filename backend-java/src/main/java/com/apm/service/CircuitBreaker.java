@@ -0,0 +1,193 @@
+package com.apm.service;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Count-based circuit breaker.
+ * Tracks the outcome of the last {@code windowSize} calls and opens once the
+ * failure rate reaches the threshold. While open, calls are rejected until
+ * the open duration has passed; then a few trial calls are let through
+ * (half-open) and decide whether the breaker closes again or reopens.
+ */
+public class CircuitBreaker {
+
+    /**
+     * Breaker states.
+     */
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final String name;
+    private final int minimumCalls;
+    private final int failureRateThreshold;
+    private final long openDurationNanos;
+    private final int halfOpenCalls;
+    private final LongSupplier clock;
+
+    // Ring buffer of recent outcomes, true = failure
+    private final boolean[] outcomes;
+    private int next;
+    private int recorded;
+    private int failures;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int halfOpenPermits;
+    private int halfOpenSuccesses;
+
+    /**
+     * Create a circuit breaker.
+     *
+     * @param name                 name used in logs and metrics
+     * @param windowSize           number of recent calls considered
+     * @param minimumCalls         calls needed before the failure rate counts
+     * @param failureRateThreshold failure percentage (1-100) that opens it
+     * @param openDuration         how long to reject calls once open
+     * @param halfOpenCalls        trial calls allowed while half-open
+     */
+    public CircuitBreaker(String name, int windowSize, int minimumCalls, int failureRateThreshold,
+            Duration openDuration, int halfOpenCalls) {
+        this(name, windowSize, minimumCalls, failureRateThreshold, openDuration, halfOpenCalls,
+                System::nanoTime);
+    }
+
+    // Constructor for testing with a controllable clock
+    CircuitBreaker(String name, int windowSize, int minimumCalls, int failureRateThreshold,
+            Duration openDuration, int halfOpenCalls, LongSupplier clock) {
+        this.name = name;
+        this.outcomes = new boolean[Math.max(1, windowSize)];
+        this.minimumCalls = Math.max(1, Math.min(minimumCalls, outcomes.length));
+        this.failureRateThreshold = failureRateThreshold;
+        this.openDurationNanos = openDuration.toNanos();
+        this.halfOpenCalls = Math.max(1, halfOpenCalls);
+        this.clock = clock;
+    }
+
+    /**
+     * Ask whether a call may go ahead. Every granted permission must be
+     * followed by {@link #onSuccess()}, {@link #onFailure()} or
+     * {@link #releasePermission()}.
+     *
+     * @return false if the breaker is rejecting calls
+     */
+    public synchronized boolean tryAcquirePermission() {
+        if (state == State.OPEN) {
+            if (clock.getAsLong() - openedAt < openDurationNanos) {
+                return false;
+            }
+            transitionTo(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (halfOpenPermits == 0) {
+                return false;
+            }
+            halfOpenPermits--;
+        }
+        return true;
+    }
+
+    /**
+     * Give back a permission for a call that was never made.
+     */
+    public synchronized void releasePermission() {
+        if (state == State.HALF_OPEN && halfOpenPermits < halfOpenCalls) {
+            halfOpenPermits++;
+        }
+    }
+
+    /**
+     * Record a successful call.
+     */
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            halfOpenSuccesses++;
+            if (halfOpenSuccesses >= halfOpenCalls) {
+                transitionTo(State.CLOSED);
+            }
+        } else if (state == State.CLOSED) {
+            record(false);
+        }
+    }
+
+    /**
+     * Record a failed call.
+     */
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            transitionTo(State.OPEN);
+        } else if (state == State.CLOSED) {
+            record(true);
+            if (recorded >= minimumCalls && failures * 100 >= failureRateThreshold * recorded) {
+                transitionTo(State.OPEN);
+            }
+        }
+    }
+
+    /**
+     * Current state, moving an expired open breaker to half-open is left to
+     * the next permission request.
+     */
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Failure percentage over the current window, or -1 if fewer than the
+     * minimum number of calls were recorded.
+     */
+    public synchronized float getFailureRate() {
+        if (recorded < minimumCalls) {
+            return -1f;
+        }
+        return failures * 100f / recorded;
+    }
+
+    /**
+     * Number of call outcomes in the current window.
+     */
+    public synchronized int getBufferedCalls() {
+        return recorded;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    private void record(boolean failure) {
+        if (recorded == outcomes.length) {
+            if (outcomes[next]) {
+                failures--;
+            }
+        } else {
+            recorded++;
+        }
+        outcomes[next] = failure;
+        if (failure) {
+            failures++;
+        }
+        next = (next + 1) % outcomes.length;
+    }
+
+    private void transitionTo(State newState) {
+        state = newState;
+        switch (newState) {
+            case OPEN:
+                openedAt = clock.getAsLong();
+                break;
+            case HALF_OPEN:
+                halfOpenPermits = halfOpenCalls;
+                halfOpenSuccesses = 0;
+                break;
+            case CLOSED:
+            default:
+                next = 0;
+                recorded = 0;
+                failures = 0;
+                break;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.apm.service;
+
+/**
+ * Which shares a SELL is taken from when working out cost basis and
+ * realized P&L.
+ */
+public enum CostBasisMethod {
+
+    /**
+     * Oldest shares first.
+     */
+    FIFO,
+
+    /**
+     * Newest shares first.
+     */
+    LIFO,
+
+    /**
+     * All shares of a ticker share one average cost; a SELL takes its
+     * proportional part of the total cost.
+     */
+    AVERAGE_COST
+}
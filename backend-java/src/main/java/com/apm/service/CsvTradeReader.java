@@ -0,0 +1,482 @@
+package com.apm.service;
+
+import com.apm.model.TradeType;
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.util.Locale;
+
+/**
+ * Streaming reader for CSV trade history exports.
+ * The header row names the columns ticker, type, quantity, price and
+ * optionally timestamp in any order; other columns are ignored. Rows are
+ * parsed straight from a fixed size byte buffer into the current row's
+ * fields without building a String per line or per field, so heap use is
+ * constant whatever the file size. Fields may be double-quoted. Timestamps
+ * are ISO dates or date-times, with a 'T' or a space between date and time.
+ * <p>
+ * Usage: call {@link #next()} until it returns false; after each call
+ * either {@link #getError()} explains why the row is invalid or the getters
+ * hold its values (null for empty fields). Not thread-safe.
+ */
+final class CsvTradeReader implements Closeable {
+
+    static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private static final int IGNORED = 0;
+    private static final int TICKER = 1;
+    private static final int TYPE = 2;
+    private static final int QUANTITY = 3;
+    private static final int PRICE = 4;
+    private static final int TIMESTAMP = 5;
+
+    private static final int TICKER_CACHE_SIZE = 1024;
+    private static final int MAX_LONG_DIGITS = 18;
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer;
+    private final byte[] bytes;
+    private final String[] tickerCache = new String[TICKER_CACHE_SIZE];
+    private int[] roles;
+
+    // Unconsumed bytes are bytes[pos, limit)
+    private int pos;
+    private int limit;
+    private boolean eof;
+    private int lineStart;
+    private int lineEnd;
+    private boolean lineTooLong;
+
+    private long row;
+    private String error;
+    private String ticker;
+    private TradeType type;
+    private Integer quantity;
+    private BigDecimal price;
+    private LocalDateTime timestamp;
+
+    /**
+     * Create a reader and read the header row.
+     *
+     * @param channel    the CSV source, UTF-8 encoded
+     * @param bufferSize read buffer size, also the maximum line length
+     * @throws IOException          if the source cannot be read
+     * @throws TradeImportException if the header lacks a required column
+     */
+    CsvTradeReader(ReadableByteChannel channel, int bufferSize) throws IOException {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate(bufferSize);
+        this.bytes = buffer.array();
+        if (nextLine()) {
+            row = 1;
+            roles = parseHeader(new String(bytes, lineStart, lineEnd - lineStart, StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Advance to the next non-blank row.
+     *
+     * @return false once the input is exhausted
+     * @throws IOException if the source cannot be read
+     */
+    boolean next() throws IOException {
+        if (roles == null) {
+            return false;
+        }
+        while (nextLine()) {
+            row++;
+            if (lineTooLong) {
+                clearRow();
+                error = "Line is longer than " + bytes.length + " bytes";
+                return true;
+            }
+            if (isBlank(lineStart, lineEnd)) {
+                continue;
+            }
+            parseRow();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Line number of the current row, the header being line 1.
+     */
+    long getRow() {
+        return row;
+    }
+
+    /**
+     * Why the current row could not be parsed, or null.
+     */
+    String getError() {
+        return error;
+    }
+
+    String getTicker() {
+        return ticker;
+    }
+
+    TradeType getType() {
+        return type;
+    }
+
+    Integer getQuantity() {
+        return quantity;
+    }
+
+    BigDecimal getPrice() {
+        return price;
+    }
+
+    LocalDateTime getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static int[] parseHeader(String header) {
+        String[] names = header.split(",", -1);
+        int[] roles = new int[names.length];
+        boolean[] seen = new boolean[TIMESTAMP + 1];
+        for (int i = 0; i < names.length; i++) {
+            // Tolerate a UTF-8 byte order mark and quotes around the names
+            String name = names[i].replace("\uFEFF", "").replace("\"", "").trim().toLowerCase(Locale.ROOT);
+            roles[i] = switch (name) {
+                case "ticker" -> TICKER;
+                case "type" -> TYPE;
+                case "quantity" -> QUANTITY;
+                case "price" -> PRICE;
+                case "timestamp" -> TIMESTAMP;
+                default -> IGNORED;
+            };
+            seen[roles[i]] = true;
+        }
+        String[] required = {null, "ticker", "type", "quantity", "price"};
+        for (int role = TICKER; role <= PRICE; role++) {
+            if (!seen[role]) {
+                throw new TradeImportException("CSV header is missing the " + required[role] + " column");
+            }
+        }
+        return roles;
+    }
+
+    /**
+     * Find the next line and store its bounds, without the line break, in
+     * lineStart and lineEnd. A line that does not fit the buffer is skipped
+     * and flagged as too long.
+     */
+    private boolean nextLine() throws IOException {
+        lineTooLong = false;
+        int scanFrom = pos;
+        while (true) {
+            for (int i = scanFrom; i < limit; i++) {
+                if (bytes[i] == '\n') {
+                    setLine(pos, i);
+                    pos = i + 1;
+                    return true;
+                }
+            }
+            if (eof) {
+                if (pos < limit) {
+                    setLine(pos, limit);
+                    pos = limit;
+                    return true;
+                }
+                return false;
+            }
+            if (pos == 0 && limit == bytes.length) {
+                // Line does not fit: drop what we have and look for its end
+                lineTooLong = true;
+                limit = 0;
+            }
+            System.arraycopy(bytes, pos, bytes, 0, limit - pos);
+            limit -= pos;
+            pos = 0;
+            scanFrom = limit;
+            fill();
+        }
+    }
+
+    private void fill() throws IOException {
+        buffer.limit(bytes.length).position(limit);
+        int read;
+        do {
+            read = channel.read(buffer);
+        } while (read == 0);
+        if (read < 0) {
+            eof = true;
+        } else {
+            limit += read;
+        }
+    }
+
+    private void setLine(int start, int end) {
+        lineStart = start;
+        lineEnd = end > start && bytes[end - 1] == '\r' ? end - 1 : end;
+    }
+
+    private void parseRow() {
+        clearRow();
+        int column = 0;
+        int fieldStart = lineStart;
+        boolean quoted = false;
+        for (int i = lineStart; i <= lineEnd; i++) {
+            if (i < lineEnd) {
+                byte b = bytes[i];
+                if (b == '"') {
+                    quoted = !quoted;
+                }
+                if (b != ',' || quoted) {
+                    continue;
+                }
+            }
+            if (column < roles.length && error == null) {
+                parseField(roles[column], fieldStart, i);
+            }
+            column++;
+            fieldStart = i + 1;
+        }
+        if (column != roles.length) {
+            error = "Expected " + roles.length + " columns but found " + column;
+        }
+    }
+
+    private void clearRow() {
+        error = null;
+        ticker = null;
+        type = null;
+        quantity = null;
+        price = null;
+        timestamp = null;
+    }
+
+    private void parseField(int role, int start, int end) {
+        while (start < end && isSpace(bytes[start])) {
+            start++;
+        }
+        while (end > start && isSpace(bytes[end - 1])) {
+            end--;
+        }
+        if (end - start >= 2 && bytes[start] == '"' && bytes[end - 1] == '"') {
+            start++;
+            end--;
+        }
+        if (start == end || role == IGNORED) {
+            return;
+        }
+        switch (role) {
+            case TICKER -> ticker = tickerString(start, end);
+            case TYPE -> {
+                type = parseType(start, end);
+                if (type == null) {
+                    error = invalid("type", start, end);
+                }
+            }
+            case QUANTITY -> {
+                long value = parseDigits(start, end);
+                if (value < 0 || value > Integer.MAX_VALUE) {
+                    error = invalid("quantity", start, end);
+                } else {
+                    quantity = (int) value;
+                }
+            }
+            case PRICE -> {
+                price = parseDecimal(start, end);
+                if (price == null) {
+                    error = invalid("price", start, end);
+                }
+            }
+            case TIMESTAMP -> {
+                timestamp = parseTimestamp(start, end);
+                if (timestamp == null) {
+                    error = invalid("timestamp", start, end);
+                }
+            }
+            default -> {
+            }
+        }
+    }
+
+    /**
+     * Ticker as a String, shared between rows with the same ticker so a
+     * file with few distinct tickers does not allocate one per row.
+     */
+    private String tickerString(int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + bytes[i];
+        }
+        int slot = (hash ^ (hash >>> 16)) & (TICKER_CACHE_SIZE - 1);
+        String cached = tickerCache[slot];
+        if (cached != null && matches(cached, start, end)) {
+            return cached;
+        }
+        String value = new String(bytes, start, end - start, StandardCharsets.UTF_8);
+        tickerCache[slot] = value;
+        return value;
+    }
+
+    private boolean matches(String value, int start, int end) {
+        if (value.length() != end - start) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (value.charAt(i - start) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private TradeType parseType(int start, int end) {
+        if (equalsIgnoreCase("BUY", start, end)) {
+            return TradeType.BUY;
+        }
+        if (equalsIgnoreCase("SELL", start, end)) {
+            return TradeType.SELL;
+        }
+        return null;
+    }
+
+    private boolean equalsIgnoreCase(String value, int start, int end) {
+        if (value.length() != end - start) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if ((bytes[i] & 0xDF) != value.charAt(i - start)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Unsigned integer, or -1 if the field is not one or too long.
+     */
+    private long parseDigits(int start, int end) {
+        if (end - start > MAX_LONG_DIGITS) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * Plain decimal with optional sign and fraction, or null.
+     */
+    private BigDecimal parseDecimal(int start, int end) {
+        boolean negative = bytes[start] == '-';
+        if (negative || bytes[start] == '+') {
+            start++;
+        }
+        long unscaled = 0;
+        int digits = 0;
+        int scale = -1;
+        for (int i = start; i < end; i++) {
+            byte b = bytes[i];
+            if (b == '.' && scale < 0) {
+                scale = 0;
+                continue;
+            }
+            int digit = b - '0';
+            if (digit < 0 || digit > 9 || ++digits > MAX_LONG_DIGITS) {
+                return null;
+            }
+            unscaled = unscaled * 10 + digit;
+            if (scale >= 0) {
+                scale++;
+            }
+        }
+        if (digits == 0) {
+            return null;
+        }
+        return BigDecimal.valueOf(negative ? -unscaled : unscaled, Math.max(scale, 0));
+    }
+
+    /**
+     * yyyy-MM-dd, optionally followed by 'T' or ' ' and HH:mm[:ss[.fraction]];
+     * null if the field has another shape or an invalid value.
+     */
+    private LocalDateTime parseTimestamp(int start, int end) {
+        int length = end - start;
+        if (length < 10 || bytes[start + 4] != '-' || bytes[start + 7] != '-') {
+            return null;
+        }
+        int year = number(start, 4);
+        int month = number(start + 5, 2);
+        int day = number(start + 8, 2);
+        int hour = 0;
+        int minute = 0;
+        int second = 0;
+        int nanos = 0;
+        if (length > 10) {
+            byte separator = bytes[start + 10];
+            if (length < 16 || (separator != 'T' && separator != ' ') || bytes[start + 13] != ':') {
+                return null;
+            }
+            hour = number(start + 11, 2);
+            minute = number(start + 14, 2);
+            if (length > 16) {
+                if (length < 19 || bytes[start + 16] != ':') {
+                    return null;
+                }
+                second = number(start + 17, 2);
+                if (length > 19) {
+                    int fractionDigits = length - 20;
+                    if (bytes[start + 19] != '.' || fractionDigits < 1 || fractionDigits > 9) {
+                        return null;
+                    }
+                    nanos = number(start + 20, fractionDigits);
+                    for (int i = fractionDigits; i < 9 && nanos >= 0; i++) {
+                        nanos *= 10;
+                    }
+                }
+            }
+        }
+        if (year < 0 || month < 0 || day < 0 || hour < 0 || minute < 0 || second < 0 || nanos < 0) {
+            return null;
+        }
+        try {
+            return LocalDateTime.of(year, month, day, hour, minute, second, nanos);
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+
+    private int number(int start, int digits) {
+        return (int) parseDigits(start, start + digits);
+    }
+
+    private String invalid(String column, int start, int end) {
+        return "Invalid " + column + " '" + new String(bytes, start, end - start, StandardCharsets.UTF_8) + "'";
+    }
+
+    private boolean isBlank(int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (!isSpace(bytes[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+}
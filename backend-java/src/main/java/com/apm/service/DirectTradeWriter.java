@@ -0,0 +1,31 @@
+package com.apm.service;
+
+import com.apm.model.Trade;
+import com.apm.repository.TradeRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Writes every trade in its own transaction on the caller's thread.
+ */
+@Component
+@ConditionalOnProperty(name = "trades.group-commit.enabled", havingValue = "false", matchIfMissing = true)
+public class DirectTradeWriter implements TradeWriter {
+
+    private final TradeRepository tradeRepository;
+    private final PositionBook positionBook;
+
+    public DirectTradeWriter(TradeRepository tradeRepository, PositionBook positionBook) {
+        this.tradeRepository = tradeRepository;
+        this.positionBook = positionBook;
+    }
+
+    @Override
+    @Transactional
+    public Trade write(Trade trade) {
+        Trade savedTrade = tradeRepository.save(trade);
+        positionBook.record(savedTrade);
+        return savedTrade;
+    }
+}
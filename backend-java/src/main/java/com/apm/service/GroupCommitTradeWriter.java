@@ -0,0 +1,217 @@
+package com.apm.service;
+
+import com.apm.model.Trade;
+import com.apm.repository.TradeJdbcRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Group commit for single trades.
+ * Callers put their trade on a bounded queue and wait; one writer thread
+ * takes whatever is queued, up to the batch size, lingering briefly for
+ * more if the batch is not full, and commits the whole batch in one
+ * transaction with a JDBC batch insert. Under concurrent load this turns
+ * many small commits, each paying a log flush, into a few larger ones, at
+ * the cost of up to the linger time of extra latency. If a batch fails,
+ * its trades are retried one by one so a bad trade only fails its caller.
+ * A full queue rejects new trades immediately.
+ */
+@Component
+@ConditionalOnProperty(name = "trades.group-commit.enabled", havingValue = "true")
+public class GroupCommitTradeWriter implements TradeWriter, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(GroupCommitTradeWriter.class);
+
+    private final TradeJdbcRepository tradeJdbcRepository;
+    private final PositionBook positionBook;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxBatchSize;
+    private final long lingerNanos;
+    private final BlockingQueue<PendingTrade> queue;
+    private final ExecutorService writer;
+    private volatile boolean running = true;
+
+    private final Timer batchTimer;
+    private final DistributionSummary batchSizes;
+    private final Counter rejected;
+
+    /**
+     * Create a group commit writer and start its writer thread.
+     *
+     * @param tradeJdbcRepository batch inserts of the queued trades
+     * @param positionBook        position book updated in the same transaction
+     * @param transactionTemplate transaction per batch
+     * @param maxBatchSize        most trades committed together
+     * @param linger              longest wait for more trades once a batch
+     *                            has been started
+     * @param queueCapacity       trades that may wait for the writer
+     * @param meterRegistry       registry for batch metrics
+     */
+    @Autowired
+    public GroupCommitTradeWriter(TradeJdbcRepository tradeJdbcRepository, PositionBook positionBook,
+            TransactionTemplate transactionTemplate,
+            @Value("${trades.group-commit.max-batch-size:100}") int maxBatchSize,
+            @Value("${trades.group-commit.linger:1ms}") Duration linger,
+            @Value("${trades.group-commit.queue-capacity:10000}") int queueCapacity,
+            MeterRegistry meterRegistry) {
+        this.tradeJdbcRepository = tradeJdbcRepository;
+        this.positionBook = positionBook;
+        this.transactionTemplate = transactionTemplate;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.lingerNanos = linger.toNanos();
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+
+        this.batchTimer = Timer.builder("trades.group-commit.batch")
+                .description("Time to commit one batch of trades")
+                .register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("trades.group-commit.batch.size")
+                .description("Trades committed per batch")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("trades.group-commit.rejected")
+                .description("Trades rejected because the write queue was full")
+                .register(meterRegistry);
+        Gauge.builder("trades.group-commit.queue", this, GroupCommitTradeWriter::getQueueSize)
+                .description("Trades waiting for the writer")
+                .register(meterRegistry);
+
+        this.writer = Executors.newSingleThreadExecutor(threadFactory());
+        writer.execute(this::run);
+        logger.info("Group commit enabled: up to {} trades per commit, linger {}", this.maxBatchSize, linger);
+    }
+
+    @Override
+    public Trade write(Trade trade) {
+        if (!running) {
+            throw new TradeWriteRejectedException("Trade writer is shutting down");
+        }
+        PendingTrade pending = new PendingTrade(trade);
+        if (!queue.offer(pending)) {
+            rejected.increment();
+            throw new TradeWriteRejectedException("Trade write queue is full, try again later");
+        }
+        if (!running && queue.remove(pending)) {
+            throw new TradeWriteRejectedException("Trade writer is shutting down");
+        }
+        try {
+            return pending.result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Trades waiting for the writer.
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    @Override
+    public void destroy() {
+        running = false;
+        writer.shutdownNow();
+    }
+
+    private void run() {
+        List<PendingTrade> batch = new ArrayList<>(maxBatchSize);
+        try {
+            while (running) {
+                batch.add(queue.take());
+                fill(batch);
+                writeBatch(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            queue.drainTo(batch);
+            TradeWriteRejectedException stopped = new TradeWriteRejectedException("Trade writer stopped");
+            batch.forEach(pending -> pending.result.completeExceptionally(stopped));
+        }
+    }
+
+    /**
+     * Add queued trades to the batch until it is full, waiting up to the
+     * linger time for late arrivals.
+     */
+    private void fill(List<PendingTrade> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + lingerNanos;
+        while (batch.size() < maxBatchSize) {
+            queue.drainTo(batch, maxBatchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= maxBatchSize || remaining <= 0) {
+                return;
+            }
+            PendingTrade next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void writeBatch(List<PendingTrade> batch) {
+        List<Trade> trades = new ArrayList<>(batch.size());
+        batch.forEach(pending -> trades.add(pending.trade));
+        try {
+            batchTimer.record(() -> transactionTemplate.executeWithoutResult(status -> {
+                tradeJdbcRepository.insertAll(trades);
+                positionBook.recordAll(trades);
+            }));
+            batchSizes.record(trades.size());
+            batch.forEach(pending -> pending.result.complete(pending.trade));
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                batch.get(0).trade.setId(null);
+                batch.get(0).result.completeExceptionally(e);
+                return;
+            }
+            logger.warn("Batch of {} trades failed, writing them one by one: {}", batch.size(), e.getMessage());
+            for (PendingTrade pending : batch) {
+                pending.trade.setId(null);
+                writeBatch(List.of(pending));
+            }
+        }
+    }
+
+    private static CustomizableThreadFactory threadFactory() {
+        CustomizableThreadFactory factory = new CustomizableThreadFactory("trade-writer-");
+        factory.setDaemon(true);
+        return factory;
+    }
+
+    private static final class PendingTrade {
+
+        private final Trade trade;
+        private final CompletableFuture<Trade> result = new CompletableFuture<>();
+
+        PendingTrade(Trade trade) {
+            this.trade = trade;
+        }
+    }
+}
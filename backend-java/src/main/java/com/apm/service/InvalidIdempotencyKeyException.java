@@ -0,0 +1,12 @@
+package com.apm.service;
+
+/**
+ * Exception thrown when an idempotency key is malformed or was already used
+ * for a different trade.
+ */
+public class InvalidIdempotencyKeyException extends RuntimeException {
+
+    public InvalidIdempotencyKeyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,154 @@
+package com.apm.service;
+
+import com.apm.model.Trade;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Tax lots per user, built on first use by streaming the user's trades in
+ * execution order through a {@link TaxLotEngine} and kept in a bounded
+ * cache. Trades committed afterwards reach the cached lots from the
+ * {@link PositionBook} write path, so reads do not touch the database. A
+ * committed trade that the build may already have streamed (its id is not
+ * above the highest id streamed), or one executed before the last trade
+ * applied (it would change which lots were sold), drops the user's lots
+ * and the next read rebuilds them.
+ */
+@Component
+public class LotBook {
+
+    private static final String CACHE_NAME = "analytics.lots";
+
+    private final TradeQueryService tradeQueryService;
+    private final CostBasisMethod method;
+    private final Cache<UUID, UserLots> users;
+    private final Counter rebuilds;
+
+    /**
+     * Create the lot book and subscribe it to committed trades.
+     *
+     * @param tradeQueryService streams the users' trades
+     * @param positionBook      reports trades once they commit
+     * @param method            cost basis method for every user
+     * @param maximumSize       most users whose lots are kept in memory
+     * @param idleTimeout       how long unused lots are kept
+     * @param meterRegistry     registry for cache and rebuild metrics
+     */
+    @Autowired
+    public LotBook(TradeQueryService tradeQueryService, PositionBook positionBook,
+            @Value("${analytics.cost-basis-method:FIFO}") CostBasisMethod method,
+            @Value("${analytics.lots.cache.max-size:10000}") long maximumSize,
+            @Value("${analytics.lots.cache.idle-timeout:30m}") Duration idleTimeout,
+            MeterRegistry meterRegistry) {
+        this.tradeQueryService = tradeQueryService;
+        this.method = method;
+        this.users = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterAccess(idleTimeout)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, users, CACHE_NAME);
+        this.rebuilds = Counter.builder("analytics.lots.rebuilds")
+                .description("Users whose tax lots were rebuilt from their full trade history")
+                .register(meterRegistry);
+        positionBook.addCommitListener(this::recordCommitted);
+    }
+
+    public CostBasisMethod getMethod() {
+        return method;
+    }
+
+    /**
+     * Lots of one user, built from the trade table if not in memory.
+     *
+     * @param userId the user's UUID
+     * @return positions keyed by ticker, closed positions included
+     */
+    public Map<String, LotPosition> getPositions(UUID userId) {
+        UserLots lots = users.get(userId, id -> new UserLots());
+        synchronized (lots) {
+            try {
+                if (lots.engine == null) {
+                    rebuild(userId, lots);
+                }
+                return lots.engine.getPositions();
+            } catch (RuntimeException e) {
+                lots.engine = null;
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Apply committed trades to the lots of users that are in memory.
+     *
+     * @param trades trades whose transaction has committed
+     */
+    void recordCommitted(List<Trade> trades) {
+        for (Trade trade : trades) {
+            UserLots lots = trade.getUserId() == null ? null : users.getIfPresent(trade.getUserId());
+            if (lots == null) {
+                continue;
+            }
+            synchronized (lots) {
+                if (lots.engine == null) {
+                    continue;
+                }
+                if (trade.getId() <= lots.streamedThroughId || lots.isBefore(trade.getTimestamp())) {
+                    lots.engine = null;
+                } else {
+                    lots.apply(trade);
+                }
+            }
+        }
+    }
+
+    private void rebuild(UUID userId, UserLots lots) {
+        rebuilds.increment();
+        lots.reset(new TaxLotEngine(method));
+        tradeQueryService.streamByTime(userId, trade -> {
+            lots.apply(trade);
+            lots.streamedThroughId = Math.max(lots.streamedThroughId, trade.getId());
+        });
+    }
+
+    /**
+     * One user's engine, the highest trade id its build streamed and the
+     * latest execution time applied.
+     */
+    private static final class UserLots {
+
+        private TaxLotEngine engine;
+        private long streamedThroughId;
+        private LocalDateTime lastTimestamp;
+
+        void reset(TaxLotEngine engine) {
+            this.engine = engine;
+            this.streamedThroughId = 0;
+            this.lastTimestamp = null;
+        }
+
+        boolean isBefore(LocalDateTime timestamp) {
+            return lastTimestamp != null && (timestamp == null || timestamp.isBefore(lastTimestamp));
+        }
+
+        void apply(Trade trade) {
+            engine.apply(trade);
+            if (trade.getTimestamp() != null
+                    && (lastTimestamp == null || trade.getTimestamp().isAfter(lastTimestamp))) {
+                lastTimestamp = trade.getTimestamp();
+            }
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.apm.service;
+
+import java.math.BigDecimal;
+
+/**
+ * Open shares, their cost basis and the P&L realized so far in one ticker,
+ * as worked out from the tax lots. Amounts have six decimal places.
+ *
+ * @param quantity           shares still held
+ * @param costBasis          cost of the shares still held
+ * @param realizedProfitLoss sale proceeds minus the cost of the shares sold
+ */
+public record LotPosition(int quantity, BigDecimal costBasis, BigDecimal realizedProfitLoss) {
+}
@@ -0,0 +1,203 @@
+package com.apm.service;
+
+import java.math.BigInteger;
+
+/**
+ * Open tax lots of one user in one ticker, in a ring buffer of primitive
+ * arrays: a share count and a unit cost in micro-units per lot, oldest at
+ * the head. Buys are added at the tail; sells take whole lots from the
+ * head (FIFO) or the tail (LIFO) and split at most one lot, so every lot is
+ * added and removed once and each trade costs O(1) amortized. Under
+ * average cost there is a single pooled lot, kept as totals only. Shares
+ * sold beyond the open quantity are kept as an uncovered short with their
+ * proceeds; later buys cover it before opening lots, so the net quantity
+ * matches the position book. Not thread-safe.
+ */
+final class LotQueue {
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private final CostBasisMethod method;
+    private int[] quantities;
+    private long[] unitCosts;
+    private int head;
+    private int size;
+
+    private int quantity;
+    private long cost;
+    private long realized;
+    private int shortQuantity;
+    private long shortProceeds;
+
+    LotQueue(CostBasisMethod method) {
+        this.method = method;
+        if (method != CostBasisMethod.AVERAGE_COST) {
+            this.quantities = new int[INITIAL_CAPACITY];
+            this.unitCosts = new long[INITIAL_CAPACITY];
+        }
+    }
+
+    /**
+     * Add bought shares, covering any uncovered short first.
+     *
+     * @param shares   number of shares
+     * @param unitCost price per share in micro-units
+     */
+    void buy(int shares, long unitCost) {
+        if (shortQuantity > 0) {
+            int covered = Math.min(shares, shortQuantity);
+            long proceeds = proportional(shortProceeds, covered, shortQuantity);
+            shortQuantity -= covered;
+            shortProceeds = Math.subtractExact(shortProceeds, proceeds);
+            realized = Math.addExact(realized,
+                    Math.subtractExact(proceeds, Math.multiplyExact(unitCost, covered)));
+            shares -= covered;
+            if (shares == 0) {
+                return;
+            }
+        }
+        if (method != CostBasisMethod.AVERAGE_COST) {
+            if (size == quantities.length) {
+                grow();
+            }
+            int tail = (head + size) % quantities.length;
+            quantities[tail] = shares;
+            unitCosts[tail] = unitCost;
+            size++;
+        }
+        quantity = Math.addExact(quantity, shares);
+        cost = Math.addExact(cost, Math.multiplyExact(unitCost, shares));
+    }
+
+    /**
+     * Remove sold shares and realize their P&L. Shares sold beyond the
+     * open quantity are added to the uncovered short; their P&L is realized
+     * when a later buy covers them.
+     *
+     * @param shares    number of shares
+     * @param unitPrice sale price per share in micro-units
+     */
+    void sell(int shares, long unitPrice) {
+        int matched = Math.min(shares, quantity);
+        if (matched < shares) {
+            int uncovered = shares - matched;
+            shortQuantity = Math.addExact(shortQuantity, uncovered);
+            shortProceeds = Math.addExact(shortProceeds, Math.multiplyExact(unitPrice, uncovered));
+        }
+        if (matched <= 0) {
+            return;
+        }
+        long soldCost;
+        switch (method) {
+            case FIFO:
+                soldCost = takeOldest(matched);
+                break;
+            case LIFO:
+                soldCost = takeNewest(matched);
+                break;
+            default:
+                soldCost = proportional(cost, matched, quantity);
+                break;
+        }
+        quantity -= matched;
+        cost = Math.subtractExact(cost, soldCost);
+        realized = Math.addExact(realized,
+                Math.subtractExact(Math.multiplyExact(unitPrice, matched), soldCost));
+    }
+
+    /**
+     * Net quantity: open shares, or minus the uncovered short.
+     */
+    int quantity() {
+        return quantity - shortQuantity;
+    }
+
+    /**
+     * Cost of the open shares in micro-units.
+     */
+    long cost() {
+        return cost;
+    }
+
+    /**
+     * Realized P&L in micro-units.
+     */
+    long realized() {
+        return realized;
+    }
+
+    /**
+     * Open lots, for tests.
+     */
+    int lots() {
+        return method == CostBasisMethod.AVERAGE_COST ? (quantity > 0 ? 1 : 0) : size;
+    }
+
+    private long takeOldest(int shares) {
+        long taken = 0;
+        while (shares > 0) {
+            int lotShares = quantities[head];
+            int used = Math.min(lotShares, shares);
+            taken = Math.addExact(taken, Math.multiplyExact(unitCosts[head], used));
+            shares -= used;
+            if (used == lotShares) {
+                head = (head + 1) % quantities.length;
+                size--;
+            } else {
+                quantities[head] = lotShares - used;
+            }
+        }
+        return taken;
+    }
+
+    private long takeNewest(int shares) {
+        long taken = 0;
+        while (shares > 0) {
+            int tail = (head + size - 1) % quantities.length;
+            int lotShares = quantities[tail];
+            int used = Math.min(lotShares, shares);
+            taken = Math.addExact(taken, Math.multiplyExact(unitCosts[tail], used));
+            shares -= used;
+            if (used == lotShares) {
+                size--;
+            } else {
+                quantities[tail] = lotShares - used;
+            }
+        }
+        return taken;
+    }
+
+    /**
+     * The given shares' part of a pooled amount held for {@code whole}
+     * shares, rounded half up to a micro-unit; all shares take exactly the
+     * whole amount.
+     */
+    private static long proportional(long amount, int shares, int whole) {
+        if (shares == whole) {
+            return amount;
+        }
+        long half = whole / 2;
+        long high = Math.multiplyHigh(amount, shares);
+        long low = amount * shares;
+        if (high == 0 && low >= 0 && low <= Long.MAX_VALUE - half) {
+            return (low + half) / whole;
+        }
+        return BigInteger.valueOf(amount).multiply(BigInteger.valueOf(shares))
+                .add(BigInteger.valueOf(half))
+                .divide(BigInteger.valueOf(whole))
+                .longValueExact();
+    }
+
+    private void grow() {
+        int[] grownQuantities = new int[quantities.length * 2];
+        long[] grownUnitCosts = new long[unitCosts.length * 2];
+        for (int i = 0; i < size; i++) {
+            int from = (head + i) % quantities.length;
+            grownQuantities[i] = quantities[from];
+            grownUnitCosts[i] = unitCosts[from];
+        }
+        quantities = grownQuantities;
+        unitCosts = grownUnitCosts;
+        head = 0;
+    }
+}
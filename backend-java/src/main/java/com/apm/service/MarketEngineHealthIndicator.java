@@ -0,0 +1,52 @@
+package com.apm.service;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports the market engine circuit breaker on the actuator health endpoint.
+ * An open breaker means prices are served from cache or not at all, which
+ * is reported as DEGRADED rather than DOWN: the configured status order
+ * ranks DEGRADED below UP, so a market engine outage does not fail the
+ * aggregate health check, while the market-engine group answers 503.
+ */
+@Component("marketEngine")
+public class MarketEngineHealthIndicator implements HealthIndicator {
+
+    public static final Status DEGRADED = new Status("DEGRADED", "Market engine circuit breaker is open");
+
+    private final CircuitBreaker circuitBreaker;
+    private final Bulkhead bulkhead;
+
+    public MarketEngineHealthIndicator(CircuitBreaker circuitBreaker, Bulkhead bulkhead) {
+        this.circuitBreaker = circuitBreaker;
+        this.bulkhead = bulkhead;
+    }
+
+    @Override
+    public Health health() {
+        CircuitBreaker.State state = circuitBreaker.getState();
+        Health.Builder builder;
+        switch (state) {
+            case OPEN:
+                builder = Health.status(DEGRADED);
+                break;
+            case HALF_OPEN:
+                builder = Health.unknown();
+                break;
+            case CLOSED:
+            default:
+                builder = Health.up();
+                break;
+        }
+        return builder
+                .withDetail("circuitBreaker", state.name())
+                .withDetail("failureRate", circuitBreaker.getFailureRate())
+                .withDetail("bufferedCalls", circuitBreaker.getBufferedCalls())
+                .withDetail("bulkheadAvailable", bulkhead.getAvailablePermits())
+                .withDetail("bulkheadMax", bulkhead.getMaxConcurrentCalls())
+                .build();
+    }
+}
@@ -0,0 +1,12 @@
+package com.apm.service;
+
+/**
+ * Thrown when a market engine call is rejected without being attempted,
+ * because the circuit breaker is open or the bulkhead is full.
+ */
+public class MarketEngineUnavailableException extends StockServiceException {
+
+    public MarketEngineUnavailableException(String message) {
+        super(message);
+    }
+}
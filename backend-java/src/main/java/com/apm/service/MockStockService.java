@@ -1,8 +1,10 @@
 package com.apm.service;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Service;
 
@@ -11,6 +13,7 @@ import org.springframework.stereotype.Service;
  * Returns static prices without network access.
  */
 @Service
+@Qualifier("priceSource")
 @Profile("test")
 public class MockStockService implements StockService {
 
@@ -34,6 +37,19 @@ public class MockStockService implements StockService {
         throw new StockServiceException("Mock: Ticker '" + ticker + "' not found");
     }
 
+    @Override
+    public Map<String, BigDecimal> getCurrentPrices(Collection<String> tickers) {
+        Map<String, BigDecimal> prices = new HashMap<>();
+        for (String ticker : tickers) {
+            String upperTicker = ticker.toUpperCase();
+            BigDecimal price = MOCK_PRICES.get(upperTicker);
+            if (price != null) {
+                prices.put(upperTicker, price);
+            }
+        }
+        return prices;
+    }
+
     /**
      * Add a mock price for testing purposes.
      *
@@ -0,0 +1,202 @@
+package com.apm.service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Objects;
+
+/**
+ * Fixed-point amount of money in micro-units (millionths of the currency
+ * unit) held in a long, for arithmetic on the valuation hot path.
+ * Each amount also remembers the decimal scale BigDecimal would have given
+ * it, so {@link #toBigDecimal()} returns exactly what the same BigDecimal
+ * calculation would have: multiplying keeps the scale, adding takes the
+ * larger one and rounding sets it. Amounts with more than six decimal
+ * places are rounded half up to six; an overflow raises ArithmeticException.
+ */
+public final class Money {
+
+    /**
+     * Decimal places held exactly.
+     */
+    public static final int SCALE = 6;
+
+    private static final long[] POWERS_OF_TEN = {
+        1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L
+    };
+
+    private final long micros;
+    private final int scale;
+    private final String currency;
+
+    private Money(long micros, int scale, String currency) {
+        this.micros = micros;
+        this.scale = scale;
+        this.currency = currency;
+    }
+
+    /**
+     * Zero with scale 0, the same as BigDecimal.ZERO.
+     *
+     * @param currency ISO currency code
+     * @return zero in that currency
+     */
+    public static Money zero(String currency) {
+        return new Money(0, 0, Objects.requireNonNull(currency, "currency"));
+    }
+
+    /**
+     * Convert an amount to micro-units. Amounts with more than six decimal
+     * places are rounded half up to six, e.g. a price the engine returned
+     * as a binary double.
+     *
+     * @param amount   the amount
+     * @param currency ISO currency code
+     * @return the amount as fixed point
+     * @throws ArithmeticException if the amount does not fit in a long
+     */
+    public static Money of(BigDecimal amount, String currency) {
+        int scale = Math.max(0, Math.min(amount.scale(), SCALE));
+        long micros = amount.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+        return new Money(micros, scale, Objects.requireNonNull(currency, "currency"));
+    }
+
+    /**
+     * This amount times a whole quantity, e.g. price times shares.
+     *
+     * @param quantity the multiplier
+     * @return the product, with this amount's scale
+     */
+    public Money times(int quantity) {
+        return new Money(Math.multiplyExact(micros, quantity), scale, currency);
+    }
+
+    /**
+     * Sum of the two amounts, with the larger of the two scales.
+     *
+     * @param other amount in the same currency
+     * @return the sum
+     */
+    public Money plus(Money other) {
+        checkCurrency(other);
+        return new Money(Math.addExact(micros, other.micros), Math.max(scale, other.scale), currency);
+    }
+
+    /**
+     * Difference of the two amounts, with the larger of the two scales.
+     *
+     * @param other amount in the same currency
+     * @return this minus other
+     */
+    public Money minus(Money other) {
+        checkCurrency(other);
+        return new Money(Math.subtractExact(micros, other.micros), Math.max(scale, other.scale), currency);
+    }
+
+    /**
+     * This amount rounded half up to the given number of decimal places,
+     * like {@code setScale(newScale, RoundingMode.HALF_UP)}.
+     *
+     * @param newScale decimal places, 0 to 6
+     * @return the rounded amount
+     */
+    public Money round(int newScale) {
+        long unit = POWERS_OF_TEN[SCALE - newScale];
+        return new Money(Math.multiplyExact(divideHalfUp(micros, unit), unit), newScale, currency);
+    }
+
+    /**
+     * This amount divided by a whole number, rounded half up to the given
+     * number of decimal places, like
+     * {@code divide(BigDecimal.valueOf(divisor), newScale, RoundingMode.HALF_UP)}.
+     *
+     * @param divisor  the divisor, e.g. a share count
+     * @param newScale decimal places of the result, 0 to 6
+     * @return the quotient
+     */
+    public Money dividedBy(int divisor, int newScale) {
+        long unit = POWERS_OF_TEN[SCALE - newScale];
+        long quotient = divideHalfUp(micros, Math.multiplyExact(divisor, unit));
+        return new Money(Math.multiplyExact(quotient, unit), newScale, currency);
+    }
+
+    /**
+     * This amount as a percentage of another, computed like
+     * {@code divide(base, 4, HALF_UP).multiply(100).setScale(2, HALF_UP)}.
+     *
+     * @param base the amount that is 100%
+     * @return the percentage with two decimal places
+     * @throws ArithmeticException if base is zero
+     */
+    public BigDecimal percentOf(Money base) {
+        checkCurrency(base);
+        if (base.micros == 0) {
+            throw new ArithmeticException("Division by zero");
+        }
+        // Whole and fractional part of the ratio separately, so only the
+        // remainder is scaled up and large amounts do not overflow
+        long whole = Math.multiplyExact(micros / base.micros, 10_000L);
+        long fraction = divideHalfUp(Math.multiplyExact(micros % base.micros, 10_000L), base.micros);
+        return BigDecimal.valueOf(Math.addExact(whole, fraction), 2);
+    }
+
+    /**
+     * Sign of the amount: -1, 0 or 1.
+     */
+    public int signum() {
+        return Long.signum(micros);
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    /**
+     * The amount as a BigDecimal with its tracked scale.
+     *
+     * @return the exact decimal value
+     */
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(micros / POWERS_OF_TEN[SCALE - scale], scale);
+    }
+
+    private void checkCurrency(Money other) {
+        if (!currency.equals(other.currency)) {
+            throw new IllegalArgumentException(
+                    "Cannot combine " + currency + " and " + other.currency + " amounts");
+        }
+    }
+
+    /**
+     * Quotient rounded half up, i.e. halves away from zero.
+     */
+    private static long divideHalfUp(long dividend, long divisor) {
+        long quotient = dividend / divisor;
+        long remainder = Math.absExact(dividend % divisor);
+        if (remainder != 0 && remainder >= Math.absExact(divisor) - remainder) {
+            quotient += (dividend < 0) == (divisor < 0) ? 1 : -1;
+        }
+        return quotient;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Money)) {
+            return false;
+        }
+        Money other = (Money) o;
+        return micros == other.micros && scale == other.scale && currency.equals(other.currency);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(micros, scale, currency);
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString() + " " + currency;
+    }
+}
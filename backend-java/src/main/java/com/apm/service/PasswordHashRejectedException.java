@@ -0,0 +1,12 @@
+package com.apm.service;
+
+/**
+ * Exception thrown when a password cannot be hashed or checked right now
+ * because the password hashing pool is saturated.
+ */
+public class PasswordHashRejectedException extends RuntimeException {
+
+    public PasswordHashRejectedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,173 @@
+package com.apm.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Component;
+
+/**
+ * BCrypt hashing and checking on a dedicated, bounded thread pool.
+ * Each BCrypt call burns tens of milliseconds of CPU, so a burst of logins
+ * run on request threads would hold every one of them and starve the other
+ * endpoints. Here at most the pool's threads hash at once, a bounded queue
+ * absorbs short bursts, and anything beyond that, or anything that waits
+ * longer than the timeout, is rejected at once rather than queued
+ * indefinitely.
+ */
+@Component
+public class PasswordHasher implements DisposableBean {
+
+    private final BCryptPasswordEncoder encoder;
+    private final int cost;
+    private final ThreadPoolExecutor executor;
+    private final Duration timeout;
+
+    private final Timer hashTimer;
+    private final Timer verifyTimer;
+    private final Counter rejected;
+
+    /**
+     * Create the hasher and its pool.
+     *
+     * @param cost          BCrypt cost factor (log2 rounds) for new hashes
+     * @param threads       hashes computed at once
+     * @param queueCapacity hashes that may wait for a thread
+     * @param timeout       longest a caller waits, queueing included
+     * @param meterRegistry registry for hash latency and queue metrics
+     */
+    @Autowired
+    public PasswordHasher(
+            @Value("${auth.password-hash.cost:10}") int cost,
+            @Value("${auth.password-hash.threads:4}") int threads,
+            @Value("${auth.password-hash.queue-capacity:100}") int queueCapacity,
+            @Value("${auth.password-hash.timeout:5s}") Duration timeout,
+            MeterRegistry meterRegistry) {
+        this.encoder = new BCryptPasswordEncoder(cost);
+        this.cost = cost;
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(Math.max(1, queueCapacity)), threadFactory(),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+        this.timeout = timeout;
+
+        this.hashTimer = Timer.builder("auth.password-hash")
+                .description("Time to compute one BCrypt hash")
+                .tag("operation", "hash")
+                .register(meterRegistry);
+        this.verifyTimer = Timer.builder("auth.password-hash")
+                .description("Time to check a password against one BCrypt hash")
+                .tag("operation", "verify")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("auth.password-hash.rejected")
+                .description("Hash requests rejected because the pool was saturated")
+                .register(meterRegistry);
+        Gauge.builder("auth.password-hash.queue", this, PasswordHasher::getQueueSize)
+                .description("Hash requests waiting for a thread")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Hash a password with the configured cost.
+     *
+     * @param rawPassword the plain text password
+     * @return the BCrypt hash
+     * @throws PasswordHashRejectedException if the pool is saturated
+     */
+    public String hash(String rawPassword) {
+        return run(() -> hashTimer.recordCallable(() -> encoder.encode(rawPassword)));
+    }
+
+    /**
+     * Check a password against a stored hash.
+     *
+     * @param rawPassword  the plain text password
+     * @param passwordHash the stored BCrypt hash
+     * @return true if the password matches
+     * @throws PasswordHashRejectedException if the pool is saturated
+     */
+    public boolean matches(String rawPassword, String passwordHash) {
+        return run(() -> verifyTimer.recordCallable(() -> encoder.matches(rawPassword, passwordHash)));
+    }
+
+    /**
+     * Whether a stored hash was made with a different cost than the
+     * configured one, raised or lowered, and should be replaced on the
+     * next successful login.
+     *
+     * @param passwordHash the stored BCrypt hash
+     * @return true if the hash should be recomputed
+     */
+    public boolean needsRehash(String passwordHash) {
+        // $2a$10$..., the cost is the two digits after the version
+        if (passwordHash == null || passwordHash.length() < 7 || passwordHash.charAt(6) != '$') {
+            return false;
+        }
+        try {
+            return Integer.parseInt(passwordHash.substring(4, 6)) != cost;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Hash requests waiting for a thread.
+     */
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Run a task on the pool and wait for it, up to the timeout.
+     */
+    <T> T run(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new PasswordHashRejectedException("Too many authentication requests, try again later");
+        }
+        try {
+            return future.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            rejected.increment();
+            throw new PasswordHashRejectedException("Too many authentication requests, try again later");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new PasswordHashRejectedException("Interrupted while waiting for password hashing");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static CustomizableThreadFactory threadFactory() {
+        CustomizableThreadFactory factory = new CustomizableThreadFactory("password-hash-");
+        factory.setDaemon(true);
+        return factory;
+    }
+}
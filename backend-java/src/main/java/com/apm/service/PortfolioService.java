@@ -1,17 +1,20 @@
 package com.apm.service;
 
+import com.apm.dto.HoldingValue;
+import com.apm.dto.PortfolioResponse;
 import com.apm.model.Trade;
 import com.apm.model.TradeType;
 import com.apm.repository.TradeRepository;
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 /**
  * Service for portfolio business logic and trade orchestration.
@@ -21,12 +24,26 @@ public class PortfolioService {
 
     private static final Logger logger = LoggerFactory.getLogger(PortfolioService.class);
 
+    /**
+     * Longest idempotency key accepted, matching the column length.
+     */
+    public static final int MAX_IDEMPOTENCY_KEY_LENGTH = 100;
+
+    private static final String CURRENCY = "USD";
+
     private final TradeRepository tradeRepository;
     private final StockService stockService;
+    private final PositionBook positionBook;
+    private final TradeWriter tradeWriter;
+    private final TradeIdempotencyCache idempotencyCache;
 
-    public PortfolioService(TradeRepository tradeRepository, StockService stockService) {
+    public PortfolioService(TradeRepository tradeRepository, StockService stockService,
+            PositionBook positionBook, TradeWriter tradeWriter, TradeIdempotencyCache idempotencyCache) {
         this.tradeRepository = tradeRepository;
         this.stockService = stockService;
+        this.positionBook = positionBook;
+        this.tradeWriter = tradeWriter;
+        this.idempotencyCache = idempotencyCache;
     }
 
     /**
@@ -40,7 +57,6 @@ public class PortfolioService {
      * @param price    price per share (0 to auto-fetch)
      * @return the saved trade with execution price
      */
-    @Transactional
     public Trade recordTrade(UUID userId, String ticker, TradeType type,
             Integer quantity, BigDecimal price) {
         return recordTrade(userId, ticker, type, quantity, price, null);
@@ -49,6 +65,8 @@ public class PortfolioService {
     /**
      * Record a trade with optional timestamp for historical/backdated trades.
      * If timestamp is in the past, price must be provided (no auto-fetch).
+     * The price is looked up first; the trade is then saved by the
+     * configured {@link TradeWriter}.
      *
      * @param userId    the user making the trade
      * @param ticker    the stock symbol
@@ -58,9 +76,75 @@ public class PortfolioService {
      * @param timestamp optional timestamp for backdated trades
      * @return the saved trade
      */
-    @Transactional
     public Trade recordTrade(UUID userId, String ticker, TradeType type,
             Integer quantity, BigDecimal price, java.time.LocalDateTime timestamp) {
+        return recordTrade(userId, ticker, type, quantity, price, timestamp, null);
+    }
+
+    /**
+     * Record a trade at most once per idempotency key.
+     * A repeated key returns the trade first recorded with it, from memory
+     * if possible and otherwise from the database, without fetching a price
+     * or writing anything. Two requests racing with the same key are
+     * resolved by the unique (user_id, idempotency_key) constraint.
+     *
+     * @param userId         the user making the trade
+     * @param ticker         the stock symbol
+     * @param type           BUY or SELL
+     * @param quantity       number of shares
+     * @param price          price per share
+     * @param timestamp      optional timestamp for backdated trades
+     * @param idempotencyKey client supplied key (null records unconditionally)
+     * @return the saved trade, or the one recorded earlier with this key
+     * @throws InvalidIdempotencyKeyException if the key is blank, too long
+     *         or was used for a different trade
+     */
+    public Trade recordTrade(UUID userId, String ticker, TradeType type,
+            Integer quantity, BigDecimal price, java.time.LocalDateTime timestamp, String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return writeTrade(userId, ticker, type, quantity, price, timestamp, null);
+        }
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            throw new InvalidIdempotencyKeyException(
+                    "Idempotency-Key must be 1 to " + MAX_IDEMPOTENCY_KEY_LENGTH + " characters");
+        }
+
+        Trade trade = idempotencyCache.execute(userId, idempotencyKey, () ->
+                tradeRepository.findByUserIdAndIdempotencyKey(userId, idempotencyKey)
+                        .orElseGet(() -> writeOnce(userId, ticker, type, quantity, price, timestamp, idempotencyKey)));
+
+        if (!trade.getTicker().equalsIgnoreCase(ticker) || trade.getType() != type
+                || !trade.getQuantity().equals(quantity) || !samePrice(trade, price)) {
+            throw new InvalidIdempotencyKeyException(
+                    "Idempotency-Key was already used for a different trade");
+        }
+        return trade;
+    }
+
+    /**
+     * A missing or zero price asks for the market price, which a retry
+     * cannot know, so only an explicit price is compared.
+     */
+    private static boolean samePrice(Trade trade, BigDecimal price) {
+        if (price == null || price.compareTo(BigDecimal.ZERO) == 0) {
+            return true;
+        }
+        return trade.getPrice().compareTo(price.setScale(Trade.PRICE_SCALE, RoundingMode.HALF_UP)) == 0;
+    }
+
+    private Trade writeOnce(UUID userId, String ticker, TradeType type, Integer quantity,
+            BigDecimal price, java.time.LocalDateTime timestamp, String idempotencyKey) {
+        try {
+            return writeTrade(userId, ticker, type, quantity, price, timestamp, idempotencyKey);
+        } catch (DataIntegrityViolationException e) {
+            // Another instance recorded this key first
+            return tradeRepository.findByUserIdAndIdempotencyKey(userId, idempotencyKey)
+                    .orElseThrow(() -> e);
+        }
+    }
+
+    private Trade writeTrade(UUID userId, String ticker, TradeType type, Integer quantity,
+            BigDecimal price, java.time.LocalDateTime timestamp, String idempotencyKey) {
         BigDecimal executionPrice = price;
         boolean isHistorical = timestamp != null &&
                 timestamp.isBefore(java.time.LocalDateTime.now().minusMinutes(5));
@@ -73,8 +157,12 @@ public class PortfolioService {
             throw new IllegalArgumentException(
                     "Price is required for historical trades");
         }
+        if (executionPrice != null) {
+            executionPrice = executionPrice.setScale(Trade.PRICE_SCALE, RoundingMode.HALF_UP);
+        }
 
         Trade trade = new Trade(userId, ticker, type, quantity, executionPrice);
+        trade.setIdempotencyKey(idempotencyKey);
 
         // Set custom timestamp for historical trades
         if (timestamp != null) {
@@ -82,7 +170,7 @@ public class PortfolioService {
             logger.info("Recording historical trade for {} on {}", ticker, timestamp);
         }
 
-        Trade savedTrade = tradeRepository.save(trade);
+        Trade savedTrade = tradeWriter.write(trade);
 
         logger.info("Trade recorded: {} {} shares of {} at ${}",
                 type, quantity, ticker, executionPrice);
@@ -92,60 +180,54 @@ public class PortfolioService {
 
     /**
      * Calculate the total portfolio value for a user.
-     * Fetches real-time prices and computes (Net Qty * Current Price) for each
-     * holding.
+     * Reads net quantities from the position book, fetches real-time prices
+     * and computes (Net Qty * Current Price) for each holding in fixed
+     * point ({@link Money}).
      *
      * @param userId the user's UUID
-     * @return map containing holdings breakdown and total value
+     * @return holdings breakdown and total value
      */
-    public Map<String, Object> calculatePortfolioValue(UUID userId) {
-        List<Trade> trades = tradeRepository.findByUserId(userId);
-
-        // Calculate net quantity per ticker
+    public PortfolioResponse calculatePortfolioValue(UUID userId) {
+        // Net quantity per ticker, skipping zero or negative holdings
         Map<String, Integer> holdings = new HashMap<>();
-        for (Trade trade : trades) {
-            int multiplier = trade.getType() == TradeType.BUY ? 1 : -1;
-            holdings.merge(trade.getTicker(),
-                    trade.getQuantity() * multiplier,
-                    Integer::sum);
-        }
+        positionBook.getPositions(userId).forEach((ticker, position) -> {
+            if (position.getQuantity() > 0) {
+                holdings.put(ticker, position.getQuantity());
+            }
+        });
+
+        // Fetch current prices in one bulk lookup and calculate values
+        Map<String, BigDecimal> prices = holdings.isEmpty()
+                ? Map.of()
+                : stockService.getCurrentPrices(holdings.keySet());
 
-        // Remove zero or negative holdings
-        holdings.entrySet().removeIf(entry -> entry.getValue() <= 0);
+        return portfolioValue(holdings, prices);
+    }
 
-        // Fetch current prices and calculate values
-        Map<String, Object> portfolio = new HashMap<>();
-        Map<String, Object> holdingDetails = new HashMap<>();
-        BigDecimal totalValue = BigDecimal.ZERO;
+    /**
+     * Holding values and total in fixed point, converted to BigDecimal
+     * only for the response.
+     */
+    PortfolioResponse portfolioValue(Map<String, Integer> holdings, Map<String, BigDecimal> prices) {
+        Map<String, HoldingValue> holdingDetails = new HashMap<>(holdings.size() * 4 / 3 + 1);
+        Money totalValue = Money.zero(CURRENCY);
 
         for (Map.Entry<String, Integer> entry : holdings.entrySet()) {
             String ticker = entry.getKey();
             int quantity = entry.getValue();
-
-            try {
-                BigDecimal currentPrice = stockService.getCurrentPrice(ticker);
-                BigDecimal value = currentPrice.multiply(BigDecimal.valueOf(quantity));
-                totalValue = totalValue.add(value);
-
-                Map<String, Object> detail = new HashMap<>();
-                detail.put("quantity", quantity);
-                detail.put("currentPrice", currentPrice);
-                detail.put("value", value);
-                holdingDetails.put(ticker, detail);
-            } catch (StockServiceException e) {
-                logger.warn("Could not fetch price for {}: {}", ticker, e.getMessage());
-                Map<String, Object> detail = new HashMap<>();
-                detail.put("quantity", quantity);
-                detail.put("error", "Price unavailable");
-                holdingDetails.put(ticker, detail);
+            BigDecimal currentPrice = prices.get(ticker);
+
+            if (currentPrice != null) {
+                Money value = Money.of(currentPrice, CURRENCY).times(quantity);
+                totalValue = totalValue.plus(value);
+                holdingDetails.put(ticker, HoldingValue.priced(quantity, currentPrice, value.toBigDecimal()));
+            } else {
+                logger.warn("Could not fetch price for {}", ticker);
+                holdingDetails.put(ticker, HoldingValue.unavailable(quantity));
             }
         }
 
-        portfolio.put("holdings", holdingDetails);
-        portfolio.put("totalValue", totalValue);
-        portfolio.put("currency", "USD");
-
-        return portfolio;
+        return new PortfolioResponse(holdingDetails, totalValue.toBigDecimal(), CURRENCY);
     }
 
     /**
@@ -157,13 +239,4 @@ public class PortfolioService {
     public List<Trade> getTradeHistory(UUID userId) {
         return tradeRepository.findByUserId(userId);
     }
-
-    /**
-     * Get all trades (for demo purposes without authentication).
-     *
-     * @return list of all trades
-     */
-    public List<Trade> getAllTrades() {
-        return tradeRepository.findAll();
-    }
 }
@@ -0,0 +1,48 @@
+package com.apm.service;
+
+import com.apm.model.TradeType;
+import java.math.BigDecimal;
+
+/**
+ * Immutable net position of one user in one ticker.
+ * A BUY adds its quantity and cost; a SELL only reduces the quantity, so
+ * totalCost is the gross cost of everything bought, which the snapshot
+ * consistency check can re-add in SQL. It is not the cost basis of the
+ * shares held; that comes from the tax lots in {@link LotBook}.
+ */
+public final class Position {
+
+    static final Position EMPTY = new Position(0, BigDecimal.ZERO);
+
+    private final int quantity;
+    private final BigDecimal totalCost;
+
+    public Position(int quantity, BigDecimal totalCost) {
+        this.quantity = quantity;
+        this.totalCost = totalCost;
+    }
+
+    /**
+     * Position after one more trade.
+     *
+     * @param type     BUY or SELL
+     * @param quantity number of shares
+     * @param price    execution price per share
+     * @return the new position
+     */
+    public Position apply(TradeType type, int quantity, BigDecimal price) {
+        if (type == TradeType.BUY) {
+            return new Position(this.quantity + quantity,
+                    totalCost.add(price.multiply(BigDecimal.valueOf(quantity))));
+        }
+        return new Position(this.quantity - quantity, totalCost);
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public BigDecimal getTotalCost() {
+        return totalCost;
+    }
+}
@@ -0,0 +1,239 @@
+package com.apm.service;
+
+import com.apm.model.PositionSnapshot;
+import com.apm.model.Trade;
+import com.apm.repository.PositionSnapshotRepository;
+import com.apm.repository.TradeRepository;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * In-memory net positions keyed by user and ticker.
+ * Every recorded trade updates the persisted snapshot in the trade's
+ * transaction and the in-memory book once it commits, so portfolio reads
+ * cost O(holdings) instead of replaying the user's whole trade history. At
+ * startup the book is loaded from the snapshots and only trades newer than
+ * the snapshot watermark are replayed.
+ */
+@Component
+public class PositionBook implements InitializingBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(PositionBook.class);
+
+    static final int REPLAY_PAGE_SIZE = 1000;
+
+    private static final Comparator<PositionSnapshot.Key> KEY_ORDER =
+            Comparator.comparing(PositionSnapshot.Key::getUserId).thenComparing(PositionSnapshot.Key::getTicker);
+
+    private final TradeRepository tradeRepository;
+    private final PositionSnapshotRepository snapshotRepository;
+    private final List<Consumer<List<Trade>>> commitListeners = new CopyOnWriteArrayList<>();
+    private volatile Map<UUID, Map<String, Position>> positions = new ConcurrentHashMap<>();
+
+    public PositionBook(TradeRepository tradeRepository, PositionSnapshotRepository snapshotRepository) {
+        this.tradeRepository = tradeRepository;
+        this.snapshotRepository = snapshotRepository;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        rebuild();
+    }
+
+    /**
+     * Replace the book with the stored snapshots plus every trade newer than
+     * the snapshot watermark. Replayed trades are written back to the
+     * snapshots, so an empty snapshot table is filled from a full replay
+     * once. Not meant to run while trades are being recorded.
+     */
+    public void rebuild() {
+        long start = System.nanoTime();
+        Map<UUID, Map<String, Position>> rebuilt = new ConcurrentHashMap<>();
+        Map<PositionSnapshot.Key, PositionSnapshot> snapshots = new HashMap<>();
+        for (PositionSnapshot snapshot : snapshotRepository.findAll()) {
+            snapshots.put(new PositionSnapshot.Key(snapshot.getUserId(), snapshot.getTicker()), snapshot);
+            rebuilt.computeIfAbsent(snapshot.getUserId(), id -> new ConcurrentHashMap<>())
+                    .put(snapshot.getTicker(), toPosition(snapshot));
+        }
+
+        int loaded = snapshots.size();
+
+        Long maxLastTradeId = snapshotRepository.findMaxLastTradeId();
+        long lastId = maxLastTradeId == null ? 0 : maxLastTradeId;
+        Map<PositionSnapshot.Key, PositionSnapshot> replayed = new HashMap<>();
+        List<Trade> page;
+        do {
+            page = tradeRepository.findByIdGreaterThanOrderByIdAsc(lastId,
+                    PageRequest.of(0, REPLAY_PAGE_SIZE));
+            for (Trade trade : page) {
+                lastId = trade.getId();
+                if (trade.getUserId() == null) {
+                    continue;
+                }
+                PositionSnapshot.Key key = new PositionSnapshot.Key(trade.getUserId(), trade.getTicker());
+                PositionSnapshot snapshot = snapshots.computeIfAbsent(key,
+                        k -> new PositionSnapshot(trade.getUserId(), trade.getTicker()));
+                if (trade.getId() <= snapshot.getLastTradeId()) {
+                    continue;
+                }
+                update(snapshot, apply(rebuilt, trade), trade.getId());
+                replayed.put(key, snapshot);
+            }
+        } while (page.size() == REPLAY_PAGE_SIZE);
+
+        if (!replayed.isEmpty()) {
+            snapshotRepository.saveAll(replayed.values());
+        }
+        positions = rebuilt;
+        logger.info("Position book loaded {} snapshots and replayed newer trades into {} positions in {} ms",
+                loaded, replayed.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Record a saved trade: its position snapshot is updated within the
+     * current transaction and the in-memory book and commit listeners once
+     * it commits, or right away if there is no transaction. A rolled back
+     * trade never reaches any of them.
+     *
+     * @param trade the saved trade
+     */
+    @Transactional
+    public void record(Trade trade) {
+        recordAll(List.of(trade));
+    }
+
+    /**
+     * Record a batch of saved trades like {@link #record(Trade)}, locking
+     * and writing each affected snapshot once. A missing snapshot row is
+     * inserted first, so the first trades on a new position lock it like any
+     * other. Snapshots are locked in key order so concurrent batches cannot
+     * deadlock.
+     *
+     * @param trades the saved trades in id order
+     */
+    @Transactional
+    public void recordAll(List<Trade> trades) {
+        Map<PositionSnapshot.Key, List<Trade>> byPosition = new TreeMap<>(KEY_ORDER);
+        for (Trade trade : trades) {
+            if (trade.getUserId() != null) {
+                byPosition.computeIfAbsent(new PositionSnapshot.Key(trade.getUserId(), trade.getTicker()),
+                        key -> new ArrayList<>()).add(trade);
+            }
+        }
+        if (byPosition.isEmpty()) {
+            return;
+        }
+
+        byPosition.forEach((key, keyTrades) -> {
+            snapshotRepository.insertIfAbsent(key.getUserId(), key.getTicker());
+            PositionSnapshot snapshot = snapshotRepository.findForUpdate(key.getUserId(), key.getTicker())
+                    .orElseGet(() -> new PositionSnapshot(key.getUserId(), key.getTicker()));
+            Position updated = toPosition(snapshot);
+            long lastTradeId = snapshot.getLastTradeId();
+            for (Trade trade : keyTrades) {
+                updated = updated.apply(trade.getType(), trade.getQuantity(), trade.getPrice());
+                lastTradeId = Math.max(lastTradeId, trade.getId());
+            }
+            update(snapshot, updated, lastTradeId);
+            snapshotRepository.save(snapshot);
+        });
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    committed(byPosition, trades);
+                }
+            });
+        } else {
+            committed(byPosition, trades);
+        }
+    }
+
+    /**
+     * Register a listener that receives every batch of recorded trades once
+     * it has committed.
+     *
+     * @param listener called on the committing thread; must not throw
+     */
+    public void addCommitListener(Consumer<List<Trade>> listener) {
+        commitListeners.add(listener);
+    }
+
+    private void committed(Map<PositionSnapshot.Key, List<Trade>> byPosition, List<Trade> trades) {
+        byPosition.values().forEach(keyTrades -> keyTrades.forEach(trade -> apply(positions, trade)));
+        commitListeners.forEach(listener -> listener.accept(trades));
+    }
+
+    /**
+     * Positions of one user, including closed ones with zero quantity.
+     *
+     * @param userId the user's UUID
+     * @return snapshot keyed by ticker
+     */
+    public Map<String, Position> getPositions(UUID userId) {
+        Map<String, Position> userPositions = positions.get(userId);
+        return userPositions == null ? Collections.emptyMap() : new HashMap<>(userPositions);
+    }
+
+    /**
+     * Tickers in which at least one user has a non-zero position.
+     *
+     * @return sorted ticker symbols
+     */
+    public Set<String> getHeldTickers() {
+        Set<String> tickers = new TreeSet<>();
+        for (Map<String, Position> userPositions : positions.values()) {
+            userPositions.forEach((ticker, position) -> {
+                if (position.getQuantity() != 0) {
+                    tickers.add(ticker);
+                }
+            });
+        }
+        return tickers;
+    }
+
+    /**
+     * Overwrite one in-memory position, e.g. after its snapshot was repaired.
+     */
+    void replace(UUID userId, String ticker, Position position) {
+        positions.computeIfAbsent(userId, id -> new ConcurrentHashMap<>()).put(ticker, position);
+    }
+
+    static Position toPosition(PositionSnapshot snapshot) {
+        return new Position(snapshot.getQuantity(), snapshot.getTotalCost());
+    }
+
+    static Position apply(Map<UUID, Map<String, Position>> book, Trade trade) {
+        return book.computeIfAbsent(trade.getUserId(), id -> new ConcurrentHashMap<>())
+                .compute(trade.getTicker(), (ticker, current) -> (current == null ? Position.EMPTY : current)
+                        .apply(trade.getType(), trade.getQuantity(), trade.getPrice()));
+    }
+
+    private static void update(PositionSnapshot snapshot, Position position, long lastTradeId) {
+        snapshot.setQuantity(position.getQuantity());
+        snapshot.setTotalCost(position.getTotalCost());
+        snapshot.setLastTradeId(lastTradeId);
+        snapshot.setUpdatedAt(LocalDateTime.now());
+    }
+}
@@ -0,0 +1,223 @@
+package com.apm.service;
+
+import com.apm.model.PositionSnapshot;
+import com.apm.repository.PositionSnapshotRepository;
+import com.apm.repository.PositionTotals;
+import com.apm.repository.TradeRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Periodically compares the position snapshots against a full replay of
+ * the trade table.
+ * The replay is a GROUP BY aggregate in the database over trades up to the
+ * highest id seen when the check starts, and snapshots that moved past
+ * that id are skipped, so trades recorded during the check are not
+ * reported as drift. Mismatches are logged and counted; with repair
+ * enabled the position is recomputed under its snapshot lock and the
+ * snapshot and the in-memory position are overwritten if they still
+ * differ.
+ */
+@Component
+@ConditionalOnProperty(name = "positions.consistency-check.enabled", havingValue = "true", matchIfMissing = true)
+public class PositionConsistencyCheck implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(PositionConsistencyCheck.class);
+
+    private final TradeRepository tradeRepository;
+    private final PositionSnapshotRepository snapshotRepository;
+    private final PositionBook positionBook;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration interval;
+    private final boolean repair;
+    private final ScheduledExecutorService scheduler;
+    private final Timer checkTimer;
+    private final Counter mismatches;
+
+    /**
+     * Create the consistency check.
+     *
+     * @param tradeRepository     source of the full replay
+     * @param snapshotRepository  snapshots to verify
+     * @param positionBook        in-memory positions fixed on repair
+     * @param transactionTemplate transaction for each repaired snapshot
+     * @param interval            time between checks
+     * @param repair              overwrite drifted snapshots with the replay
+     * @param meterRegistry       registry for check metrics
+     */
+    @Autowired
+    public PositionConsistencyCheck(TradeRepository tradeRepository,
+            PositionSnapshotRepository snapshotRepository, PositionBook positionBook,
+            TransactionTemplate transactionTemplate,
+            @Value("${positions.consistency-check.interval:6h}") Duration interval,
+            @Value("${positions.consistency-check.repair:false}") boolean repair,
+            MeterRegistry meterRegistry) {
+        this.tradeRepository = tradeRepository;
+        this.snapshotRepository = snapshotRepository;
+        this.positionBook = positionBook;
+        this.transactionTemplate = transactionTemplate;
+        this.interval = interval;
+        this.repair = repair;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(threadFactory());
+        this.checkTimer = Timer.builder("positions.consistency.check")
+                .description("Time to compare position snapshots with a full trade replay")
+                .register(meterRegistry);
+        this.mismatches = Counter.builder("positions.consistency.mismatches")
+                .description("Position snapshots that differed from a full trade replay")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Start the periodic check once the application is up.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::runCheck, interval.toNanos(), interval.toNanos(),
+                TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Replay all trades and compare the result with the snapshots.
+     *
+     * @return number of mismatched positions
+     */
+    public int check() {
+        return checkTimer.record(() -> {
+            Long maxTradeId = tradeRepository.findMaxId();
+            long watermark = maxTradeId == null ? 0 : maxTradeId;
+            Map<PositionSnapshot.Key, PositionSnapshot> replayed = replay(watermark);
+
+            int found = 0;
+            for (PositionSnapshot snapshot : snapshotRepository.findAll()) {
+                PositionSnapshot.Key key = new PositionSnapshot.Key(snapshot.getUserId(), snapshot.getTicker());
+                PositionSnapshot expected = replayed.remove(key);
+                if (snapshot.getLastTradeId() > watermark) {
+                    continue;
+                }
+                if (expected == null) {
+                    expected = new PositionSnapshot(snapshot.getUserId(), snapshot.getTicker());
+                }
+                if (!matches(snapshot, expected)) {
+                    found++;
+                    report(snapshot, expected);
+                }
+            }
+            for (PositionSnapshot expected : replayed.values()) {
+                found++;
+                report(null, expected);
+            }
+
+            mismatches.increment(found);
+            if (found > 0) {
+                logger.warn("Position consistency check found {} mismatched snapshots up to trade {}",
+                        found, watermark);
+            } else {
+                logger.info("Position consistency check passed up to trade {}", watermark);
+            }
+            return found;
+        });
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+
+    private Map<PositionSnapshot.Key, PositionSnapshot> replay(long watermark) {
+        Map<PositionSnapshot.Key, PositionSnapshot> replayed = new HashMap<>();
+        for (PositionTotals totals : tradeRepository.findPositionTotals(watermark)) {
+            PositionSnapshot expected = new PositionSnapshot(totals.getUserId(), totals.getTicker());
+            expected.setQuantity(totals.getQuantity().intValue());
+            expected.setTotalCost(totals.getTotalCost());
+            expected.setLastTradeId(totals.getLastTradeId());
+            replayed.put(new PositionSnapshot.Key(totals.getUserId(), totals.getTicker()), expected);
+        }
+        return replayed;
+    }
+
+    private void report(PositionSnapshot snapshot, PositionSnapshot expected) {
+        logger.warn("Position snapshot for user {} {} is {} but trades replay to quantity {} cost {}",
+                expected.getUserId(), expected.getTicker(),
+                snapshot == null ? "missing"
+                        : "quantity " + snapshot.getQuantity() + " cost " + snapshot.getTotalCost(),
+                expected.getQuantity(), expected.getTotalCost());
+        if (repair) {
+            repair(expected.getUserId(), expected.getTicker());
+        }
+    }
+
+    /**
+     * Recompute one position from all committed trades while holding its
+     * snapshot lock and overwrite the snapshot only if it still differs.
+     * The replay that found the drift can miss a trade with a lower id that
+     * committed after it ran; trades still in flight wait for the lock and
+     * apply on top of the repaired snapshot.
+     */
+    private void repair(UUID userId, String ticker) {
+        Boolean repaired = transactionTemplate.execute(status -> {
+            snapshotRepository.insertIfAbsent(userId, ticker);
+            PositionSnapshot snapshot = snapshotRepository.findForUpdate(userId, ticker)
+                    .orElseGet(() -> new PositionSnapshot(userId, ticker));
+            PositionSnapshot expected = new PositionSnapshot(userId, ticker);
+            tradeRepository.findPositionTotals(userId, ticker).ifPresent(totals -> {
+                expected.setQuantity(totals.getQuantity().intValue());
+                expected.setTotalCost(totals.getTotalCost());
+                expected.setLastTradeId(totals.getLastTradeId());
+            });
+            if (matches(snapshot, expected)) {
+                return false;
+            }
+            snapshot.setQuantity(expected.getQuantity());
+            snapshot.setTotalCost(expected.getTotalCost());
+            snapshot.setLastTradeId(Math.max(snapshot.getLastTradeId(), expected.getLastTradeId()));
+            snapshot.setUpdatedAt(LocalDateTime.now());
+            snapshotRepository.save(snapshot);
+            positionBook.replace(userId, ticker, PositionBook.toPosition(snapshot));
+            return true;
+        });
+        if (Boolean.TRUE.equals(repaired)) {
+            logger.info("Repaired position snapshot for user {} {}", userId, ticker);
+        } else {
+            logger.info("Position snapshot for user {} {} matches its trades again, left as is", userId, ticker);
+        }
+    }
+
+    private static boolean matches(PositionSnapshot actual, PositionSnapshot expected) {
+        return actual.getQuantity().equals(expected.getQuantity())
+                && actual.getTotalCost().compareTo(expected.getTotalCost()) == 0;
+    }
+
+    private void runCheck() {
+        try {
+            check();
+        } catch (RuntimeException e) {
+            logger.error("Position consistency check failed: {}", e.getMessage());
+        }
+    }
+
+    private static CustomizableThreadFactory threadFactory() {
+        CustomizableThreadFactory factory = new CustomizableThreadFactory("position-check-");
+        factory.setDaemon(true);
+        return factory;
+    }
+}
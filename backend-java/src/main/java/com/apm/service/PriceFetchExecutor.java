@@ -0,0 +1,109 @@
+package com.apm.service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Fans out single-ticker price lookups over a bounded thread pool.
+ * All lookups of one call share a deadline; tickers that have not answered
+ * by then are cancelled and left out of the result, so the caller waits for
+ * the slowest single lookup at most instead of the sum of all of them.
+ */
+@Component
+public class PriceFetchExecutor implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(PriceFetchExecutor.class);
+
+    private final ThreadPoolExecutor executor;
+    private final Duration deadline;
+
+    @Autowired
+    public PriceFetchExecutor(
+            @Value("${market.service.fan-out.threads:16}") int threads,
+            @Value("${market.service.fan-out.queue-capacity:500}") int queueCapacity,
+            @Value("${market.service.fan-out.deadline:3s}") Duration deadline) {
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(queueCapacity), threadFactory(),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+        this.deadline = deadline;
+    }
+
+    /**
+     * Look up every ticker concurrently and wait until all answered or the
+     * deadline passed.
+     *
+     * @param tickers the stock symbols
+     * @param fetcher single-ticker lookup, run on the pool
+     * @return prices of the tickers that answered in time, keyed by ticker
+     */
+    public Map<String, BigDecimal> fetchAll(Collection<String> tickers,
+            Function<String, BigDecimal> fetcher) {
+        long deadlineNanos = System.nanoTime() + deadline.toNanos();
+
+        Map<String, Future<BigDecimal>> futures = new LinkedHashMap<>();
+        for (String ticker : tickers) {
+            try {
+                futures.put(ticker, executor.submit(() -> fetcher.apply(ticker)));
+            } catch (RejectedExecutionException e) {
+                logger.warn("Price fetch queue full, skipping {}", ticker);
+            }
+        }
+
+        Map<String, BigDecimal> prices = new HashMap<>();
+        List<String> late = new ArrayList<>();
+        for (Map.Entry<String, Future<BigDecimal>> entry : futures.entrySet()) {
+            Future<BigDecimal> future = entry.getValue();
+            long remaining = Math.max(0, deadlineNanos - System.nanoTime());
+            try {
+                prices.put(entry.getKey(), future.get(remaining, TimeUnit.NANOSECONDS));
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                late.add(entry.getKey());
+            } catch (ExecutionException e) {
+                logger.debug("Price fetch failed for {}: {}", entry.getKey(), e.getCause().getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.values().forEach(f -> f.cancel(true));
+                break;
+            }
+        }
+
+        if (!late.isEmpty()) {
+            logger.warn("Price fetch deadline of {} exceeded for {}", deadline, late);
+        }
+        return prices;
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    private static CustomizableThreadFactory threadFactory() {
+        CustomizableThreadFactory factory = new CustomizableThreadFactory("price-fetch-");
+        factory.setDaemon(true);
+        return factory;
+    }
+}
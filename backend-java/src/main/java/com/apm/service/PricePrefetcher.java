@@ -0,0 +1,150 @@
+package com.apm.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the price cache warm for every held ticker.
+ * Periodically takes the tickers with a non-zero position from the position
+ * book and refreshes their cached prices in bulk batches, so portfolio and
+ * analytics requests are served from the cache instead of waiting on the
+ * market engine. Each run is scheduled after a jittered delay so several
+ * instances do not hit the engine in lockstep.
+ */
+@Component
+@ConditionalOnProperty(name = "market.service.prefetch.enabled", havingValue = "true", matchIfMissing = true)
+public class PricePrefetcher implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(PricePrefetcher.class);
+
+    private final PositionBook positionBook;
+    private final CachingStockService stockService;
+    private final long intervalNanos;
+    private final double jitter;
+    private final int batchSize;
+    private final Duration initialDelay;
+    private final ScheduledExecutorService scheduler;
+    private final Timer prefetchTimer;
+    private final AtomicInteger heldTickers = new AtomicInteger();
+
+    /**
+     * Create a prefetcher.
+     *
+     * @param positionBook    source of the currently held tickers
+     * @param stockService    the price cache to keep warm
+     * @param interval        average time between runs; keep it below the
+     *                        cache TTL
+     * @param jitter          fraction (0-1) by which each delay may deviate
+     *                        from the interval
+     * @param batchSize       tickers per bulk refresh
+     * @param initialDelay    delay of the first run after startup
+     * @param meterRegistry   registry for prefetch metrics
+     */
+    @Autowired
+    public PricePrefetcher(PositionBook positionBook, CachingStockService stockService,
+            @Value("${market.service.prefetch.interval:30s}") Duration interval,
+            @Value("${market.service.prefetch.jitter:0.2}") double jitter,
+            @Value("${market.service.prefetch.batch-size:50}") int batchSize,
+            @Value("${market.service.prefetch.initial-delay:5s}") Duration initialDelay,
+            MeterRegistry meterRegistry) {
+        this.positionBook = positionBook;
+        this.stockService = stockService;
+        this.intervalNanos = interval.toNanos();
+        this.jitter = Math.max(0, Math.min(1, jitter));
+        this.batchSize = Math.max(1, batchSize);
+        this.initialDelay = initialDelay;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(threadFactory());
+        this.prefetchTimer = Timer.builder("market.prices.prefetch")
+                .description("Time to refresh prices of all held tickers")
+                .register(meterRegistry);
+        Gauge.builder("market.prices.prefetch.tickers", heldTickers, AtomicInteger::get)
+                .description("Held tickers refreshed by the last prefetch run")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Start the refresh loop once the application is up.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        logger.info("Prefetching held ticker prices every {} (jitter {})",
+                Duration.ofNanos(intervalNanos), jitter);
+        scheduler.schedule(this::runAndReschedule, initialDelay.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Refresh the cached price of every held ticker.
+     *
+     * @return number of prices refreshed
+     */
+    public int prefetch() {
+        return prefetchTimer.record(() -> {
+            List<String> tickers = new ArrayList<>(positionBook.getHeldTickers());
+            heldTickers.set(tickers.size());
+
+            int refreshed = 0;
+            for (int from = 0; from < tickers.size(); from += batchSize) {
+                List<String> batch = tickers.subList(from, Math.min(from + batchSize, tickers.size()));
+                refreshed += stockService.refresh(batch);
+            }
+
+            if (refreshed < tickers.size()) {
+                logger.warn("Prefetched {} of {} held ticker prices", refreshed, tickers.size());
+            } else {
+                logger.debug("Prefetched {} held ticker prices", refreshed);
+            }
+            return refreshed;
+        });
+    }
+
+    /**
+     * Delay before the next run: the interval, shifted randomly by up to
+     * the jitter fraction in either direction.
+     */
+    long nextDelayNanos() {
+        double factor = 1 + jitter * ThreadLocalRandom.current().nextDouble(-1, 1);
+        return (long) (intervalNanos * factor);
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+
+    private void runAndReschedule() {
+        try {
+            prefetch();
+        } catch (RuntimeException e) {
+            logger.error("Price prefetch failed: {}", e.getMessage());
+        } finally {
+            if (!scheduler.isShutdown()) {
+                scheduler.schedule(this::runAndReschedule, nextDelayNanos(), TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    private static CustomizableThreadFactory threadFactory() {
+        CustomizableThreadFactory factory = new CustomizableThreadFactory("price-prefetch-");
+        factory.setDaemon(true);
+        return factory;
+    }
+}
@@ -1,68 +1,278 @@
 package com.apm.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestOperations;
-import org.springframework.web.client.RestTemplate;
 
 /**
  * Production implementation of StockService that calls the Python Market
  * Engine.
  */
 @Service
+@Qualifier("priceSource")
 @Profile("!test")
 public class RealStockService implements StockService {
 
     private static final Logger logger = LoggerFactory.getLogger(RealStockService.class);
 
+    static final int DEFAULT_BATCH_SIZE = 50;
+
     private final RestOperations restOperations;
     private final String marketServiceUrl;
+    private final int batchSize;
+    private final PriceFetchExecutor priceFetchExecutor;
+    private final SingleFlight<String, BigDecimal> singleFlight;
+    private final CircuitBreaker circuitBreaker;
+    private final Bulkhead bulkhead;
+    private final RequestHedger requestHedger;
+    private final Cache<String, BigDecimal> lastKnownPrices;
 
+    /**
+     * Create a client for the market engine.
+     *
+     * @param restOperations     pooled HTTP client for the engine
+     * @param batchSize          maximum tickers per bulk request; zero or less
+     *                           disables the bulk endpoint
+     * @param priceFetchExecutor pool used to fan out single lookups when the
+     *                           bulk endpoint is disabled or fails
+     * @param circuitBreaker     breaker guarding every engine call
+     * @param bulkhead           cap on concurrent engine calls
+     * @param requestHedger      hedges slow single-ticker lookups
+     * @param fallbackMaxAge     how old a last known price may be to be served
+     *                           while calls are rejected; zero disables it
+     * @param coalescedMaxWait   longest a lookup waits for an identical one
+     *                           already in flight
+     * @param meterRegistry      registry for client metrics
+     */
+    @Autowired
     public RealStockService(
-            @Value("${market.service.url:http://localhost:5000}") String marketServiceUrl) {
-        this(marketServiceUrl, new RestTemplate());
+            @Value("${market.service.url:http://localhost:5000}") String marketServiceUrl,
+            @Qualifier("marketEngineRestTemplate") RestOperations restOperations,
+            @Value("${market.service.batch-size:50}") int batchSize,
+            PriceFetchExecutor priceFetchExecutor,
+            CircuitBreaker circuitBreaker,
+            Bulkhead bulkhead,
+            RequestHedger requestHedger,
+            @Value("${market.service.breaker.fallback-max-age:15m}") Duration fallbackMaxAge,
+            @Value("${market.service.coalesced-max-wait:10s}") Duration coalescedMaxWait,
+            MeterRegistry meterRegistry) {
+        this.marketServiceUrl = marketServiceUrl;
+        this.restOperations = restOperations;
+        this.batchSize = batchSize;
+        this.priceFetchExecutor = priceFetchExecutor;
+        this.singleFlight = new SingleFlight<>("market.price", coalescedMaxWait,
+                StockServiceException::new, meterRegistry);
+        this.circuitBreaker = circuitBreaker;
+        this.bulkhead = bulkhead;
+        this.requestHedger = requestHedger;
+        this.lastKnownPrices = fallbackMaxAge.isZero()
+                ? null
+                : Caffeine.newBuilder().maximumSize(10_000).expireAfterWrite(fallbackMaxAge).build();
     }
 
     // Constructor for testing with injected RestOperations
     public RealStockService(String marketServiceUrl, RestOperations restOperations) {
-        this.marketServiceUrl = marketServiceUrl;
-        this.restOperations = restOperations;
+        this(marketServiceUrl, restOperations, DEFAULT_BATCH_SIZE,
+                new PriceFetchExecutor(4, 100, Duration.ofSeconds(5)),
+                new CircuitBreaker("market-engine", 20, 10, 50, Duration.ofSeconds(30), 2),
+                new Bulkhead(20, Duration.ofMillis(500)),
+                new RequestHedger(false, 95, Duration.ofMillis(250), Duration.ofMillis(20), 10, 1,
+                        new SimpleMeterRegistry()),
+                Duration.ofMinutes(15), Duration.ofSeconds(10), new SimpleMeterRegistry());
     }
 
+    /**
+     * Fetch the price of one ticker. Concurrent lookups of the same ticker
+     * share a single request to the market engine; if hedging is enabled, a
+     * slow request is raced against a second one.
+     */
     @Override
     public BigDecimal getCurrentPrice(String ticker) {
-        String url = marketServiceUrl + "/price/" + ticker.toUpperCase();
+        String upperTicker = ticker.toUpperCase();
+        return singleFlight.execute(upperTicker, () -> fetchPrice(upperTicker));
+    }
+
+    private BigDecimal fetchPrice(String ticker) {
+        String url = marketServiceUrl + "/price/" + ticker;
         logger.info("Fetching price for {} from {}", ticker, url);
 
+        Map<?, ?> response;
         try {
-            @SuppressWarnings("unchecked")
-            Map<String, Object> response = restOperations.getForObject(url, Map.class);
-
-            if (response == null || !response.containsKey("price")) {
-                throw new StockServiceException("Invalid response from market service for " + ticker);
+            response = requestHedger.execute(
+                    () -> guarded(ticker, () -> restOperations.getForObject(url, Map.class)));
+        } catch (MarketEngineUnavailableException e) {
+            BigDecimal lastKnown = lastKnownPrice(ticker);
+            if (lastKnown == null) {
+                throw e;
             }
+            logger.warn("{}; serving last known price {}", e.getMessage(), lastKnown);
+            return lastKnown;
+        } catch (RestClientException e) {
+            logger.error("Failed to fetch price for {}: {}", ticker, e.getMessage());
+            throw new StockServiceException("Market service unavailable for " + ticker, e);
+        }
+
+        if (response == null || !response.containsKey("price")) {
+            throw new StockServiceException("Invalid response from market service for " + ticker);
+        }
+
+        BigDecimal price = toPrice(response.get("price"));
+        remember(ticker, price);
 
-            Object priceObj = response.get("price");
-            BigDecimal price;
+        logger.info("Retrieved price {} for {}", price, ticker);
+        return price;
+    }
 
-            if (priceObj instanceof Number) {
-                price = BigDecimal.valueOf(((Number) priceObj).doubleValue());
-            } else {
-                price = new BigDecimal(priceObj.toString());
+    /**
+     * Run an engine call through the circuit breaker and bulkhead. Connection
+     * errors, timeouts and 5xx responses count as failures; other outcomes,
+     * including 4xx for unknown tickers, show the engine is healthy.
+     */
+    private <T> T guarded(String target, Supplier<T> call) {
+        if (!circuitBreaker.tryAcquirePermission()) {
+            throw new MarketEngineUnavailableException("Market service circuit open for " + target);
+        }
+        if (!bulkhead.tryAcquire()) {
+            circuitBreaker.releasePermission();
+            throw new MarketEngineUnavailableException("Market service busy for " + target);
+        }
+        try {
+            T result = call.get();
+            circuitBreaker.onSuccess();
+            return result;
+        } catch (ResourceAccessException | HttpServerErrorException e) {
+            circuitBreaker.onFailure();
+            throw e;
+        } catch (RuntimeException e) {
+            circuitBreaker.onSuccess();
+            throw e;
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    private void remember(String ticker, BigDecimal price) {
+        if (lastKnownPrices != null) {
+            lastKnownPrices.put(ticker, price);
+        }
+    }
+
+    private BigDecimal lastKnownPrice(String ticker) {
+        return lastKnownPrices != null ? lastKnownPrices.getIfPresent(ticker) : null;
+    }
+
+    /**
+     * Fetch prices through the engine's bulk endpoint, at most
+     * {@code batchSize} tickers per request. If the bulk endpoint is disabled
+     * or a chunk request fails, that chunk is fetched with concurrent
+     * single-ticker lookups under a shared deadline instead. Tickers that
+     * still have no price are left out of the result.
+     */
+    @Override
+    public Map<String, BigDecimal> getCurrentPrices(Collection<String> tickers) {
+        Set<String> unique = new LinkedHashSet<>();
+        for (String ticker : tickers) {
+            unique.add(ticker.toUpperCase());
+        }
+
+        if (batchSize <= 0) {
+            return fanOut(unique);
+        }
+
+        Map<String, BigDecimal> prices = new HashMap<>();
+        List<String> chunk = new ArrayList<>(Math.min(batchSize, unique.size()));
+        for (String ticker : unique) {
+            chunk.add(ticker);
+            if (chunk.size() == batchSize) {
+                fetchChunk(chunk, prices);
+                chunk.clear();
             }
+        }
+        if (!chunk.isEmpty()) {
+            fetchChunk(chunk, prices);
+        }
+        return prices;
+    }
+
+    private Map<String, BigDecimal> fanOut(Collection<String> tickers) {
+        return priceFetchExecutor.fetchAll(tickers, this::getCurrentPrice);
+    }
+
+    private void fetchChunk(List<String> chunk, Map<String, BigDecimal> prices) {
+        String url = marketServiceUrl + "/prices";
+        logger.info("Fetching {} prices from {}", chunk.size(), url);
 
-            logger.info("Retrieved price {} for {}", price, ticker);
-            return price;
+        Map<String, Object> request = new HashMap<>();
+        request.put("tickers", chunk);
 
+        Map<?, ?> response;
+        try {
+            response = guarded("bulk request", () -> restOperations.postForObject(url, request, Map.class));
+        } catch (MarketEngineUnavailableException e) {
+            logger.warn("{}; serving last known prices for {}", e.getMessage(), chunk);
+            for (String ticker : chunk) {
+                BigDecimal lastKnown = lastKnownPrice(ticker);
+                if (lastKnown != null) {
+                    prices.put(ticker, lastKnown);
+                }
+            }
+            return;
         } catch (RestClientException e) {
-            logger.error("Failed to fetch price for {}: {}", ticker, e.getMessage());
-            throw new StockServiceException("Market service unavailable for " + ticker, e);
+            logger.error("Bulk price request failed for {}, falling back to single lookups: {}",
+                    chunk, e.getMessage());
+            prices.putAll(fanOut(chunk));
+            return;
+        }
+
+        if (response == null || !(response.get("prices") instanceof Map)) {
+            logger.error("Invalid bulk response from market service for {}", chunk);
+            return;
+        }
+
+        Map<?, ?> results = (Map<?, ?>) response.get("prices");
+        for (String ticker : chunk) {
+            Object result = results.get(ticker);
+            Object priceObj = result instanceof Map ? ((Map<?, ?>) result).get("price") : null;
+            if (priceObj == null) {
+                logger.warn("No price returned for {}: {}", ticker, result);
+                continue;
+            }
+            try {
+                BigDecimal price = toPrice(priceObj);
+                remember(ticker, price);
+                prices.put(ticker, price);
+            } catch (NumberFormatException e) {
+                logger.warn("Malformed price {} returned for {}", priceObj, ticker);
+            }
+        }
+    }
+
+    private static BigDecimal toPrice(Object priceObj) {
+        if (priceObj instanceof Number) {
+            return BigDecimal.valueOf(((Number) priceObj).doubleValue());
         }
+        return new BigDecimal(priceObj.toString());
     }
 }
@@ -0,0 +1,264 @@
+package com.apm.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Hedges slow market engine calls.
+ * If a call has not answered after the hedge delay, the same call is started
+ * a second time and whichever succeeds first wins. The delay follows a
+ * percentile of recent call latencies, so only the slow tail is hedged, and
+ * hedges are paid for from a token budget that grows by a fixed fraction of
+ * every call, capping the extra load on the engine at that fraction.
+ * The losing call is not interrupted (blocking HTTP reads ignore it); it
+ * finishes in the background within the client read timeout.
+ */
+@Component
+public class RequestHedger implements DisposableBean {
+
+    private static final int SAMPLE_SIZE = 128;
+    private static final int MIN_SAMPLES = 20;
+    private static final int RECOMPUTE_EVERY = 16;
+    private static final double MAX_TOKENS = 10;
+
+    private final boolean enabled;
+    private final int percentile;
+    private final long minDelayNanos;
+    private final double tokensPerCall;
+    private final ThreadPoolExecutor executor;
+
+    // Ring buffer of recent primary call latencies in nanoseconds
+    private final long[] samples = new long[SAMPLE_SIZE];
+    private int sampleCount;
+    private int nextSample;
+    private int sinceRecompute;
+    private volatile long delayNanos;
+
+    private double tokens;
+
+    private final Counter primaries;
+    private final Counter hedges;
+    private final Counter hedgeWins;
+    private final Counter skipped;
+
+    /**
+     * Create a hedger.
+     *
+     * @param enabled             false runs every call once on the caller thread
+     * @param percentile          latency percentile (1-99) used as hedge delay
+     * @param initialDelay        hedge delay until enough latencies are known
+     * @param minDelay            lower bound for the hedge delay
+     * @param maxExtraLoadPercent hedges allowed per 100 calls
+     * @param threads             threads running primary and hedged calls
+     * @param meterRegistry       registry for hedge metrics
+     */
+    @Autowired
+    public RequestHedger(
+            @Value("${market.service.hedge.enabled:false}") boolean enabled,
+            @Value("${market.service.hedge.percentile:95}") int percentile,
+            @Value("${market.service.hedge.initial-delay:250ms}") Duration initialDelay,
+            @Value("${market.service.hedge.min-delay:20ms}") Duration minDelay,
+            @Value("${market.service.hedge.max-extra-load-percent:10}") int maxExtraLoadPercent,
+            @Value("${market.service.hedge.threads:32}") int threads,
+            MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.percentile = Math.max(1, Math.min(99, percentile));
+        this.minDelayNanos = minDelay.toNanos();
+        this.delayNanos = Math.max(minDelayNanos, initialDelay.toNanos());
+        this.tokensPerCall = maxExtraLoadPercent / 100.0;
+        this.executor = enabled
+                ? new ThreadPoolExecutor(0, threads, 60, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                        threadFactory(), new ThreadPoolExecutor.AbortPolicy())
+                : null;
+
+        this.primaries = Counter.builder("market.engine.hedge.calls")
+                .tag("kind", "primary")
+                .description("Market engine calls eligible for hedging")
+                .register(meterRegistry);
+        this.hedges = Counter.builder("market.engine.hedge.calls")
+                .tag("kind", "hedge")
+                .description("Hedged market engine calls sent")
+                .register(meterRegistry);
+        this.hedgeWins = Counter.builder("market.engine.hedge.wins")
+                .description("Hedged calls that answered before the primary")
+                .register(meterRegistry);
+        this.skipped = Counter.builder("market.engine.hedge.skipped")
+                .description("Hedges not sent because the budget or pool was exhausted")
+                .register(meterRegistry);
+        Gauge.builder("market.engine.hedge.delay", this, h -> h.getHedgeDelay().toMillis())
+                .description("Current hedge delay in milliseconds")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Run the call, hedging it if it is slow.
+     *
+     * @param call the call; must be safe to run twice
+     * @return the first successful result
+     */
+    public <T> T execute(Supplier<T> call) {
+        if (!enabled) {
+            return call.get();
+        }
+
+        primaries.increment();
+        addTokens();
+
+        long start = System.nanoTime();
+        CompletableFuture<T> primary;
+        try {
+            primary = CompletableFuture.supplyAsync(call, executor);
+        } catch (RejectedExecutionException e) {
+            skipped.increment();
+            return call.get();
+        }
+        primary.thenRun(() -> recordLatency(System.nanoTime() - start));
+
+        try {
+            return primary.get(delayNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            // Slow call, hedge below
+        } catch (ExecutionException e) {
+            throw propagate(e.getCause());
+        } catch (InterruptedException e) {
+            throw interrupted();
+        }
+
+        if (!tryTakeToken()) {
+            skipped.increment();
+            return await(primary);
+        }
+        CompletableFuture<T> hedge;
+        try {
+            hedge = CompletableFuture.supplyAsync(call, executor);
+        } catch (RejectedExecutionException e) {
+            skipped.increment();
+            return await(primary);
+        }
+        hedges.increment();
+
+        CompletableFuture<T> first = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        primary.whenComplete((result, error) -> settle(first, failures, result, error, false));
+        hedge.whenComplete((result, error) -> settle(first, failures, result, error, true));
+        return await(first);
+    }
+
+    /**
+     * Current delay before a call is hedged.
+     */
+    public Duration getHedgeDelay() {
+        return Duration.ofNanos(delayNanos);
+    }
+
+    public long getHedgeCount() {
+        return (long) hedges.count();
+    }
+
+    public long getHedgeWinCount() {
+        return (long) hedgeWins.count();
+    }
+
+    @Override
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private <T> void settle(CompletableFuture<T> first, AtomicInteger failures, T result,
+            Throwable error, boolean isHedge) {
+        if (error == null) {
+            if (first.complete(result) && isHedge) {
+                hedgeWins.increment();
+            }
+        } else if (failures.incrementAndGet() == 2) {
+            first.completeExceptionally(error);
+        }
+    }
+
+    private synchronized void addTokens() {
+        tokens = Math.min(MAX_TOKENS, tokens + tokensPerCall);
+    }
+
+    private synchronized boolean tryTakeToken() {
+        if (tokens < 1) {
+            return false;
+        }
+        tokens -= 1;
+        return true;
+    }
+
+    private void recordLatency(long nanos) {
+        synchronized (samples) {
+            samples[nextSample] = nanos;
+            nextSample = (nextSample + 1) % SAMPLE_SIZE;
+            sampleCount = Math.min(SAMPLE_SIZE, sampleCount + 1);
+            if (sampleCount < MIN_SAMPLES || ++sinceRecompute < RECOMPUTE_EVERY) {
+                return;
+            }
+            sinceRecompute = 0;
+            long[] sorted = Arrays.copyOf(samples, sampleCount);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+            delayNanos = Math.max(minDelayNanos, sorted[index]);
+        }
+    }
+
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw propagate(e.getCause());
+        } catch (InterruptedException e) {
+            throw interrupted();
+        }
+    }
+
+    /**
+     * An interrupted caller gets the same failure as a rejected call, so
+     * RealStockService can still serve the last known price or a 503.
+     */
+    private static MarketEngineUnavailableException interrupted() {
+        Thread.currentThread().interrupt();
+        return new MarketEngineUnavailableException("Interrupted while waiting for market engine call");
+    }
+
+    private static RuntimeException propagate(Throwable cause) {
+        if (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new CompletionException(cause);
+    }
+
+    private static CustomizableThreadFactory threadFactory() {
+        CustomizableThreadFactory factory = new CustomizableThreadFactory("price-hedge-");
+        factory.setDaemon(true);
+        return factory;
+    }
+}
@@ -0,0 +1,114 @@
+package com.apm.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+/**
+ * Deduplicates concurrent calls for the same key.
+ * The first caller for a key runs the call; callers arriving while it is
+ * still running wait for it and receive the same result or exception.
+ * A waiting caller gives up after the maximum wait, or when interrupted,
+ * with the exception built by the wait failure function; the call itself
+ * keeps running for its own caller.
+ *
+ * @param <K> the key type
+ * @param <V> the result type
+ */
+public class SingleFlight<K, V> {
+
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final long maxWaitNanos;
+    private final BiFunction<String, Throwable, ? extends RuntimeException> waitFailure;
+    private final Counter executed;
+    private final Counter coalesced;
+
+    /**
+     * Create a single-flight group.
+     *
+     * @param name        metric name prefix, e.g. {@code market.price}
+     * @param maxWait     longest a caller waits for an in-flight call
+     * @param waitFailure builds the exception thrown, from a message and
+     *                    the cause, when a caller stops waiting
+     * @param registry    registry for the executed/coalesced call counters
+     */
+    public SingleFlight(String name, Duration maxWait,
+            BiFunction<String, Throwable, ? extends RuntimeException> waitFailure,
+            MeterRegistry registry) {
+        this.maxWaitNanos = maxWait.toNanos();
+        this.waitFailure = waitFailure;
+        this.executed = Counter.builder(name + ".calls")
+                .tag("outcome", "executed")
+                .description("Calls that were executed")
+                .register(registry);
+        this.coalesced = Counter.builder(name + ".calls")
+                .tag("outcome", "coalesced")
+                .description("Calls that joined an identical in-flight call")
+                .register(registry);
+        registry.gauge(name + ".in.flight", inFlight, Map::size);
+    }
+
+    /**
+     * Run the call for this key, or join the one already in flight.
+     *
+     * @param key  identifies identical calls
+     * @param call the call to run if none is in flight
+     * @return the result of the shared call
+     */
+    public V execute(K key, Supplier<V> call) {
+        CompletableFuture<V> created = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            coalesced.increment();
+            return await(key, existing);
+        }
+
+        executed.increment();
+        try {
+            V result = call.get();
+            created.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, created);
+        }
+    }
+
+    /**
+     * Number of calls that joined an in-flight call instead of executing.
+     */
+    public long getCoalescedCount() {
+        return (long) coalesced.count();
+    }
+
+    private V await(K key, CompletableFuture<V> future) {
+        try {
+            return future.get(maxWaitNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            throw waitFailure.apply("Timed out waiting for in-flight call for " + key, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw waitFailure.apply("Interrupted while waiting for in-flight call for " + key, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new CompletionException(cause);
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package com.apm.service;
 
 import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Interface for stock price fetching service.
@@ -17,4 +20,25 @@ public interface StockService {
      *                               unavailable
      */
     BigDecimal getCurrentPrice(String ticker);
+
+    /**
+     * Get the current prices for several tickers at once.
+     * Tickers whose price could not be fetched are left out of the result, so
+     * callers can report them individually instead of failing the whole lookup.
+     * The default implementation falls back to one lookup per ticker.
+     *
+     * @param tickers the stock symbols
+     * @return prices keyed by upper-case ticker symbol
+     */
+    default Map<String, BigDecimal> getCurrentPrices(Collection<String> tickers) {
+        Map<String, BigDecimal> prices = new HashMap<>();
+        for (String ticker : tickers) {
+            try {
+                prices.put(ticker.toUpperCase(), getCurrentPrice(ticker));
+            } catch (StockServiceException e) {
+                // Left out of the result; the caller reports it as unavailable
+            }
+        }
+        return prices;
+    }
 }
@@ -0,0 +1,77 @@
+package com.apm.service;
+
+import com.apm.model.Trade;
+import com.apm.model.TradeType;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tax lot accounting for one user's trades, fed in one streaming pass in
+ * execution order. Each ticker keeps its open lots in a {@link LotQueue};
+ * a SELL takes shares by the chosen cost basis method, reduces the cost
+ * basis by the cost of those shares and realizes the difference to its
+ * proceeds. Amounts are held in micro-units; trade prices with more than
+ * six decimal places are rounded half up to a micro-unit. Not thread-safe.
+ */
+public final class TaxLotEngine {
+
+    private final CostBasisMethod method;
+    private final Map<String, LotQueue> lots = new HashMap<>();
+
+    public TaxLotEngine(CostBasisMethod method) {
+        this.method = method;
+    }
+
+    public CostBasisMethod getMethod() {
+        return method;
+    }
+
+    /**
+     * Apply the next trade.
+     *
+     * @param trade the trade, not older than any trade applied before it
+     * @throws ArithmeticException if an amount overflows
+     */
+    public void apply(Trade trade) {
+        apply(trade.getTicker(), trade.getType(), trade.getQuantity(), trade.getPrice());
+    }
+
+    /**
+     * Apply the next trade.
+     *
+     * @param ticker   stock symbol
+     * @param type     BUY or SELL
+     * @param quantity number of shares
+     * @param price    execution price per share
+     * @throws ArithmeticException if an amount overflows
+     */
+    public void apply(String ticker, TradeType type, int quantity, BigDecimal price) {
+        LotQueue queue = lots.computeIfAbsent(ticker, key -> new LotQueue(method));
+        long unitPrice = toMicros(price);
+        if (type == TradeType.BUY) {
+            queue.buy(quantity, unitPrice);
+        } else {
+            queue.sell(quantity, unitPrice);
+        }
+    }
+
+    /**
+     * Current state of every ticker traded so far, closed positions
+     * included.
+     *
+     * @return positions keyed by ticker
+     */
+    public Map<String, LotPosition> getPositions() {
+        Map<String, LotPosition> positions = new HashMap<>(lots.size() * 4 / 3 + 1);
+        lots.forEach((ticker, queue) -> positions.put(ticker, new LotPosition(queue.quantity(),
+                BigDecimal.valueOf(queue.cost(), Money.SCALE),
+                BigDecimal.valueOf(queue.realized(), Money.SCALE))));
+        return positions;
+    }
+
+    private static long toMicros(BigDecimal price) {
+        return price.setScale(Money.SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+}
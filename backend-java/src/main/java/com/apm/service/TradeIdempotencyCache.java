@@ -0,0 +1,77 @@
+package com.apm.service;
+
+import com.apm.model.Trade;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.function.Supplier;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Recently recorded trades by user and idempotency key.
+ * A retried request is answered from here without a price lookup or a
+ * database round trip. Entries expire after the configured TTL and the
+ * cache is size bounded; anything evicted is found again through the
+ * database, where the key is unique per user. Concurrent requests with the
+ * same key share a single execution; one that waits longer than the maximum
+ * wait is rejected and can be retried with the same key.
+ */
+@Component
+public class TradeIdempotencyCache {
+
+    private static final String CACHE_NAME = "trades.idempotency";
+
+    private final Cache<String, Trade> cache;
+    private final SingleFlight<String, Trade> singleFlight;
+
+    /**
+     * Create the cache.
+     *
+     * @param maximumSize   most keys kept in memory
+     * @param timeToLive    how long a key is remembered in memory
+     * @param maxWait       longest a request waits for one with the same key
+     * @param meterRegistry registry for cache and single-flight metrics
+     */
+    @Autowired
+    public TradeIdempotencyCache(
+            @Value("${trades.idempotency.cache.max-size:100000}") long maximumSize,
+            @Value("${trades.idempotency.cache.ttl:24h}") Duration timeToLive,
+            @Value("${trades.idempotency.max-wait:30s}") Duration maxWait,
+            MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(timeToLive)
+                .recordStats()
+                .build();
+        this.singleFlight = new SingleFlight<>(CACHE_NAME, maxWait,
+                (message, cause) -> new TradeWriteRejectedException(message), meterRegistry);
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    /**
+     * Return the trade remembered for this key, or run the call once and
+     * remember its result. Failures are not remembered.
+     *
+     * @param userId         the user the key belongs to
+     * @param idempotencyKey the client supplied key
+     * @param call           records the trade, or finds the one already recorded
+     * @return the trade for this key
+     */
+    public Trade execute(UUID userId, String idempotencyKey, Supplier<Trade> call) {
+        String key = userId + ":" + idempotencyKey;
+        Trade cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        return singleFlight.execute(key, () -> {
+            Trade trade = call.get();
+            cache.put(key, trade);
+            return trade;
+        });
+    }
+}
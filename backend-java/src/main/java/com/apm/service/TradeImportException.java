@@ -0,0 +1,13 @@
+package com.apm.service;
+
+/**
+ * Exception thrown when an import upload cannot be read at all, e.g. a CSV
+ * without the required header columns. Problems with single rows are
+ * reported in the import result instead.
+ */
+public class TradeImportException extends RuntimeException {
+
+    public TradeImportException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,328 @@
+package com.apm.service;
+
+import com.apm.dto.TradeImportResult;
+import com.apm.dto.TradeRequest;
+import com.apm.model.Trade;
+import com.apm.model.TradeType;
+import com.apm.repository.TradeJdbcRepository;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.channels.Channels;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Bulk trade import from a JSON array or a CSV upload.
+ * The upload is read and validated row by row, so memory use does not
+ * depend on its size. Valid rows are inserted with JDBC batch inserts on a
+ * writer thread while the request thread parses the next batch, one
+ * transaction per batch that also updates the position snapshots and, on
+ * commit, the position book. Invalid rows are skipped and reported with
+ * their row number. Imported trades need a price; no prices are looked up.
+ */
+@Service
+public class TradeImportService implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(TradeImportService.class);
+
+    private static final int MAX_TICKER_LENGTH = 10;
+    private static final BigDecimal MAX_PRICE = new BigDecimal("100000000");
+
+    private final TradeJdbcRepository tradeJdbcRepository;
+    private final PositionBook positionBook;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+    private final int maxReportedErrors;
+    private final int pendingBatches;
+    private final ExecutorService writerExecutor;
+    private final Timer batchTimer;
+    private final Counter importedRows;
+    private final Counter rejectedRows;
+
+    /**
+     * Create an import service.
+     *
+     * @param tradeJdbcRepository batch inserts of the imported trades
+     * @param positionBook        position book updated with imported trades
+     * @param transactionTemplate transaction per batch
+     * @param objectMapper        mapper reading JSON uploads
+     * @param batchSize           rows per insert batch and transaction
+     * @param maxReportedErrors   rejected rows listed in the result
+     * @param writerThreads       threads writing batches; one import uses
+     *                            one at a time
+     * @param pendingBatches      batches of one import that may wait for or
+     *                            be in writing while parsing goes on
+     * @param meterRegistry       registry for import metrics
+     */
+    @Autowired
+    public TradeImportService(TradeJdbcRepository tradeJdbcRepository, PositionBook positionBook,
+            TransactionTemplate transactionTemplate, ObjectMapper objectMapper,
+            @Value("${trades.import.batch-size:1000}") int batchSize,
+            @Value("${trades.import.max-reported-errors:100}") int maxReportedErrors,
+            @Value("${trades.import.writer-threads:4}") int writerThreads,
+            @Value("${trades.import.pending-batches:2}") int pendingBatches,
+            MeterRegistry meterRegistry) {
+        this.tradeJdbcRepository = tradeJdbcRepository;
+        this.positionBook = positionBook;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxReportedErrors = Math.max(0, maxReportedErrors);
+        this.pendingBatches = Math.max(1, pendingBatches);
+        this.writerExecutor = Executors.newFixedThreadPool(Math.max(1, writerThreads), threadFactory());
+        this.batchTimer = Timer.builder("trades.import.batch")
+                .description("Time to insert one import batch and update its positions")
+                .register(meterRegistry);
+        this.importedRows = Counter.builder("trades.import.rows")
+                .tag("result", "imported")
+                .description("Imported trade rows")
+                .register(meterRegistry);
+        this.rejectedRows = Counter.builder("trades.import.rows")
+                .tag("result", "rejected")
+                .description("Rejected trade rows")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Import a JSON array of trades shaped like {@link TradeRequest}.
+     * Rows are numbered by their position in the array, starting at 1. A
+     * syntax error ends the import; rows before it stay imported.
+     *
+     * @param userId the user owning the trades
+     * @param in     the upload
+     * @return counts and the first rejected rows
+     * @throws IOException if the upload cannot be read
+     */
+    public TradeImportResult importJson(UUID userId, InputStream in) throws IOException {
+        ImportBatch batch = new ImportBatch(userId);
+        long row = 0;
+        boolean inRow = false;
+        try (JsonParser parser = objectMapper.createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new TradeImportException("Expected a JSON array of trades");
+            }
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                row++;
+                if (token == null) {
+                    batch.reject(row, "Unexpected end of input");
+                    break;
+                }
+                inRow = true;
+                JsonNode node = parser.readValueAsTree();
+                inRow = false;
+                try {
+                    batch.add(row, objectMapper.treeToValue(node, TradeRequest.class));
+                } catch (JsonProcessingException e) {
+                    batch.reject(row, "Invalid trade: " + e.getOriginalMessage());
+                }
+            }
+        } catch (JsonProcessingException e) {
+            batch.reject(inRow ? row : row + 1, "Malformed JSON: " + e.getOriginalMessage());
+        } finally {
+            batch.awaitWrites();
+        }
+        return batch.finish();
+    }
+
+    /**
+     * Import a CSV upload, see {@link CsvTradeReader} for the format. Rows
+     * are numbered by line, the header being line 1; blank lines are
+     * skipped. Parsing continues while earlier batches are being written.
+     *
+     * @param userId the user owning the trades
+     * @param in     the upload, UTF-8 encoded
+     * @return counts and the first rejected rows
+     * @throws IOException if the upload cannot be read
+     */
+    public TradeImportResult importCsv(UUID userId, InputStream in) throws IOException {
+        ImportBatch batch = new ImportBatch(userId);
+        try (CsvTradeReader reader = new CsvTradeReader(Channels.newChannel(in), CsvTradeReader.DEFAULT_BUFFER_SIZE)) {
+            while (reader.next()) {
+                if (reader.getError() != null) {
+                    batch.reject(reader.getRow(), reader.getError());
+                } else {
+                    batch.add(reader.getRow(), reader.getTicker(), reader.getType(), reader.getQuantity(),
+                            reader.getPrice(), reader.getTimestamp());
+                }
+            }
+            return batch.finish();
+        } finally {
+            batch.awaitWrites();
+        }
+    }
+
+    /**
+     * Reason a row cannot be imported, or null if it is valid.
+     */
+    static String validate(String ticker, TradeType type, Integer quantity, BigDecimal price) {
+        if (ticker == null || ticker.isBlank()) {
+            return "Ticker symbol is required";
+        }
+        if (ticker.trim().length() > MAX_TICKER_LENGTH) {
+            return "Ticker symbol must be at most " + MAX_TICKER_LENGTH + " characters";
+        }
+        if (type == null) {
+            return "Trade type is required";
+        }
+        if (quantity == null || quantity < 1) {
+            return "Quantity must be greater than 0";
+        }
+        if (price == null || price.signum() <= 0) {
+            return "Price is required for imported trades";
+        }
+        if (price.compareTo(MAX_PRICE) >= 0) {
+            return "Price must be below " + MAX_PRICE.toPlainString();
+        }
+        return null;
+    }
+
+    @Override
+    public void destroy() {
+        writerExecutor.shutdownNow();
+    }
+
+    private static CustomizableThreadFactory threadFactory() {
+        CustomizableThreadFactory factory = new CustomizableThreadFactory("trade-import-");
+        factory.setDaemon(true);
+        return factory;
+    }
+
+    /**
+     * One running import: the batch being filled, the batches handed to the
+     * writer threads and the running result. Batches of one import are
+     * written one after another in upload order, at most pendingBatches
+     * ahead of the parser, which bounds the trades held in memory.
+     */
+    private final class ImportBatch {
+
+        private final UUID userId;
+        private final TradeImportResult result = new TradeImportResult();
+        private final Semaphore pending = new Semaphore(pendingBatches);
+        private CompletableFuture<Void> writes = CompletableFuture.completedFuture(null);
+        private List<Trade> trades = new ArrayList<>(batchSize);
+        private long[] rows = new long[batchSize];
+
+        ImportBatch(UUID userId) {
+            this.userId = userId;
+        }
+
+        void add(long row, TradeRequest request) {
+            add(row, request.getTicker(), request.getType(), request.getQuantity(), request.getPrice(),
+                    request.getTimestamp());
+        }
+
+        void add(long row, String ticker, TradeType type, Integer quantity, BigDecimal price,
+                LocalDateTime timestamp) {
+            BigDecimal storedPrice = price == null ? null : price.setScale(Trade.PRICE_SCALE, RoundingMode.HALF_UP);
+            String error = validate(ticker, type, quantity, storedPrice);
+            if (error != null) {
+                reject(row, error);
+                return;
+            }
+            Trade trade = new Trade(userId, ticker.trim(), type, quantity, storedPrice);
+            if (timestamp != null) {
+                trade.setTimestamp(timestamp);
+            }
+            rows[trades.size()] = row;
+            trades.add(trade);
+            if (trades.size() >= batchSize) {
+                submit();
+            }
+        }
+
+        synchronized void reject(long row, String message) {
+            result.setFailed(result.getFailed() + 1);
+            rejectedRows.increment();
+            if (result.getErrors().size() < maxReportedErrors) {
+                result.getErrors().add(new TradeImportResult.RowError(row, message));
+            }
+        }
+
+        TradeImportResult finish() {
+            submit();
+            awaitWrites();
+            synchronized (this) {
+                logger.info("Imported {} trades, rejected {}", result.getImported(), result.getFailed());
+                return result;
+            }
+        }
+
+        /**
+         * Wait until every submitted batch has been written.
+         */
+        void awaitWrites() {
+            writes.join();
+        }
+
+        private synchronized void imported(int count) {
+            result.setImported(result.getImported() + count);
+            importedRows.increment(count);
+        }
+
+        private void submit() {
+            if (trades.isEmpty()) {
+                return;
+            }
+            List<Trade> batch = trades;
+            long[] batchRows = rows;
+            trades = new ArrayList<>(batchSize);
+            rows = new long[batchSize];
+
+            pending.acquireUninterruptibly();
+            writes = writes.thenRunAsync(() -> {
+                try {
+                    write(batch, batchRows);
+                } finally {
+                    pending.release();
+                }
+            }, writerExecutor);
+        }
+
+        private void write(List<Trade> batch, long[] batchRows) {
+            try {
+                batchTimer.record(() -> transactionTemplate.executeWithoutResult(status -> {
+                    tradeJdbcRepository.insertAll(batch);
+                    positionBook.recordAll(batch);
+                }));
+                imported(batch.size());
+            } catch (RuntimeException e) {
+                String cause = NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+                String message = e instanceof DataAccessException
+                        ? "Batch rejected by the database: " + cause
+                        : "Batch could not be written: " + cause;
+                logger.warn("Import batch of {} trades failed: {}", batch.size(), cause);
+                for (int i = 0; i < batch.size(); i++) {
+                    reject(batchRows[i], message);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.apm.service;
+
+import com.apm.model.Trade;
+import com.apm.repository.TradeRepository;
+import com.apm.repository.TradeSpecifications;
+import jakarta.persistence.EntityManager;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Read access to the trade history in bounded memory.
+ * Trades are returned in id order and paged with a keyset cursor (the last
+ * id seen) instead of an offset, so every page is an index range scan no
+ * matter how deep into the table it is.
+ */
+@Service
+public class TradeQueryService {
+
+    private static final Sort BY_ID = Sort.by("id");
+    private static final Sort BY_TIME = Sort.by("timestamp", "id");
+
+    private final TradeRepository tradeRepository;
+    private final EntityManager entityManager;
+
+    public TradeQueryService(TradeRepository tradeRepository, EntityManager entityManager) {
+        this.tradeRepository = tradeRepository;
+        this.entityManager = entityManager;
+    }
+
+    /**
+     * Get up to {@code limit} trades after the cursor.
+     *
+     * @param userId  only this user's trades, or null for all users
+     * @param ticker  only this ticker, or null for all tickers
+     * @param afterId id of the last trade already seen, or null to start
+     * @param limit   maximum number of trades
+     * @return trades in id order
+     */
+    @Transactional(readOnly = true)
+    public List<Trade> findPage(UUID userId, String ticker, Long afterId, int limit) {
+        return tradeRepository.findBy(filter(userId, ticker, afterId),
+                query -> query.sortBy(BY_ID).limit(limit).all());
+    }
+
+    /**
+     * Pass every matching trade to the consumer, reading from a database
+     * cursor. Each trade is detached once consumed so the persistence
+     * context does not grow with the result.
+     *
+     * @param userId   only this user's trades, or null for all users
+     * @param ticker   only this ticker, or null for all tickers
+     * @param afterId  id of the last trade already seen, or null to start
+     * @param consumer receives the trades in id order
+     * @return number of trades streamed
+     */
+    @Transactional(readOnly = true)
+    public long stream(UUID userId, String ticker, Long afterId, Consumer<Trade> consumer) {
+        return stream(filter(userId, ticker, afterId), BY_ID, consumer);
+    }
+
+    /**
+     * Pass every trade of a user to the consumer in execution order, by
+     * timestamp and then id, like {@link #stream}.
+     *
+     * @param userId   the user's UUID
+     * @param consumer receives the trades in timestamp order
+     * @return number of trades streamed
+     */
+    @Transactional(readOnly = true)
+    public long streamByTime(UUID userId, Consumer<Trade> consumer) {
+        return stream(TradeSpecifications.forUser(userId), BY_TIME, consumer);
+    }
+
+    private long stream(Specification<Trade> filter, Sort sort, Consumer<Trade> consumer) {
+        long count = 0;
+        try (Stream<Trade> trades = tradeRepository.findBy(filter,
+                query -> query.sortBy(sort).stream())) {
+            for (Trade trade : (Iterable<Trade>) trades::iterator) {
+                consumer.accept(trade);
+                entityManager.detach(trade);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static Specification<Trade> filter(UUID userId, String ticker, Long afterId) {
+        return Specification.where(TradeSpecifications.idAfter(afterId))
+                .and(TradeSpecifications.forUser(userId))
+                .and(TradeSpecifications.forTicker(ticker));
+    }
+}
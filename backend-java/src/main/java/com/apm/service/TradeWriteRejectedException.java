@@ -0,0 +1,12 @@
+package com.apm.service;
+
+/**
+ * Exception thrown when a trade cannot be queued for writing because the
+ * write queue is full or the application is shutting down.
+ */
+public class TradeWriteRejectedException extends RuntimeException {
+
+    public TradeWriteRejectedException(String message) {
+        super(message);
+    }
+}
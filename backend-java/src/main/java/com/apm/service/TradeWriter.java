@@ -0,0 +1,18 @@
+package com.apm.service;
+
+import com.apm.model.Trade;
+
+/**
+ * Persists new trades together with their position updates. The
+ * implementation is chosen by {@code trades.group-commit.enabled}.
+ */
+public interface TradeWriter {
+
+    /**
+     * Save a trade and update its position; returns once both are committed.
+     *
+     * @param trade a new trade without id
+     * @return the saved trade with its id
+     */
+    Trade write(Trade trade);
+}
@@ -0,0 +1,33 @@
+package com.apm.service;
+
+import com.apm.model.User;
+import java.util.UUID;
+
+/**
+ * What authentication needs to know about a user, copied from the entity so
+ * it can be cached and shared between threads.
+ *
+ * @param id           the user's id
+ * @param email        the user's email
+ * @param passwordHash the stored BCrypt hash
+ */
+public record UserCredentials(UUID id, String email, String passwordHash) {
+
+    /**
+     * Copy the credentials of a user.
+     *
+     * @param user the user entity
+     * @return an immutable copy
+     */
+    public static UserCredentials of(User user) {
+        return new UserCredentials(user.getId(), user.getEmail(), user.getPasswordHash());
+    }
+
+    /**
+     * Leaves the password hash out of logs.
+     */
+    @Override
+    public String toString() {
+        return "UserCredentials[id=" + id + ", email=" + email + "]";
+    }
+}
@@ -0,0 +1,117 @@
+package com.apm.service;
+
+import com.apm.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.time.Duration;
+import java.util.Optional;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Read-through cache of user credentials by email in front of
+ * UserRepository.
+ * Emails with no account are cached too, for a shorter time, so repeated
+ * logins with unknown emails, as in credential stuffing, do not each cost
+ * a query. Concurrent misses for the same email share one query. Whoever
+ * creates a user or changes a password must call {@link #invalidate}.
+ */
+@Component
+public class UserLookupCache {
+
+    private static final String CACHE_NAME = "auth.users";
+
+    private final UserRepository userRepository;
+    private final Cache<String, Optional<UserCredentials>> cache;
+
+    /**
+     * Create the cache.
+     *
+     * @param userRepository     where misses are loaded from
+     * @param maximumSize        most emails kept in memory
+     * @param timeToLive         how long a found user is remembered
+     * @param negativeTimeToLive how long an unknown email is remembered
+     * @param meterRegistry      registry for cache metrics
+     */
+    @Autowired
+    public UserLookupCache(UserRepository userRepository,
+            @Value("${auth.user-cache.max-size:10000}") long maximumSize,
+            @Value("${auth.user-cache.ttl:10m}") Duration timeToLive,
+            @Value("${auth.user-cache.negative-ttl:30s}") Duration negativeTimeToLive,
+            MeterRegistry meterRegistry) {
+        this.userRepository = userRepository;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new FoundOrMissing(timeToLive, negativeTimeToLive))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    /**
+     * Credentials of the user with this email, from memory if looked up
+     * recently.
+     *
+     * @param email the user's email
+     * @return the credentials, or empty if there is no such user
+     */
+    public Optional<UserCredentials> find(String email) {
+        return cache.get(email, key -> userRepository.findByEmail(key).map(UserCredentials::of));
+    }
+
+    /**
+     * Forget what is cached for an email. Inside a transaction the entry is
+     * dropped again when the transaction ends, so a lookup that raced it
+     * cannot leave the old state behind.
+     *
+     * @param email the user's email
+     */
+    public void invalidate(String email) {
+        cache.invalidate(email);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    cache.invalidate(email);
+                }
+            });
+        }
+    }
+
+    /**
+     * Users live for the full TTL, unknown emails for the negative TTL.
+     */
+    private static final class FoundOrMissing implements Expiry<String, Optional<UserCredentials>> {
+
+        private final long foundNanos;
+        private final long missingNanos;
+
+        FoundOrMissing(Duration timeToLive, Duration negativeTimeToLive) {
+            this.foundNanos = timeToLive.toNanos();
+            this.missingNanos = negativeTimeToLive.toNanos();
+        }
+
+        @Override
+        public long expireAfterCreate(String key, Optional<UserCredentials> value, long currentTime) {
+            return value.isPresent() ? foundNanos : missingNanos;
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Optional<UserCredentials> value, long currentTime,
+                long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, Optional<UserCredentials> value, long currentTime,
+                long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
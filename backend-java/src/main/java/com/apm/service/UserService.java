@@ -3,11 +3,13 @@ package com.apm.service;
 import com.apm.model.User;
 import com.apm.repository.UserRepository;
 import com.apm.security.JwtUtil;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Optional;
+import java.util.UUID;
 
 /**
  * Service for user authentication and management.
@@ -15,28 +17,38 @@ import java.util.Optional;
 @Service
 public class UserService {
 
+    private static final Logger logger = LoggerFactory.getLogger(UserService.class);
+
     private final UserRepository userRepository;
-    private final BCryptPasswordEncoder passwordEncoder;
+    private final UserLookupCache userLookupCache;
+    private final PasswordHasher passwordHasher;
     private final JwtUtil jwtUtil;
 
-    public UserService(UserRepository userRepository, JwtUtil jwtUtil) {
+    public UserService(UserRepository userRepository, UserLookupCache userLookupCache,
+            PasswordHasher passwordHasher, JwtUtil jwtUtil) {
         this.userRepository = userRepository;
-        this.passwordEncoder = new BCryptPasswordEncoder();
+        this.userLookupCache = userLookupCache;
+        this.passwordHasher = passwordHasher;
         this.jwtUtil = jwtUtil;
     }
 
     /**
      * Register a new user with BCrypt password hashing.
+     * Not transactional: the hash, which may queue for the hashing pool,
+     * is made before the user is saved in the repository's own short
+     * transaction, so waiting registrations do not hold a database
+     * connection. A concurrent registration of the same email is rejected
+     * by the unique email constraint.
      *
      * @param email    user's email
      * @param password plain text password
      * @return the created user
      * @throws IllegalArgumentException if email already exists
+     * @throws PasswordHashRejectedException if password hashing is saturated
      */
-    @Transactional
     public User registerUser(String email, String password) {
         // Validate email doesn't exist
-        if (userRepository.existsByEmail(email)) {
+        if (userLookupCache.find(email).isPresent()) {
             throw new IllegalArgumentException("Email already registered");
         }
 
@@ -44,39 +56,70 @@ public class UserService {
         validatePassword(password);
 
         // Hash password with BCrypt
-        String hashedPassword = passwordEncoder.encode(password);
+        String hashedPassword = passwordHasher.hash(password);
 
         // Create and save user
         User user = new User(email, hashedPassword);
-        return userRepository.save(user);
+        try {
+            return userRepository.save(user);
+        } catch (DataIntegrityViolationException e) {
+            // A concurrent registration saved this email first
+            throw new IllegalArgumentException("Email already registered");
+        } finally {
+            // Drop the cached "no such user" left by the check above
+            userLookupCache.invalidate(email);
+        }
     }
 
     /**
      * Authenticate user and return JWT token.
+     * A stored hash made with a different BCrypt cost than the configured
+     * one is replaced with a new hash of the same password.
      *
      * @param email    user's email
      * @param password plain text password
      * @return JWT token
      * @throws IllegalArgumentException if credentials are invalid
+     * @throws PasswordHashRejectedException if password hashing is saturated
      */
     public String authenticateUser(String email, String password) {
-        Optional<User> userOpt = userRepository.findByEmail(email);
+        Optional<UserCredentials> userOpt = userLookupCache.find(email);
 
         if (userOpt.isEmpty()) {
             throw new IllegalArgumentException("Invalid email or password");
         }
 
-        User user = userOpt.get();
+        UserCredentials user = userOpt.get();
 
         // Verify password with BCrypt
-        if (!passwordEncoder.matches(password, user.getPasswordHash())) {
+        if (!passwordHasher.matches(password, user.passwordHash())) {
             throw new IllegalArgumentException("Invalid email or password");
         }
+        if (passwordHasher.needsRehash(user.passwordHash())) {
+            rehash(user, password);
+        }
 
         // Generate and return JWT token
         return jwtUtil.generateToken(email);
     }
 
+    /**
+     * Store a hash with the current cost. Login does not depend on it, so
+     * a saturated pool or a failed save leaves the old hash for next time.
+     */
+    private void rehash(UserCredentials credentials, String password) {
+        try {
+            String hashedPassword = passwordHasher.hash(password);
+            userRepository.findById(credentials.id()).ifPresent(user -> {
+                user.setPasswordHash(hashedPassword);
+                userRepository.save(user);
+            });
+            userLookupCache.invalidate(credentials.email());
+        } catch (RuntimeException e) {
+            logger.warn("Could not upgrade password hash for user {}: {}", credentials.id(), e.getMessage());
+        }
+    }
+
     /**
      * Find user by email.
      *
@@ -87,6 +130,17 @@ public class UserService {
         return userRepository.findByEmail(email);
     }
 
+    /**
+     * Find the id of the user with this email, e.g. the subject of a JWT,
+     * through the user cache.
+     *
+     * @param email user's email
+     * @return the user's id, or empty if there is no such user
+     */
+    public Optional<UUID> findUserId(String email) {
+        return userLookupCache.find(email).map(UserCredentials::id);
+    }
+
     /**
      * Validate password strength.
      * Must be at least 8 characters with 1 special character.
@@ -0,0 +1,81 @@
+package com.apm.config;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.web.client.RestTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Unit tests for MarketEngineClientConfig against a local stub engine.
+ */
+class MarketEngineClientConfigTest {
+
+    private final MarketEngineClientConfig config = new MarketEngineClientConfig();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private HttpServer engine;
+    private PoolingHttpClientConnectionManager connectionManager;
+    private CloseableHttpClient httpClient;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        engine = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        engine.createContext("/price/", MarketEngineClientConfigTest::price);
+        engine.start();
+
+        connectionManager = config.marketEngineConnectionManager(meterRegistry, 8, 3,
+                Duration.ofSeconds(2), Duration.ofSeconds(5), Duration.ofMinutes(5));
+        httpClient = config.marketEngineHttpClient(connectionManager, Duration.ofSeconds(1),
+                Duration.ofSeconds(5), Duration.ofSeconds(30), Duration.ofSeconds(30));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        httpClient.close();
+        engine.stop(0);
+    }
+
+    @Test
+    void connectionManager_appliesPoolLimits() {
+        assertEquals(8, connectionManager.getMaxTotal());
+        assertEquals(3, connectionManager.getDefaultMaxPerRoute());
+    }
+
+    @Test
+    void restTemplate_sequentialCalls_reuseOneConnection() {
+        RestTemplate restTemplate = config.marketEngineRestTemplate(new RestTemplateBuilder(), httpClient);
+        String url = "http://127.0.0.1:" + engine.getAddress().getPort() + "/price/AAPL";
+
+        for (int i = 0; i < 5; i++) {
+            Map<?, ?> response = restTemplate.getForObject(url, Map.class);
+            assertEquals(185.92, response.get("price"));
+        }
+
+        assertEquals(1.0, meterRegistry.get("market.engine.connections.opened").counter().count());
+        assertEquals(1, connectionManager.getTotalStats().getAvailable());
+    }
+
+    private static void price(HttpExchange exchange) throws IOException {
+        byte[] body = "{\"ticker\":\"AAPL\",\"price\":185.92}".getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -1,27 +1,41 @@
 package com.apm.controller;
 
+import com.apm.dto.HoldingValue;
+import com.apm.dto.PortfolioResponse;
 import com.apm.dto.TradeRequest;
 import com.apm.dto.TradeResponse;
 import com.apm.model.Trade;
 import com.apm.model.TradeType;
 import com.apm.service.PortfolioService;
+import com.apm.service.TradeImportService;
+import com.apm.service.TradeQueryService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayOutputStream;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.function.Consumer;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.when;
 
 /**
@@ -33,12 +47,18 @@ class TradeControllerTest {
         @Mock
         private PortfolioService portfolioService;
 
-        @InjectMocks
+        @Mock
+        private TradeQueryService tradeQueryService;
+
+        @Mock
+        private TradeImportService tradeImportService;
+
         private TradeController tradeController;
 
         @BeforeEach
         void setUp() {
-                // Setup if needed
+                tradeController = new TradeController(portfolioService, tradeQueryService, tradeImportService,
+                                new ObjectMapper().findAndRegisterModules(), 2, 3);
         }
 
         @Test
@@ -52,14 +72,14 @@ class TradeControllerTest {
                                 new BigDecimal("485.50"));
                 mockTrade.setId(101L);
 
-                // Mock with 6 parameters (including timestamp)
-                when(portfolioService.recordTrade(any(), any(), any(), any(), any(), any()))
+                // Mock with 7 parameters (including timestamp and idempotency key)
+                when(portfolioService.recordTrade(any(), any(), any(), any(), any(), any(), any()))
                                 .thenReturn(mockTrade);
 
                 TradeRequest request = new TradeRequest("NVDA", TradeType.BUY, 10, BigDecimal.ZERO);
 
                 // Act
-                ResponseEntity<TradeResponse> response = tradeController.createTrade(request);
+                ResponseEntity<TradeResponse> response = tradeController.createTrade(request, null);
 
                 // Assert
                 assertEquals(HttpStatus.CREATED, response.getStatusCode());
@@ -70,36 +90,98 @@ class TradeControllerTest {
         }
 
         @Test
-        void getAllTrades_shouldReturnListOfTrades() {
+        void getTrades_lastPage_hasNoCursor() {
                 // Arrange
-                Trade trade1 = new Trade(UUID.randomUUID(), "AAPL", TradeType.BUY, 5, new BigDecimal("185.00"));
-                Trade trade2 = new Trade(UUID.randomUUID(), "GOOGL", TradeType.SELL, 3, new BigDecimal("140.00"));
+                Trade trade1 = trade(1L, "AAPL");
+                Trade trade2 = trade(2L, "GOOGL");
 
-                when(portfolioService.getAllTrades()).thenReturn(Arrays.asList(trade1, trade2));
+                when(tradeQueryService.findPage(null, null, null, 3)).thenReturn(Arrays.asList(trade1, trade2));
 
                 // Act
-                ResponseEntity<?> response = tradeController.getAllTrades();
+                ResponseEntity<List<Trade>> response = tradeController.getTrades(null, null, null, null);
 
                 // Assert
                 assertEquals(HttpStatus.OK, response.getStatusCode());
-                assertNotNull(response.getBody());
+                assertEquals(2, response.getBody().size());
+                assertNull(response.getHeaders().getFirst(TradeController.NEXT_CURSOR_HEADER));
+        }
+
+        @Test
+        void getTrades_withMoreTrades_returnsCursorOfLastTrade() {
+                // Arrange
+                UUID userId = UUID.randomUUID();
+                when(tradeQueryService.findPage(userId, "AAPL", 10L, 3))
+                                .thenReturn(Arrays.asList(trade(11L, "AAPL"), trade(12L, "AAPL"), trade(13L, "AAPL")));
+
+                // Act
+                ResponseEntity<List<Trade>> response = tradeController.getTrades(userId, "AAPL", 10L, null);
+
+                // Assert
+                assertEquals(2, response.getBody().size());
+                assertEquals("12", response.getHeaders().getFirst(TradeController.NEXT_CURSOR_HEADER));
+        }
+
+        @Test
+        void getTrades_limitIsCappedAtMaximum() {
+                // Arrange
+                when(tradeQueryService.findPage(null, null, null, 4)).thenReturn(List.of());
+
+                // Act
+                ResponseEntity<List<Trade>> response = tradeController.getTrades(null, null, null, 500);
+
+                // Assert
+                assertTrue(response.getBody().isEmpty());
+        }
+
+        @Test
+        void streamTrades_writesOneJsonObjectPerLine() throws Exception {
+                // Arrange
+                doAnswer(invocation -> {
+                        Consumer<Trade> consumer = invocation.getArgument(3);
+                        consumer.accept(trade(1L, "AAPL"));
+                        consumer.accept(trade(2L, "NVDA"));
+                        return 2L;
+                }).when(tradeQueryService).stream(eq(null), eq("AAPL"), eq(null), any());
+
+                // Act
+                ResponseEntity<StreamingResponseBody> response = tradeController.streamTrades(null, "AAPL", null);
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                response.getBody().writeTo(out);
+
+                // Assert
+                assertEquals(TradeController.NDJSON, response.getHeaders().getContentType());
+                String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+                assertEquals(2, lines.length);
+                assertTrue(lines[0].startsWith("{") && lines[0].contains("\"ticker\":\"AAPL\""));
+                assertTrue(lines[1].contains("\"id\":2"));
         }
 
         @Test
-        void getPortfolio_shouldReturnPortfolioValue() {
+        void getPortfolio_shouldReturnPortfolioValue() throws Exception {
                 // Arrange
-                Map<String, Object> portfolio = new HashMap<>();
-                portfolio.put("totalValue", new BigDecimal("5000.00"));
-                portfolio.put("currency", "USD");
+                PortfolioResponse portfolio = new PortfolioResponse(
+                                Map.of("AAPL", HoldingValue.priced(10, new BigDecimal("500.00"), new BigDecimal("5000.00")),
+                                                "XYZ", HoldingValue.unavailable(5)),
+                                new BigDecimal("5000.00"), "USD");
 
                 when(portfolioService.calculatePortfolioValue(any())).thenReturn(portfolio);
 
                 // Act
-                ResponseEntity<Map<String, Object>> response = tradeController.getPortfolio();
+                ResponseEntity<byte[]> response = tradeController.getPortfolio();
 
                 // Assert
                 assertEquals(HttpStatus.OK, response.getStatusCode());
-                assertNotNull(response.getBody());
-                assertEquals(new BigDecimal("5000.00"), response.getBody().get("totalValue"));
+                assertEquals(MediaType.APPLICATION_JSON, response.getHeaders().getContentType());
+                JsonNode body = new ObjectMapper().readTree(response.getBody());
+                assertEquals(new ObjectMapper().readTree("{\"holdings\": {"
+                                + "\"AAPL\": {\"quantity\": 10, \"currentPrice\": 500.00, \"value\": 5000.00},"
+                                + "\"XYZ\": {\"quantity\": 5, \"error\": \"Price unavailable\"}},"
+                                + "\"totalValue\": 5000.00, \"currency\": \"USD\"}"), body);
+        }
+
+        private static Trade trade(long id, String ticker) {
+                Trade trade = new Trade(UUID.randomUUID(), ticker, TradeType.BUY, 5, new BigDecimal("185.00"));
+                trade.setId(id);
+                return trade;
         }
 }
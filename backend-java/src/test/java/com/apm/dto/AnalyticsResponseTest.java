@@ -0,0 +1,66 @@
+package com.apm.dto;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.apm.service.StockServiceException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Unit tests for the JSON shape of AnalyticsResponse.
+ */
+class AnalyticsResponseTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void serialize_keepsMapShape() throws Exception {
+        AnalyticsResponse response = new AnalyticsResponse(
+                Map.of(
+                        "AAPL", HoldingAnalytics.priced(10, new BigDecimal("1800.00"), new BigDecimal("180.00"),
+                                new BigDecimal("185.92"), new BigDecimal("1859.20"), new BigDecimal("59.20"),
+                                new BigDecimal("3.29"), new BigDecimal("90.00")),
+                        "XYZ", HoldingAnalytics.unavailable(5, new BigDecimal("50.00"), new BigDecimal("10.00"),
+                                new BigDecimal("0.00"), "Market service unavailable for XYZ")),
+                "FIFO", new BigDecimal("1850.00"), new BigDecimal("1859.20"), new BigDecimal("9.20"),
+                new BigDecimal("0.50"), new BigDecimal("90.00"), "USD");
+
+        String json = objectMapper.writerFor(AnalyticsResponse.class).writeValueAsString(response);
+
+        assertEquals(objectMapper.readTree("{\"holdings\": {"
+                + "\"AAPL\": {\"quantity\": 10, \"costBasis\": 1800.00, \"avgCostPerShare\": 180.00,"
+                + " \"currentPrice\": 185.92, \"currentValue\": 1859.20, \"profitLoss\": 59.20,"
+                + " \"percentChange\": 3.29, \"realizedProfitLoss\": 90.00},"
+                + "\"XYZ\": {\"quantity\": 5, \"costBasis\": 50.00, \"avgCostPerShare\": 10.00,"
+                + " \"currentPrice\": \"unavailable\", \"realizedProfitLoss\": 0.00,"
+                + " \"error\": \"Market service unavailable for XYZ\"}},"
+                + "\"costBasisMethod\": \"FIFO\","
+                + "\"totalCostBasis\": 1850.00, \"totalCurrentValue\": 1859.20, \"totalProfitLoss\": 9.20,"
+                + "\"totalPercentChange\": 0.50, \"totalRealizedProfitLoss\": 90.00,"
+                + " \"currency\": \"USD\"}"), objectMapper.readTree(json));
+    }
+
+    @Test
+    void serialize_unpricedHolding_matchesBaselineMap() throws Exception {
+        // Built the way AnalyticsService filled its map before the typed
+        // records; realizedProfitLoss was added later with the tax lots
+        Map<String, Object> baseline = new HashMap<>();
+        baseline.put("quantity", 5);
+        baseline.put("costBasis", new BigDecimal("50").setScale(2, RoundingMode.HALF_UP));
+        baseline.put("avgCostPerShare", new BigDecimal("10.00"));
+        StockServiceException e = new StockServiceException("Invalid response from market service for XYZ");
+        baseline.put("currentPrice", "unavailable");
+        baseline.put("error", e.getMessage());
+        baseline.put("realizedProfitLoss", new BigDecimal("0.00"));
+
+        HoldingAnalytics holding = HoldingAnalytics.unavailable(5, new BigDecimal("50.00"),
+                new BigDecimal("10.00"), new BigDecimal("0.00"), e.getMessage());
+
+        assertEquals(objectMapper.readTree(objectMapper.writeValueAsString(baseline)),
+                objectMapper.readTree(objectMapper.writeValueAsString(holding)));
+    }
+}
@@ -0,0 +1,99 @@
+package com.apm.repository;
+
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests for PositionSnapshotRepositoryCustomImpl against an in-memory H2
+ * database.
+ */
+class PositionSnapshotRepositoryCustomImplTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private PositionSnapshotRepositoryCustomImpl repository;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:positions-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE positions (user_id UUID NOT NULL, ticker VARCHAR(10) NOT NULL, "
+                + "quantity INTEGER NOT NULL, total_cost NUMERIC(19, 2) NOT NULL, last_trade_id BIGINT NOT NULL, "
+                + "updated_at TIMESTAMP(6) NOT NULL, PRIMARY KEY (user_id, ticker))");
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        repository = new PositionSnapshotRepositoryCustomImpl(jdbcTemplate);
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        jdbcTemplate.execute("SHUTDOWN");
+    }
+
+    @Test
+    void insertIfAbsent_keepsExistingRow() {
+        UUID userId = UUID.randomUUID();
+        repository.insertIfAbsent(userId, "AAPL");
+        jdbcTemplate.update("UPDATE positions SET quantity = 10, last_trade_id = 7");
+
+        repository.insertIfAbsent(userId, "AAPL");
+
+        assertEquals(10, jdbcTemplate.queryForObject("SELECT quantity FROM positions", Integer.class));
+        assertEquals(1, count());
+    }
+
+    @Test
+    void insertIfAbsent_concurrentFirstTradesBothCommit() throws Exception {
+        UUID userId = UUID.randomUUID();
+        CountDownLatch firstInserted = new CountDownLatch(1);
+        CountDownLatch secondStarted = new CountDownLatch(1);
+
+        Future<?> first = executor.submit(() -> transactionTemplate.executeWithoutResult(status -> {
+            repository.insertIfAbsent(userId, "AAPL");
+            firstInserted.countDown();
+            try {
+                secondStarted.await(5, TimeUnit.SECONDS);
+                Thread.sleep(100); // Let the second insert run into the uncommitted row
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            jdbcTemplate.update("UPDATE positions SET quantity = quantity + 10 WHERE user_id = ?", userId);
+        }));
+        Future<?> second = executor.submit(() -> transactionTemplate.executeWithoutResult(status -> {
+            try {
+                firstInserted.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            secondStarted.countDown();
+            repository.insertIfAbsent(userId, "AAPL");
+            jdbcTemplate.update("UPDATE positions SET quantity = quantity + 5 WHERE user_id = ?", userId);
+        }));
+
+        first.get(10, TimeUnit.SECONDS);
+        second.get(10, TimeUnit.SECONDS);
+
+        assertEquals(1, count());
+        assertEquals(15, jdbcTemplate.queryForObject("SELECT quantity FROM positions", Integer.class));
+    }
+
+    private int count() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM positions", Integer.class);
+    }
+}
@@ -0,0 +1,129 @@
+package com.apm.security;
+
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JwtUtilTest {
+
+    private static final String SECRET = "apm-secret-key-for-jwt-token-generation-min-256-bits";
+    private static final String OTHER_SECRET = "another-secret-key-for-jwt-token-generation-min-256-bits";
+    private static final String EMAIL = "trader@example.com";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private JwtUtil jwtUtil(String secret, long expiration, long cacheSize) {
+        return new JwtUtil(secret, expiration, cacheSize, meterRegistry);
+    }
+
+    @Test
+    void validatesOwnTokenWithAndWithoutCache() {
+        for (long cacheSize : new long[] {0, 100}) {
+            JwtUtil jwtUtil = jwtUtil(SECRET, 60_000, cacheSize);
+            String token = jwtUtil.generateToken(EMAIL);
+
+            assertEquals(EMAIL, jwtUtil.extractEmail(token));
+            assertTrue(jwtUtil.validateToken(token, EMAIL));
+            assertTrue(jwtUtil.validateToken(token, EMAIL));
+            assertFalse(jwtUtil.validateToken(token, "someone@example.com"));
+            assertFalse(jwtUtil.isTokenExpired(token));
+        }
+    }
+
+    @Test
+    void repeatedValidationIsServedFromCache() {
+        JwtUtil jwtUtil = jwtUtil(SECRET, 60_000, 100);
+        String token = jwtUtil.generateToken(EMAIL);
+
+        jwtUtil.validateToken(token, EMAIL);
+        jwtUtil.validateToken(token, EMAIL);
+        jwtUtil.extractEmail(token);
+
+        assertEquals(1, meterRegistry.get("cache.gets").tag("cache", "jwt.verified-tokens")
+                .tag("result", "miss").functionCounter().count());
+        assertEquals(2, meterRegistry.get("cache.gets").tag("cache", "jwt.verified-tokens")
+                .tag("result", "hit").functionCounter().count());
+    }
+
+    @Test
+    void rejectsTokenSignedWithAnotherKeyEvenAfterCachingIt() {
+        JwtUtil jwtUtil = jwtUtil(SECRET, 60_000, 100);
+        JwtUtil other = jwtUtil(OTHER_SECRET, 60_000, 100);
+        String token = jwtUtil.generateToken(EMAIL);
+        jwtUtil.validateToken(token, EMAIL);
+
+        assertThrows(JwtException.class, () -> other.validateToken(token, EMAIL));
+    }
+
+    @Test
+    void rejectsTamperedToken() {
+        JwtUtil jwtUtil = jwtUtil(SECRET, 60_000, 100);
+        String token = jwtUtil.generateToken(EMAIL);
+        String tampered = token.substring(0, token.length() - 2)
+                + (token.endsWith("AA") ? "BB" : "AA");
+
+        assertThrows(JwtException.class, () -> jwtUtil.validateToken(tampered, EMAIL));
+        assertTrue(jwtUtil.validateToken(token, EMAIL));
+    }
+
+    @Test
+    void expiredTokenIsNotServedFromCache() {
+        ManualClock clock = new ManualClock(Instant.parse("2024-01-02T10:00:00Z"));
+        JwtUtil jwtUtil = new JwtUtil(SECRET, 60_000, 100, meterRegistry, clock, clock::nanos);
+        String token = jwtUtil.generateToken(EMAIL);
+        assertTrue(jwtUtil.validateToken(token, EMAIL));
+
+        clock.advance(Duration.ofSeconds(59));
+        assertTrue(jwtUtil.validateToken(token, EMAIL));
+
+        clock.advance(Duration.ofSeconds(2));
+        assertThrows(ExpiredJwtException.class, () -> jwtUtil.validateToken(token, EMAIL));
+    }
+
+    /**
+     * Wall clock and cache ticker that only move when told to.
+     */
+    private static final class ManualClock extends Clock {
+
+        private Instant now;
+
+        ManualClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        long nanos() {
+            return TimeUnit.SECONDS.toNanos(now.getEpochSecond()) + now.getNano();
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+    }
+}
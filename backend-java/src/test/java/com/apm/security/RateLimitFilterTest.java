@@ -0,0 +1,98 @@
+package com.apm.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Unit tests for RateLimitFilter.
+ */
+class RateLimitFilterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private RateLimitFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        // Two requests per budget, refilled far slower than the test runs
+        RateLimiter rateLimiter = new RateLimiter(true, 2, 0.01, 2, 0.01, 2, 0.01, 1_000,
+                Duration.ofMinutes(10), meterRegistry);
+        filter = new RateLimitFilter(rateLimiter);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void rejectsOverBudgetWithRetryAfter() throws Exception {
+        assertEquals(200, send("GET", "/api/v1/analytics/portfolio", "10.0.0.1").getStatus());
+        assertEquals(200, send("GET", "/api/v1/portfolio", "10.0.0.1").getStatus());
+
+        MockHttpServletResponse rejected = send("GET", "/api/v1/analytics/portfolio", "10.0.0.1");
+
+        assertEquals(429, rejected.getStatus());
+        assertEquals("100", rejected.getHeader("Retry-After"));
+        assertEquals("{\"error\":\"Too many requests, try again later\"}", rejected.getContentAsString());
+        assertEquals(1, meterRegistry.get("http.rate-limit.rejected").tag("budget", "read").counter().count());
+    }
+
+    @Test
+    void budgetsAreSeparate() throws Exception {
+        send("GET", "/api/v1/portfolio", "10.0.0.1");
+        send("GET", "/api/v1/portfolio", "10.0.0.1");
+        assertEquals(429, send("GET", "/api/v1/portfolio", "10.0.0.1").getStatus());
+
+        assertEquals(200, send("POST", "/api/v1/trades", "10.0.0.1").getStatus());
+        assertEquals(200, send("POST", "/api/v1/auth/login", "10.0.0.1").getStatus());
+    }
+
+    @Test
+    void clientsAreSeparate() throws Exception {
+        send("GET", "/api/v1/portfolio", "10.0.0.1");
+        send("GET", "/api/v1/portfolio", "10.0.0.1");
+        assertEquals(429, send("GET", "/api/v1/portfolio", "10.0.0.1").getStatus());
+
+        assertEquals(200, send("GET", "/api/v1/portfolio", "10.0.0.2").getStatus());
+
+        SecurityContextHolder.getContext().setAuthentication(
+                UsernamePasswordAuthenticationToken.authenticated("trader@example.com", null, null));
+        assertEquals(200, send("GET", "/api/v1/portfolio", "10.0.0.1").getStatus());
+    }
+
+    @Test
+    void healthChecksAreNotLimited() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            assertEquals(200, send("GET", "/api/health", "10.0.0.1").getStatus());
+            assertEquals(200, send("GET", "/actuator/health/liveness", "10.0.0.1").getStatus());
+        }
+    }
+
+    private MockHttpServletResponse send(String method, String uri, String remoteAddress) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, uri);
+        request.setRemoteAddr(remoteAddress);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request, response, chain);
+
+        if (response.getStatus() == 429) {
+            assertNull(chain.getRequest());
+        } else {
+            assertNotNull(chain.getRequest());
+        }
+        return response;
+    }
+}
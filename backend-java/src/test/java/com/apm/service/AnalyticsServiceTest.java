@@ -0,0 +1,240 @@
+package com.apm.service;
+
+import com.apm.dto.AnalyticsResponse;
+import com.apm.dto.HoldingAnalytics;
+import com.apm.model.Trade;
+import com.apm.model.TradeType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for AnalyticsService.
+ */
+@ExtendWith(MockitoExtension.class)
+class AnalyticsServiceTest {
+
+    @Mock
+    private TradeQueryService tradeQueryService;
+
+    @Mock
+    private PositionBook positionBook;
+
+    @Mock
+    private StockService stockService;
+
+    private final List<Trade> trades = new ArrayList<>();
+    private LotBook lotBook;
+    private AnalyticsService analyticsService;
+    private UUID userId;
+    private long nextTradeId = 1;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        userId = UUID.randomUUID();
+        lenient().when(tradeQueryService.streamByTime(eq(userId), any())).thenAnswer(invocation -> {
+            trades.forEach(invocation.getArgument(1, Consumer.class));
+            return (long) trades.size();
+        });
+        lotBook = new LotBook(tradeQueryService, positionBook, CostBasisMethod.FIFO,
+                100, Duration.ofMinutes(1), new SimpleMeterRegistry());
+        analyticsService = new AnalyticsService(lotBook, stockService);
+    }
+
+    @Test
+    void calculatePortfolioAnalytics_computesPnl() {
+        record("AAPL", TradeType.BUY, 10, "180.00");
+        record("AAPL", TradeType.BUY, 5, "200.00");
+        record("AAPL", TradeType.SELL, 3, "210.00");
+        when(stockService.getCurrentPrices(any())).thenReturn(Map.of("AAPL", new BigDecimal("185.92")));
+
+        AnalyticsResponse analytics = analyticsService.calculatePortfolioAnalytics(userId);
+
+        HoldingAnalytics aapl = analytics.holdings().get("AAPL");
+        assertEquals(12, aapl.quantity());
+        assertEquals(new BigDecimal("2260.00"), aapl.costBasis());
+        assertEquals(new BigDecimal("188.33"), aapl.avgCostPerShare());
+        assertEquals(new BigDecimal("2231.04"), aapl.currentValue());
+        assertEquals(new BigDecimal("-28.96"), aapl.profitLoss());
+        assertEquals(new BigDecimal("-1.28"), aapl.percentChange());
+        assertEquals(new BigDecimal("90.00"), aapl.realizedProfitLoss());
+        assertEquals(new BigDecimal("-1.28"), analytics.totalPercentChange());
+        assertEquals(new BigDecimal("90.00"), analytics.totalRealizedProfitLoss());
+        assertEquals("FIFO", analytics.costBasisMethod());
+    }
+
+    @Test
+    void calculatePortfolioAnalytics_closedPosition_countsOnlyRealizedPnl() {
+        record("AAPL", TradeType.BUY, 10, "180.00");
+        record("MSFT", TradeType.BUY, 4, "400.00");
+        record("MSFT", TradeType.SELL, 4, "390.50");
+        when(stockService.getCurrentPrices(any())).thenReturn(Map.of("AAPL", new BigDecimal("185.00")));
+
+        AnalyticsResponse analytics = analyticsService.calculatePortfolioAnalytics(userId);
+
+        assertEquals(1, analytics.holdings().size());
+        assertEquals(new BigDecimal("1800.00"), analytics.totalCostBasis());
+        assertEquals(new BigDecimal("50.00"), analytics.totalProfitLoss());
+        assertEquals(new BigDecimal("-38.00"), analytics.totalRealizedProfitLoss());
+    }
+
+    @Test
+    void calculatePortfolioAnalytics_appliesTradesRecordedSinceLastCall() {
+        record("AAPL", TradeType.BUY, 10, "180.00");
+        when(stockService.getCurrentPrices(any())).thenReturn(Map.of("AAPL", new BigDecimal("185.00")));
+        analyticsService.calculatePortfolioAnalytics(userId);
+
+        record("AAPL", TradeType.SELL, 4, "190.00");
+        AnalyticsResponse analytics = analyticsService.calculatePortfolioAnalytics(userId);
+
+        assertEquals(6, analytics.holdings().get("AAPL").quantity());
+        assertEquals(new BigDecimal("1080.00"), analytics.totalCostBasis());
+        assertEquals(new BigDecimal("40.00"), analytics.totalRealizedProfitLoss());
+    }
+
+    @Test
+    void calculatePortfolioAnalytics_matchesBigDecimalCalculation() {
+        Random random = new Random(7);
+        Map<String, BigDecimal> prices = new HashMap<>();
+        for (int i = 0; i < 200; i++) {
+            String ticker = "T" + random.nextInt(50);
+            record(ticker, random.nextInt(4) == 0 ? TradeType.SELL : TradeType.BUY,
+                    1 + random.nextInt(500), BigDecimal.valueOf(1 + random.nextInt(100_000), 2).toString());
+            if (random.nextInt(10) > 0) {
+                prices.put(ticker, BigDecimal.valueOf(1 + random.nextInt(1_000_000), random.nextInt(5)));
+            }
+        }
+        record("NOPRICE", TradeType.BUY, 7, "12.34");
+        when(stockService.getCurrentPrices(any())).thenReturn(prices);
+        when(stockService.getCurrentPrice(anyString())).thenAnswer(invocation -> {
+            throw unavailable(invocation.getArgument(0));
+        });
+
+        assertEquals(inDecimal(lotBook.getPositions(userId), prices),
+                analyticsService.calculatePortfolioAnalytics(userId));
+    }
+
+    @Test
+    void calculatePortfolioAnalytics_priceWithManyDecimals_roundsToMicroUnits() {
+        record("AAPL", TradeType.BUY, 10, "180.00");
+        BigDecimal price = new BigDecimal("185.9199981689453");
+        when(stockService.getCurrentPrices(any())).thenReturn(Map.of("AAPL", price));
+
+        AnalyticsResponse analytics = analyticsService.calculatePortfolioAnalytics(userId);
+
+        assertEquals(new BigDecimal("1859.20"), analytics.totalCurrentValue());
+        assertEquals(new BigDecimal("59.20"), analytics.totalProfitLoss());
+    }
+
+    @Test
+    void calculatePortfolioAnalytics_priceMissingFromBulkLookup_reportsSingleLookupError() {
+        record("AAPL", TradeType.BUY, 10, "180.00");
+        record("XYZ", TradeType.BUY, 5, "10.00");
+        when(stockService.getCurrentPrices(any())).thenReturn(Map.of("AAPL", new BigDecimal("185.92")));
+        when(stockService.getCurrentPrice("XYZ")).thenThrow(unavailable("XYZ"));
+
+        AnalyticsResponse analytics = analyticsService.calculatePortfolioAnalytics(userId);
+
+        HoldingAnalytics xyz = analytics.holdings().get("XYZ");
+        assertNull(xyz.currentPrice());
+        assertEquals("Market service unavailable for XYZ", xyz.error());
+        assertNull(analytics.holdings().get("AAPL").error());
+        assertEquals(new BigDecimal("1859.20"), analytics.totalCurrentValue());
+    }
+
+    @Test
+    void calculatePortfolioAnalytics_priceMissingFromBulkLookup_usesSingleLookupPrice() {
+        record("XYZ", TradeType.BUY, 5, "10.00");
+        when(stockService.getCurrentPrices(any())).thenReturn(Map.of());
+        when(stockService.getCurrentPrice("XYZ")).thenReturn(new BigDecimal("12.00"));
+
+        AnalyticsResponse analytics = analyticsService.calculatePortfolioAnalytics(userId);
+
+        assertEquals(new BigDecimal("60.00"), analytics.holdings().get("XYZ").currentValue());
+        assertNull(analytics.holdings().get("XYZ").error());
+    }
+
+    private static StockServiceException unavailable(String ticker) {
+        return new StockServiceException("Market service unavailable for " + ticker);
+    }
+
+    /**
+     * The BigDecimal calculation the fixed-point path replaced.
+     */
+    private AnalyticsResponse inDecimal(Map<String, LotPosition> holdings, Map<String, BigDecimal> prices) {
+        Map<String, HoldingAnalytics> holdingsDetail = new HashMap<>();
+        BigDecimal totalCostBasis = BigDecimal.ZERO;
+        BigDecimal totalCurrentValue = BigDecimal.ZERO;
+        BigDecimal totalRealized = BigDecimal.ZERO;
+
+        for (Map.Entry<String, LotPosition> entry : holdings.entrySet()) {
+            int quantity = entry.getValue().quantity();
+            BigDecimal totalCost = entry.getValue().costBasis();
+            BigDecimal realized = entry.getValue().realizedProfitLoss();
+            totalRealized = totalRealized.add(realized);
+            if (quantity <= 0) {
+                continue;
+            }
+            BigDecimal costBasis = totalCost.setScale(2, RoundingMode.HALF_UP);
+            BigDecimal avgCost = totalCost.divide(BigDecimal.valueOf(quantity), 2, RoundingMode.HALF_UP);
+            BigDecimal currentPrice = prices.get(entry.getKey());
+            if (currentPrice != null) {
+                BigDecimal currentValue = currentPrice.multiply(BigDecimal.valueOf(quantity));
+                BigDecimal profitLoss = currentValue.subtract(totalCost);
+                holdingsDetail.put(entry.getKey(), HoldingAnalytics.priced(quantity, costBasis, avgCost,
+                        currentPrice, currentValue.setScale(2, RoundingMode.HALF_UP),
+                        profitLoss.setScale(2, RoundingMode.HALF_UP), percent(profitLoss, totalCost),
+                        realized.setScale(2, RoundingMode.HALF_UP)));
+                totalCurrentValue = totalCurrentValue.add(currentValue);
+            } else {
+                holdingsDetail.put(entry.getKey(), HoldingAnalytics.unavailable(quantity, costBasis, avgCost,
+                        realized.setScale(2, RoundingMode.HALF_UP), unavailable(entry.getKey()).getMessage()));
+            }
+            totalCostBasis = totalCostBasis.add(totalCost);
+        }
+
+        BigDecimal totalProfitLoss = totalCurrentValue.subtract(totalCostBasis);
+        return new AnalyticsResponse(holdingsDetail, CostBasisMethod.FIFO.name(),
+                totalCostBasis.setScale(2, RoundingMode.HALF_UP),
+                totalCurrentValue.setScale(2, RoundingMode.HALF_UP),
+                totalProfitLoss.setScale(2, RoundingMode.HALF_UP),
+                percent(totalProfitLoss, totalCostBasis),
+                totalRealized.setScale(2, RoundingMode.HALF_UP), "USD");
+    }
+
+    private static BigDecimal percent(BigDecimal change, BigDecimal base) {
+        return base.signum() > 0
+                ? change.divide(base, 4, RoundingMode.HALF_UP).multiply(BigDecimal.valueOf(100))
+                        .setScale(2, RoundingMode.HALF_UP)
+                : BigDecimal.ZERO;
+    }
+
+    private void record(String ticker, TradeType type, int quantity, String price) {
+        Trade trade = new Trade(userId, ticker, type, quantity, new BigDecimal(price));
+        trade.setId(nextTradeId++);
+        trades.add(trade);
+        lotBook.recordCommitted(List.of(trade));
+    }
+}
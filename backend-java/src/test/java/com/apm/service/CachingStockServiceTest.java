@@ -0,0 +1,143 @@
+package com.apm.service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Unit tests for CachingStockService.
+ * Uses a counting stub delegate and a manual clock.
+ */
+class CachingStockServiceTest {
+
+    private CountingStockService delegate;
+    private AtomicLong nanos;
+    private CachingStockService cachingStockService;
+
+    @BeforeEach
+    void setUp() {
+        delegate = new CountingStockService();
+        delegate.prices.put("AAPL", new BigDecimal("185.92"));
+        nanos = new AtomicLong();
+        cachingStockService = new CachingStockService(delegate, 100,
+                Duration.ofSeconds(60), Duration.ofSeconds(10), Runnable::run, nanos::get);
+    }
+
+    @Test
+    void getCurrentPrice_repeatedLookup_hitsDelegateOnce() {
+        cachingStockService.getCurrentPrice("AAPL");
+        cachingStockService.getCurrentPrice("aapl");
+        BigDecimal price = cachingStockService.getCurrentPrice("AAPL");
+
+        assertEquals(new BigDecimal("185.92"), price);
+        assertEquals(1, delegate.calls);
+        assertEquals(2, cachingStockService.getStats().hitCount());
+        assertEquals(1, cachingStockService.getStats().missCount());
+    }
+
+    @Test
+    void getCurrentPrice_afterTtl_reloadsFromDelegate() {
+        cachingStockService.getCurrentPrice("AAPL");
+        delegate.prices.put("AAPL", new BigDecimal("190.00"));
+
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(61));
+
+        assertEquals(new BigDecimal("190.00"), cachingStockService.getCurrentPrice("AAPL"));
+        assertEquals(2, delegate.calls);
+    }
+
+    @Test
+    void getCurrentPrice_pastRefreshInterval_servesStaleThenRefreshed() {
+        Queue<Runnable> pendingRefreshes = new ArrayDeque<>();
+        cachingStockService = new CachingStockService(delegate, 100, Duration.ofSeconds(60),
+                Duration.ofSeconds(10), pendingRefreshes::add, nanos::get);
+
+        cachingStockService.getCurrentPrice("AAPL");
+        delegate.prices.put("AAPL", new BigDecimal("190.00"));
+
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(15));
+
+        assertEquals(new BigDecimal("185.92"), cachingStockService.getCurrentPrice("AAPL"));
+
+        while (!pendingRefreshes.isEmpty()) {
+            pendingRefreshes.poll().run();
+        }
+
+        assertEquals(new BigDecimal("190.00"), cachingStockService.getCurrentPrice("AAPL"));
+    }
+
+    @Test
+    void getCurrentPrice_whenDelegateFails_doesNotCacheFailure() {
+        assertThrows(StockServiceException.class,
+                () -> cachingStockService.getCurrentPrice("INVALID"));
+
+        delegate.prices.put("INVALID", BigDecimal.ONE);
+
+        assertEquals(BigDecimal.ONE, cachingStockService.getCurrentPrice("INVALID"));
+    }
+
+    @Test
+    void getCurrentPrices_loadsOnlyMissingTickersInOneBulkCall() {
+        delegate.prices.put("NVDA", new BigDecimal("485.50"));
+        cachingStockService.getCurrentPrice("AAPL");
+
+        Map<String, BigDecimal> prices = cachingStockService.getCurrentPrices(
+                List.of("AAPL", "nvda", "INVALID"));
+
+        assertEquals(2, prices.size());
+        assertEquals(new BigDecimal("485.50"), prices.get("NVDA"));
+        assertEquals(1, delegate.bulkCalls);
+    }
+
+    @Test
+    void invalidate_forcesReload() {
+        cachingStockService.getCurrentPrice("AAPL");
+        cachingStockService.invalidate("aapl");
+        cachingStockService.getCurrentPrice("AAPL");
+
+        assertEquals(2, delegate.calls);
+    }
+
+    /**
+     * Stub price source that counts how often it is called.
+     */
+    private static class CountingStockService implements StockService {
+        private final Map<String, BigDecimal> prices = new HashMap<>();
+        private int calls;
+        private int bulkCalls;
+
+        @Override
+        public Map<String, BigDecimal> getCurrentPrices(Collection<String> tickers) {
+            bulkCalls++;
+            Map<String, BigDecimal> result = new HashMap<>();
+            for (String ticker : tickers) {
+                if (prices.containsKey(ticker)) {
+                    result.put(ticker, prices.get(ticker));
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public BigDecimal getCurrentPrice(String ticker) {
+            calls++;
+            BigDecimal price = prices.get(ticker);
+            if (price == null) {
+                throw new StockServiceException("Ticker not found: " + ticker);
+            }
+            return price;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.apm.service;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for CircuitBreaker.
+ */
+class CircuitBreakerTest {
+
+    private AtomicLong nanos;
+    private CircuitBreaker circuitBreaker;
+
+    @BeforeEach
+    void setUp() {
+        nanos = new AtomicLong();
+        circuitBreaker = new CircuitBreaker("test", 10, 4, 50, Duration.ofSeconds(30), 2, nanos::get);
+    }
+
+    @Test
+    void failuresBelowMinimumCalls_keepCircuitClosed() {
+        recordFailures(3);
+
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        assertTrue(circuitBreaker.tryAcquirePermission());
+    }
+
+    @Test
+    void failureRateAtThreshold_opensCircuit() {
+        recordSuccesses(2);
+        recordFailures(2);
+
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertFalse(circuitBreaker.tryAcquirePermission());
+    }
+
+    @Test
+    void oldOutcomesSlideOutOfWindow() {
+        recordFailures(3);
+        recordSuccesses(10);
+        recordFailures(3);
+
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        assertEquals(30f, circuitBreaker.getFailureRate());
+    }
+
+    @Test
+    void afterOpenDuration_halfOpenTrialsCloseCircuit() {
+        recordFailures(4);
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(31));
+
+        assertTrue(circuitBreaker.tryAcquirePermission());
+        assertTrue(circuitBreaker.tryAcquirePermission());
+        assertFalse(circuitBreaker.tryAcquirePermission());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+
+        circuitBreaker.onSuccess();
+        circuitBreaker.onSuccess();
+
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        assertEquals(0, circuitBreaker.getBufferedCalls());
+    }
+
+    @Test
+    void failedHalfOpenTrial_reopensCircuit() {
+        recordFailures(4);
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(31));
+
+        assertTrue(circuitBreaker.tryAcquirePermission());
+        circuitBreaker.onFailure();
+
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertFalse(circuitBreaker.tryAcquirePermission());
+    }
+
+    @Test
+    void releasedPermission_canBeTakenAgain() {
+        recordFailures(4);
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(31));
+
+        circuitBreaker.tryAcquirePermission();
+        circuitBreaker.tryAcquirePermission();
+        circuitBreaker.releasePermission();
+
+        assertTrue(circuitBreaker.tryAcquirePermission());
+    }
+
+    private void recordFailures(int count) {
+        for (int i = 0; i < count; i++) {
+            circuitBreaker.tryAcquirePermission();
+            circuitBreaker.onFailure();
+        }
+    }
+
+    private void recordSuccesses(int count) {
+        for (int i = 0; i < count; i++) {
+            circuitBreaker.tryAcquirePermission();
+            circuitBreaker.onSuccess();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.apm.service;
+
+import com.apm.model.TradeType;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for CsvTradeReader.
+ */
+class CsvTradeReaderTest {
+
+    @Test
+    void next_parsesFieldsInHeaderOrder() throws IOException {
+        CsvTradeReader reader = reader("\uFEFFTicker,Date,Side,Type,Quantity,Price\r\n"
+                + "AAPL,2024-01-02 10:15:30.5,x,buy,10,180.25\r\n"
+                + "\"BRK,B\",\"2024-01-03\",y,SELL,3,\"412\"\r\n", 64);
+
+        assertTrue(reader.next());
+        assertNull(reader.getError());
+        assertEquals(2, reader.getRow());
+        assertEquals("AAPL", reader.getTicker());
+        assertEquals(TradeType.BUY, reader.getType());
+        assertEquals(10, reader.getQuantity());
+        assertEquals(new BigDecimal("180.25"), reader.getPrice());
+        assertNull(reader.getTimestamp());
+
+        assertTrue(reader.next());
+        assertEquals("BRK,B", reader.getTicker());
+        assertEquals(TradeType.SELL, reader.getType());
+        assertEquals(new BigDecimal("412"), reader.getPrice());
+        assertFalse(reader.next());
+    }
+
+    @Test
+    void next_parsesTimestampsAndSharesTickerStrings() throws IOException {
+        CsvTradeReader reader = reader("ticker,type,quantity,price,timestamp\n"
+                + "MSFT,BUY,1,1.5,2024-01-02T10:15:30.5\n"
+                + "MSFT,BUY,1,1.5,2024-01-02\n", 64);
+
+        assertTrue(reader.next());
+        assertEquals(LocalDateTime.of(2024, 1, 2, 10, 15, 30, 500_000_000), reader.getTimestamp());
+        String ticker = reader.getTicker();
+        assertTrue(reader.next());
+        assertEquals(LocalDateTime.of(2024, 1, 2, 0, 0), reader.getTimestamp());
+        assertSame(ticker, reader.getTicker());
+    }
+
+    @Test
+    void next_reportsInvalidFieldsAndColumnCounts() throws IOException {
+        CsvTradeReader reader = reader("ticker,type,quantity,price,timestamp\n"
+                + "AAPL,HOLD,1,1.00,\n"
+                + "AAPL,BUY,1.5,1.00,\n"
+                + "AAPL,BUY,1,1.2.3,\n"
+                + "AAPL,BUY,1,1.00,2024-13-01\n"
+                + "AAPL,BUY,1\n"
+                + "\n"
+                + "AAPL,BUY,,,\n", 64);
+
+        assertTrue(reader.next());
+        assertEquals("Invalid type 'HOLD'", reader.getError());
+        assertTrue(reader.next());
+        assertEquals("Invalid quantity '1.5'", reader.getError());
+        assertTrue(reader.next());
+        assertEquals("Invalid price '1.2.3'", reader.getError());
+        assertTrue(reader.next());
+        assertEquals("Invalid timestamp '2024-13-01'", reader.getError());
+        assertTrue(reader.next());
+        assertEquals("Expected 5 columns but found 3", reader.getError());
+        assertTrue(reader.next());
+        assertEquals(8, reader.getRow());
+        assertNull(reader.getError());
+        assertNull(reader.getQuantity());
+        assertNull(reader.getPrice());
+        assertFalse(reader.next());
+    }
+
+    @Test
+    void next_readsLinesSpanningBufferRefillsAndSkipsOverlongLines() throws IOException {
+        StringBuilder csv = new StringBuilder("ticker,type,quantity,price\n");
+        for (int i = 1; i <= 100; i++) {
+            csv.append("T").append(i).append(",BUY,").append(i).append(",1.00\n");
+        }
+        csv.append("X".repeat(100)).append(",BUY,1,1.00\n");
+        csv.append("LAST,SELL,7,2.00");
+        CsvTradeReader reader = reader(csv.toString(), 32);
+
+        for (int i = 1; i <= 100; i++) {
+            assertTrue(reader.next());
+            assertEquals("T" + i, reader.getTicker());
+            assertEquals(i, reader.getQuantity());
+        }
+        assertTrue(reader.next());
+        assertEquals("Line is longer than 32 bytes", reader.getError());
+        assertTrue(reader.next());
+        assertEquals("LAST", reader.getTicker());
+        assertEquals(7, reader.getQuantity());
+        assertFalse(reader.next());
+    }
+
+    @Test
+    void constructor_rejectsHeaderWithoutRequiredColumn() {
+        TradeImportException e = assertThrows(TradeImportException.class,
+                () -> reader("ticker,type,price\n", 64));
+        assertEquals("CSV header is missing the quantity column", e.getMessage());
+    }
+
+    @Test
+    void next_onEmptyInput_returnsFalse() throws IOException {
+        assertFalse(reader("", 64).next());
+    }
+
+    private static CsvTradeReader reader(String csv, int bufferSize) throws IOException {
+        return new CsvTradeReader(Channels.newChannel(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8))), bufferSize);
+    }
+}
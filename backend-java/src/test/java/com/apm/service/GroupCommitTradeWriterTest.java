@@ -0,0 +1,184 @@
+package com.apm.service;
+
+import com.apm.model.Trade;
+import com.apm.model.TradeType;
+import com.apm.repository.PositionSnapshotRepository;
+import com.apm.repository.TradeJdbcRepository;
+import com.apm.repository.TradeRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for GroupCommitTradeWriter.
+ */
+@ExtendWith(MockitoExtension.class)
+class GroupCommitTradeWriterTest {
+
+    @Mock
+    private TradeRepository tradeRepository;
+
+    @Mock
+    private PositionSnapshotRepository snapshotRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final UUID userId = UUID.randomUUID();
+    private final RecordingJdbcRepository jdbcRepository = new RecordingJdbcRepository();
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+    private PositionBook positionBook;
+    private GroupCommitTradeWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        positionBook = new PositionBook(tradeRepository, snapshotRepository);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcRepository.release.countDown();
+        writer.destroy();
+        callers.shutdownNow();
+    }
+
+    @Test
+    void write_commitsQueuedTradesTogether() throws Exception {
+        writer = newWriter(10, 100);
+        jdbcRepository.blockFirstBatch();
+
+        CompletableFuture<Trade> first = submit("AAPL");
+        assertTrue(jdbcRepository.firstBatchStarted.await(5, TimeUnit.SECONDS));
+        List<CompletableFuture<Trade>> queued = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            queued.add(submit("MSFT"));
+        }
+        awaitQueued(3);
+        jdbcRepository.release.countDown();
+
+        assertNotNull(first.get(5, TimeUnit.SECONDS).getId());
+        for (CompletableFuture<Trade> trade : queued) {
+            assertNotNull(trade.get(5, TimeUnit.SECONDS).getId());
+        }
+        assertEquals(List.of(1, 3), jdbcRepository.batchSizes);
+        assertEquals(1, positionBook.getPositions(userId).get("AAPL").getQuantity());
+        assertEquals(3, positionBook.getPositions(userId).get("MSFT").getQuantity());
+    }
+
+    @Test
+    void write_failedBatchIsRetriedTradeByTrade() throws Exception {
+        writer = newWriter(10, 100);
+        jdbcRepository.blockFirstBatch();
+
+        CompletableFuture<Trade> first = submit("AAPL");
+        assertTrue(jdbcRepository.firstBatchStarted.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Trade> good = submit("MSFT");
+        CompletableFuture<Trade> bad = submit("BAD");
+        awaitQueued(2);
+        jdbcRepository.release.countDown();
+
+        assertNotNull(first.get(5, TimeUnit.SECONDS).getId());
+        assertNotNull(good.get(5, TimeUnit.SECONDS).getId());
+        Exception e = assertThrows(Exception.class, () -> bad.get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof DataIntegrityViolationException);
+        assertEquals(1, positionBook.getPositions(userId).get("MSFT").getQuantity());
+        assertNull(positionBook.getPositions(userId).get("BAD"));
+    }
+
+    @Test
+    void write_fullQueueIsRejected() throws Exception {
+        writer = newWriter(1, 1);
+        jdbcRepository.blockFirstBatch();
+
+        submit("AAPL");
+        assertTrue(jdbcRepository.firstBatchStarted.await(5, TimeUnit.SECONDS));
+        submit("MSFT");
+        awaitQueued(1);
+
+        assertThrows(TradeWriteRejectedException.class, () -> writer.write(trade("NVDA")));
+    }
+
+    private GroupCommitTradeWriter newWriter(int maxBatchSize, int queueCapacity) {
+        return new GroupCommitTradeWriter(jdbcRepository, positionBook, new TransactionTemplate(transactionManager),
+                maxBatchSize, Duration.ofMillis(20), queueCapacity, new SimpleMeterRegistry());
+    }
+
+    private CompletableFuture<Trade> submit(String ticker) {
+        return CompletableFuture.supplyAsync(() -> writer.write(trade(ticker)), callers);
+    }
+
+    private Trade trade(String ticker) {
+        return new Trade(userId, ticker, TradeType.BUY, 1, new BigDecimal("10.00"));
+    }
+
+    private void awaitQueued(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (writer.getQueueSize() < count && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(count, writer.getQueueSize());
+    }
+
+    /**
+     * Assigns ids, records batch sizes, fails batches containing ticker BAD
+     * and can hold the first batch until released.
+     */
+    private static class RecordingJdbcRepository extends TradeJdbcRepository {
+
+        final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        final CountDownLatch firstBatchStarted = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        private final AtomicLong ids = new AtomicLong();
+        private volatile boolean blockFirst;
+
+        RecordingJdbcRepository() {
+            super(null);
+        }
+
+        void blockFirstBatch() {
+            blockFirst = true;
+        }
+
+        @Override
+        public void insertAll(List<Trade> trades) {
+            if (blockFirst && firstBatchStarted.getCount() > 0) {
+                firstBatchStarted.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (trades.stream().anyMatch(trade -> trade.getTicker().equals("BAD"))) {
+                throw new DataIntegrityViolationException("bad trade");
+            }
+            batchSizes.add(trades.size());
+            trades.forEach(trade -> trade.setId(ids.incrementAndGet()));
+        }
+    }
+}
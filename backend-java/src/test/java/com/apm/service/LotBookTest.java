@@ -0,0 +1,138 @@
+package com.apm.service;
+
+import com.apm.model.Trade;
+import com.apm.model.TradeType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for LotBook.
+ */
+@ExtendWith(MockitoExtension.class)
+class LotBookTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 2, 9, 30);
+
+    @Mock
+    private TradeQueryService tradeQueryService;
+
+    @Mock
+    private PositionBook positionBook;
+
+    private final List<Trade> trades = new ArrayList<>();
+    private SimpleMeterRegistry meterRegistry;
+    private LotBook lotBook;
+    private UUID userId;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        userId = UUID.randomUUID();
+        lenient().when(tradeQueryService.streamByTime(eq(userId), any())).thenAnswer(invocation -> {
+            Consumer<Trade> consumer = invocation.getArgument(1);
+            trades.stream()
+                    .sorted(Comparator.comparing(Trade::getTimestamp).thenComparing(Trade::getId))
+                    .forEach(consumer);
+            return (long) trades.size();
+        });
+        meterRegistry = new SimpleMeterRegistry();
+        lotBook = new LotBook(tradeQueryService, positionBook, CostBasisMethod.FIFO,
+                100, Duration.ofMinutes(1), meterRegistry);
+    }
+
+    @Test
+    void constructor_subscribesToCommittedTrades() {
+        verify(positionBook).addCommitListener(any());
+    }
+
+    @Test
+    void getPositions_appliesCommittedTradesWithoutQueryingAgain() {
+        commit(add(1, 0, TradeType.BUY, 10, "100.00"));
+        lotBook.getPositions(userId);
+
+        commit(add(2, 1, TradeType.BUY, 10, "120.00"), add(3, 2, TradeType.SELL, 15, "130.00"));
+        LotPosition position = lotBook.getPositions(userId).get("AAPL");
+
+        assertEquals(5, position.quantity());
+        assertEquals(new BigDecimal("600.000000"), position.costBasis());
+        assertEquals(new BigDecimal("350.000000"), position.realizedProfitLoss());
+        verify(tradeQueryService, times(1)).streamByTime(eq(userId), any());
+        verifyNoMoreInteractions(tradeQueryService);
+        assertEquals(1.0, meterRegistry.counter("analytics.lots.rebuilds").count());
+    }
+
+    @Test
+    void getPositions_tradeWithLowerIdCommittedLate_rebuilds() {
+        add(1, 0, TradeType.BUY, 10, "100.00");
+        add(3, 2, TradeType.SELL, 5, "130.00");
+        lotBook.getPositions(userId);
+
+        // The build streamed id 3, so it cannot tell whether it saw id 2
+        commit(add(2, 1, TradeType.BUY, 10, "120.00"));
+        LotPosition position = lotBook.getPositions(userId).get("AAPL");
+
+        assertEquals(15, position.quantity());
+        assertEquals(new BigDecimal("1700.000000"), position.costBasis());
+        assertEquals(new BigDecimal("150.000000"), position.realizedProfitLoss());
+        assertEquals(2.0, meterRegistry.counter("analytics.lots.rebuilds").count());
+    }
+
+    @Test
+    void getPositions_backdatedTrade_rebuildsInExecutionOrder() {
+        add(1, 0, TradeType.BUY, 10, "100.00");
+        add(2, 2, TradeType.SELL, 5, "130.00");
+        lotBook.getPositions(userId);
+
+        // Executed before the sale, so the sale still takes the 100.00 lot
+        commit(add(3, 1, TradeType.BUY, 10, "90.00"));
+        LotPosition position = lotBook.getPositions(userId).get("AAPL");
+
+        assertEquals(15, position.quantity());
+        assertEquals(new BigDecimal("1400.000000"), position.costBasis());
+        assertEquals(new BigDecimal("150.000000"), position.realizedProfitLoss());
+        assertEquals(2.0, meterRegistry.counter("analytics.lots.rebuilds").count());
+    }
+
+    @Test
+    void recordCommitted_userNotInMemory_isLeftForTheFirstRead() {
+        commit(add(1, 0, TradeType.BUY, 10, "100.00"));
+        verifyNoInteractions(tradeQueryService);
+
+        assertEquals(10, lotBook.getPositions(userId).get("AAPL").quantity());
+        assertEquals(1.0, meterRegistry.counter("analytics.lots.rebuilds").count());
+    }
+
+    private void commit(Trade... committed) {
+        lotBook.recordCommitted(List.of(committed));
+    }
+
+    private Trade add(long id, int minutes, TradeType type, int quantity, String price) {
+        Trade trade = new Trade(userId, "AAPL", type, quantity, new BigDecimal(price));
+        trade.setId(id);
+        trade.setTimestamp(START.plusMinutes(minutes));
+        trades.add(trade);
+        return trade;
+    }
+}
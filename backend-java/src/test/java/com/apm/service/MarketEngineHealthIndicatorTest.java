@@ -0,0 +1,42 @@
+package com.apm.service;
+
+import java.time.Duration;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.SimpleStatusAggregator;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.boot.actuate.health.StatusAggregator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Unit tests for MarketEngineHealthIndicator.
+ */
+class MarketEngineHealthIndicatorTest {
+
+    // management.endpoint.health.status.order in application.yml
+    private static final StatusAggregator OVERALL =
+            new SimpleStatusAggregator("down", "out-of-service", "up", "degraded", "unknown");
+
+    private final CircuitBreaker circuitBreaker =
+            new CircuitBreaker("test", 4, 2, 50, Duration.ofMinutes(1), 1);
+    private final MarketEngineHealthIndicator indicator =
+            new MarketEngineHealthIndicator(circuitBreaker, new Bulkhead(4, Duration.ofMillis(100)));
+
+    @Test
+    void closedBreaker_isUp() {
+        assertEquals(Status.UP, indicator.health().getStatus());
+    }
+
+    @Test
+    void openBreaker_isDegradedWithoutFailingOverallHealth() {
+        circuitBreaker.onFailure();
+        circuitBreaker.onFailure();
+
+        Status status = indicator.health().getStatus();
+
+        assertEquals(MarketEngineHealthIndicator.DEGRADED, status);
+        assertEquals(Status.UP, OVERALL.getAggregateStatus(Set.of(Status.UP, status)));
+        assertEquals(Status.DOWN, OVERALL.getAggregateStatus(Set.of(Status.DOWN, status)));
+    }
+}
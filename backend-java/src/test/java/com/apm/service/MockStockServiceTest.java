@@ -1,6 +1,8 @@
 package com.apm.service;
 
 import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -64,4 +66,13 @@ class MockStockServiceTest {
         BigDecimal price = mockStockService.getCurrentPrice("AMZN");
         assertEquals(new BigDecimal("155.30"), price);
     }
+
+    @Test
+    void getCurrentPrices_returnsKnownTickersOnly() {
+        Map<String, BigDecimal> prices = mockStockService.getCurrentPrices(List.of("aapl", "NVDA", "INVALID"));
+
+        assertEquals(2, prices.size());
+        assertEquals(new BigDecimal("185.92"), prices.get("AAPL"));
+        assertEquals(new BigDecimal("485.50"), prices.get("NVDA"));
+    }
 }
@@ -0,0 +1,97 @@
+package com.apm.service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Unit tests for Money, checked against the BigDecimal calculations it
+ * replaces.
+ */
+class MoneyTest {
+
+    @Test
+    void toBigDecimal_keepsScaleOfInput() {
+        assertEquals(new BigDecimal("185.92"), usd("185.92").toBigDecimal());
+        assertEquals(new BigDecimal("10"), usd("10").toBigDecimal());
+        assertEquals(new BigDecimal("0.000001"), usd("0.000001").toBigDecimal());
+        assertEquals(BigDecimal.ZERO, Money.zero("USD").toBigDecimal());
+    }
+
+    @Test
+    void of_roundsBeyondSixDecimalPlaces() {
+        assertEquals(new BigDecimal("185.919998"), usd("185.9199981689453").toBigDecimal());
+        assertEquals(new BigDecimal("0.000001"), usd("0.0000005").toBigDecimal());
+        assertEquals(new BigDecimal("1000"), usd("1E+3").toBigDecimal());
+    }
+
+    @Test
+    void of_rejectsAmountsThatDoNotFit() {
+        assertThrows(ArithmeticException.class, () -> usd("10000000000000"));
+        assertThrows(ArithmeticException.class, () -> usd("185.92").times(Integer.MAX_VALUE).times(100));
+    }
+
+    @Test
+    void round_roundsHalfAwayFromZero() {
+        assertEquals(new BigDecimal("2.35"), usd("2.345").round(2).toBigDecimal());
+        assertEquals(new BigDecimal("-2.35"), usd("-2.345").round(2).toBigDecimal());
+        assertEquals(new BigDecimal("2.34"), usd("2.3449").round(2).toBigDecimal());
+        assertEquals(new BigDecimal("7.00"), usd("7").round(2).toBigDecimal());
+    }
+
+    @Test
+    void percentOf_zeroBase_throws() {
+        assertThrows(ArithmeticException.class, () -> usd("1.00").percentOf(Money.zero("USD")));
+    }
+
+    @Test
+    void plus_differentCurrencies_throws() {
+        assertThrows(IllegalArgumentException.class,
+                () -> usd("1.00").plus(Money.of(new BigDecimal("1.00"), "EUR")));
+    }
+
+    @Test
+    void arithmetic_matchesBigDecimal() {
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            BigDecimal price = randomAmount(random);
+            BigDecimal cost = randomAmount(random);
+            int quantity = 1 + random.nextInt(10_000);
+
+            BigDecimal value = price.multiply(BigDecimal.valueOf(quantity));
+            BigDecimal change = value.subtract(cost);
+            Money fixedValue = usd(price).times(quantity);
+            Money fixedChange = fixedValue.minus(usd(cost));
+
+            assertEquals(value, fixedValue.toBigDecimal());
+            assertEquals(value.add(cost), fixedValue.plus(usd(cost)).toBigDecimal());
+            assertEquals(change.setScale(2, RoundingMode.HALF_UP), fixedChange.round(2).toBigDecimal());
+            assertEquals(cost.divide(BigDecimal.valueOf(quantity), 2, RoundingMode.HALF_UP),
+                    usd(cost).dividedBy(quantity, 2).toBigDecimal());
+            if (cost.signum() != 0) {
+                assertEquals(change.divide(cost, 4, RoundingMode.HALF_UP)
+                                .multiply(BigDecimal.valueOf(100)).setScale(2, RoundingMode.HALF_UP),
+                        fixedChange.percentOf(usd(cost)));
+            }
+        }
+    }
+
+    private static BigDecimal randomAmount(Random random) {
+        // Up to 100,000 with 0 to 6 decimal places, occasionally negative
+        int scale = random.nextInt(Money.SCALE + 1);
+        long unscaled = (long) (random.nextDouble() * 100_000 * Math.pow(10, scale));
+        return BigDecimal.valueOf(random.nextInt(10) == 0 ? -unscaled : unscaled, scale);
+    }
+
+    private static Money usd(String amount) {
+        return usd(new BigDecimal(amount));
+    }
+
+    private static Money usd(BigDecimal amount) {
+        return Money.of(amount, "USD");
+    }
+}
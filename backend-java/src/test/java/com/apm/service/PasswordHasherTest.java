@@ -0,0 +1,88 @@
+package com.apm.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for PasswordHasher.
+ */
+class PasswordHasherTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private PasswordHasher hasher;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        hasher.destroy();
+    }
+
+    @Test
+    void hash_matchesOnlyTheSamePassword() {
+        hasher = new PasswordHasher(4, 2, 10, Duration.ofSeconds(5), meterRegistry);
+
+        String hash = hasher.hash("secret-password!");
+
+        assertTrue(hash.startsWith("$2a$04$"));
+        assertTrue(hasher.matches("secret-password!", hash));
+        assertFalse(hasher.matches("other-password!", hash));
+        assertEquals(1, meterRegistry.get("auth.password-hash").tag("operation", "hash").timer().count());
+        assertEquals(2, meterRegistry.get("auth.password-hash").tag("operation", "verify").timer().count());
+    }
+
+    @Test
+    void needsRehash_whenCostDiffers() {
+        hasher = new PasswordHasher(5, 1, 10, Duration.ofSeconds(5), meterRegistry);
+        PasswordHasher cheaper = new PasswordHasher(4, 1, 10, Duration.ofSeconds(5), meterRegistry);
+        try {
+            assertFalse(hasher.needsRehash(hasher.hash("secret-password!")));
+            assertTrue(hasher.needsRehash(cheaper.hash("secret-password!")));
+            assertFalse(hasher.needsRehash("not-a-bcrypt-hash"));
+            assertFalse(hasher.needsRehash(null));
+        } finally {
+            cheaper.destroy();
+        }
+    }
+
+    @Test
+    void run_rejectsAtOnceWhenQueueIsFull() throws Exception {
+        hasher = new PasswordHasher(4, 1, 1, Duration.ofSeconds(5), meterRegistry);
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<Boolean> busy = CompletableFuture.supplyAsync(() -> hasher.run(() -> {
+            started.countDown();
+            return release.await(5, TimeUnit.SECONDS);
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> hasher.hash("secret-password!"));
+        while (hasher.getQueueSize() == 0) {
+            Thread.sleep(1);
+        }
+
+        assertThrows(PasswordHashRejectedException.class, () -> hasher.hash("secret-password!"));
+        assertEquals(1, meterRegistry.get("auth.password-hash.queue").gauge().value());
+        assertEquals(1, meterRegistry.get("auth.password-hash.rejected").counter().count());
+
+        release.countDown();
+        assertTrue(busy.get(5, TimeUnit.SECONDS));
+        assertTrue(queued.get(5, TimeUnit.SECONDS).startsWith("$2a$04$"));
+    }
+
+    @Test
+    void run_rejectsCallersThatWaitLongerThanTheTimeout() {
+        hasher = new PasswordHasher(4, 1, 10, Duration.ofMillis(50), meterRegistry);
+
+        assertThrows(PasswordHashRejectedException.class,
+                () -> hasher.run(() -> release.await(5, TimeUnit.SECONDS)));
+    }
+}
@@ -1,22 +1,33 @@
 package com.apm.service;
 
+import com.apm.dto.HoldingValue;
+import com.apm.dto.PortfolioResponse;
 import com.apm.model.Trade;
 import com.apm.model.TradeType;
+import com.apm.repository.PositionSnapshotRepository;
 import com.apm.repository.TradeRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.math.BigDecimal;
-import java.util.Arrays;
+import java.time.Duration;
 import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -31,13 +42,22 @@ class PortfolioServiceTest {
     @Mock
     private StockService stockService;
 
+    @Mock
+    private PositionSnapshotRepository snapshotRepository;
+
+    private PositionBook positionBook;
+
     private PortfolioService portfolioService;
 
     private UUID testUserId;
 
     @BeforeEach
     void setUp() {
-        portfolioService = new PortfolioService(tradeRepository, stockService);
+        positionBook = new PositionBook(tradeRepository, snapshotRepository);
+        portfolioService = new PortfolioService(tradeRepository, stockService, positionBook,
+                new DirectTradeWriter(tradeRepository, positionBook),
+                new TradeIdempotencyCache(100, Duration.ofHours(1), Duration.ofSeconds(5),
+                        new SimpleMeterRegistry()));
         testUserId = UUID.randomUUID();
     }
 
@@ -79,22 +99,41 @@ class PortfolioServiceTest {
         assertEquals(fetchedPrice, result.getPrice());
     }
 
+    @Test
+    void recordTrade_roundsPriceToStoredScale() {
+        when(stockService.getCurrentPrice("AAPL")).thenReturn(new BigDecimal("185.9199981689453"));
+        when(tradeRepository.save(any(Trade.class))).thenAnswer(invocation -> {
+            Trade trade = invocation.getArgument(0);
+            trade.setId(1L);
+            return trade;
+        });
+
+        portfolioService.recordTrade(testUserId, "AAPL", TradeType.BUY, 10, BigDecimal.ZERO);
+        portfolioService.recordTrade(testUserId, "AAPL", TradeType.BUY, 10, new BigDecimal("150.125"));
+
+        ArgumentCaptor<Trade> saved = ArgumentCaptor.forClass(Trade.class);
+        verify(tradeRepository, times(2)).save(saved.capture());
+        assertEquals(new BigDecimal("185.92"), saved.getAllValues().get(0).getPrice());
+        assertEquals(new BigDecimal("150.13"), saved.getAllValues().get(1).getPrice());
+    }
+
     @Test
     void calculatePortfolioValue_shouldComputeTotalValue() {
         // Arrange
         Trade buy1 = new Trade(testUserId, "AAPL", TradeType.BUY, 10, new BigDecimal("180.00"));
         Trade buy2 = new Trade(testUserId, "NVDA", TradeType.BUY, 5, new BigDecimal("450.00"));
 
-        when(tradeRepository.findByUserId(testUserId)).thenReturn(Arrays.asList(buy1, buy2));
-        when(stockService.getCurrentPrice("AAPL")).thenReturn(new BigDecimal("185.00"));
-        when(stockService.getCurrentPrice("NVDA")).thenReturn(new BigDecimal("485.00"));
+        record(buy1, buy2);
+        when(stockService.getCurrentPrices(any())).thenReturn(Map.of(
+                "AAPL", new BigDecimal("185.00"),
+                "NVDA", new BigDecimal("485.00")));
 
         // Act
-        Map<String, Object> portfolio = portfolioService.calculatePortfolioValue(testUserId);
+        PortfolioResponse portfolio = portfolioService.calculatePortfolioValue(testUserId);
 
         // Assert
         assertNotNull(portfolio);
-        BigDecimal totalValue = (BigDecimal) portfolio.get("totalValue");
+        BigDecimal totalValue = portfolio.totalValue();
         // AAPL: 10 * 185 = 1850, NVDA: 5 * 485 = 2425, Total = 4275
         assertEquals(new BigDecimal("4275.00"), totalValue);
     }
@@ -105,19 +144,38 @@ class PortfolioServiceTest {
         Trade buy = new Trade(testUserId, "AAPL", TradeType.BUY, 10, new BigDecimal("180.00"));
         Trade sell = new Trade(testUserId, "AAPL", TradeType.SELL, 3, new BigDecimal("190.00"));
 
-        when(tradeRepository.findByUserId(testUserId)).thenReturn(Arrays.asList(buy, sell));
-        when(stockService.getCurrentPrice("AAPL")).thenReturn(new BigDecimal("200.00"));
+        record(buy, sell);
+        when(stockService.getCurrentPrices(any())).thenReturn(Map.of("AAPL", new BigDecimal("200.00")));
 
         // Act
-        Map<String, Object> portfolio = portfolioService.calculatePortfolioValue(testUserId);
+        PortfolioResponse portfolio = portfolioService.calculatePortfolioValue(testUserId);
 
         // Assert
         assertNotNull(portfolio);
-        BigDecimal totalValue = (BigDecimal) portfolio.get("totalValue");
+        BigDecimal totalValue = portfolio.totalValue();
         // Net AAPL: 10 - 3 = 7, Value: 7 * 200 = 1400
         assertEquals(new BigDecimal("1400.00"), totalValue);
     }
 
+    @Test
+    void calculatePortfolioValue_withMissingPrice_reportsHoldingUnavailable() {
+        // Arrange
+        Trade buy1 = new Trade(testUserId, "AAPL", TradeType.BUY, 10, new BigDecimal("180.00"));
+        Trade buy2 = new Trade(testUserId, "XYZ", TradeType.BUY, 5, new BigDecimal("10.00"));
+
+        record(buy1, buy2);
+        when(stockService.getCurrentPrices(any())).thenReturn(Map.of("AAPL", new BigDecimal("185.00")));
+
+        // Act
+        PortfolioResponse portfolio = portfolioService.calculatePortfolioValue(testUserId);
+
+        // Assert
+        HoldingValue xyz = portfolio.holdings().get("XYZ");
+        assertEquals("Price unavailable", xyz.error());
+        assertEquals(5, xyz.quantity());
+        assertEquals(new BigDecimal("1850.00"), portfolio.totalValue());
+    }
+
     @Test
     void recordTrade_whenMarketServiceFails_shouldThrowException() {
         // Arrange
@@ -128,4 +186,100 @@ class PortfolioServiceTest {
         assertThrows(StockServiceException.class, () -> portfolioService.recordTrade(
                 testUserId, "INVALID", TradeType.BUY, 10, BigDecimal.ZERO));
     }
+
+    @Test
+    void recordTrade_updatesPositionBook() {
+        Trade savedTrade = new Trade(testUserId, "AAPL", TradeType.BUY, 10, new BigDecimal("150.00"));
+        savedTrade.setId(1L);
+        when(tradeRepository.save(any(Trade.class))).thenReturn(savedTrade);
+
+        portfolioService.recordTrade(testUserId, "AAPL", TradeType.BUY, 10, new BigDecimal("150.00"));
+
+        assertEquals(10, positionBook.getPositions(testUserId).get("AAPL").getQuantity());
+    }
+
+    @Test
+    void recordTrade_withRepeatedIdempotencyKey_returnsOriginalTradeFromCache() {
+        when(stockService.getCurrentPrice("AAPL")).thenReturn(new BigDecimal("185.92"));
+        when(tradeRepository.findByUserIdAndIdempotencyKey(testUserId, "key-1")).thenReturn(Optional.empty());
+        when(tradeRepository.save(any(Trade.class))).thenAnswer(invocation -> {
+            Trade trade = invocation.getArgument(0);
+            trade.setId(42L);
+            return trade;
+        });
+
+        Trade first = portfolioService.recordTrade(
+                testUserId, "AAPL", TradeType.BUY, 10, BigDecimal.ZERO, null, "key-1");
+        Trade retry = portfolioService.recordTrade(
+                testUserId, "AAPL", TradeType.BUY, 10, BigDecimal.ZERO, null, "key-1");
+
+        assertSame(first, retry);
+        assertEquals("key-1", first.getIdempotencyKey());
+        verify(stockService, times(1)).getCurrentPrice("AAPL");
+        verify(tradeRepository, times(1)).save(any(Trade.class));
+        verify(tradeRepository, times(1)).findByUserIdAndIdempotencyKey(testUserId, "key-1");
+    }
+
+    @Test
+    void recordTrade_withKnownIdempotencyKey_returnsStoredTradeWithoutWriting() {
+        Trade stored = new Trade(testUserId, "AAPL", TradeType.BUY, 10, new BigDecimal("180.00"));
+        stored.setId(7L);
+        when(tradeRepository.findByUserIdAndIdempotencyKey(testUserId, "key-1")).thenReturn(Optional.of(stored));
+
+        Trade result = portfolioService.recordTrade(
+                testUserId, "AAPL", TradeType.BUY, 10, BigDecimal.ZERO, null, "key-1");
+
+        assertSame(stored, result);
+        verify(stockService, never()).getCurrentPrice(any());
+        verify(tradeRepository, never()).save(any(Trade.class));
+    }
+
+    @Test
+    void recordTrade_whenKeyWasRecordedConcurrently_returnsTheWinningTrade() {
+        Trade winner = new Trade(testUserId, "AAPL", TradeType.BUY, 10, new BigDecimal("180.00"));
+        winner.setId(8L);
+        when(tradeRepository.findByUserIdAndIdempotencyKey(testUserId, "key-1"))
+                .thenReturn(Optional.empty(), Optional.of(winner));
+        when(tradeRepository.save(any(Trade.class)))
+                .thenThrow(new DataIntegrityViolationException("uk_trades_user_idempotency_key"));
+
+        Trade result = portfolioService.recordTrade(
+                testUserId, "AAPL", TradeType.BUY, 10, new BigDecimal("180.00"), null, "key-1");
+
+        assertSame(winner, result);
+    }
+
+    @Test
+    void recordTrade_withKeyReusedForDifferentTrade_isRejected() {
+        Trade stored = new Trade(testUserId, "AAPL", TradeType.BUY, 10, new BigDecimal("180.00"));
+        stored.setId(7L);
+        when(tradeRepository.findByUserIdAndIdempotencyKey(testUserId, "key-1")).thenReturn(Optional.of(stored));
+
+        assertThrows(InvalidIdempotencyKeyException.class, () -> portfolioService.recordTrade(
+                testUserId, "AAPL", TradeType.SELL, 10, new BigDecimal("180.00"), null, "key-1"));
+        assertThrows(InvalidIdempotencyKeyException.class, () -> portfolioService.recordTrade(
+                testUserId, "AAPL", TradeType.BUY, 10, new BigDecimal("180.00"), null, " "));
+    }
+
+    @Test
+    void recordTrade_withKeyReusedAtDifferentPrice_isRejected() {
+        Trade stored = new Trade(testUserId, "AAPL", TradeType.BUY, 10, new BigDecimal("180.00"));
+        stored.setId(7L);
+        when(tradeRepository.findByUserIdAndIdempotencyKey(testUserId, "key-1")).thenReturn(Optional.of(stored));
+
+        assertThrows(InvalidIdempotencyKeyException.class, () -> portfolioService.recordTrade(
+                testUserId, "AAPL", TradeType.BUY, 10, new BigDecimal("181.00"), null, "key-1"));
+        assertEquals(stored, portfolioService.recordTrade(
+                testUserId, "AAPL", TradeType.BUY, 10, new BigDecimal("180.001"), null, "key-1"));
+        assertEquals(stored, portfolioService.recordTrade(
+                testUserId, "AAPL", TradeType.BUY, 10, null, null, "key-1"));
+    }
+
+    private void record(Trade... trades) {
+        long id = 1;
+        for (Trade trade : trades) {
+            trade.setId(id++);
+            positionBook.record(trade);
+        }
+    }
 }
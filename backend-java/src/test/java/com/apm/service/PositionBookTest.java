@@ -0,0 +1,193 @@
+package com.apm.service;
+
+import com.apm.model.PositionSnapshot;
+import com.apm.model.Trade;
+import com.apm.model.TradeType;
+import com.apm.repository.PositionSnapshotRepository;
+import com.apm.repository.TradeRepository;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for PositionBook.
+ */
+@ExtendWith(MockitoExtension.class)
+class PositionBookTest {
+
+    @Mock
+    private TradeRepository tradeRepository;
+
+    @Mock
+    private PositionSnapshotRepository snapshotRepository;
+
+    private PositionBook positionBook;
+    private UUID userId;
+
+    @BeforeEach
+    void setUp() {
+        positionBook = new PositionBook(tradeRepository, snapshotRepository);
+        userId = UUID.randomUUID();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void record_withoutTransaction_appliesImmediately() {
+        positionBook.record(trade(1, "AAPL", TradeType.BUY, 10, "180.00"));
+        positionBook.record(trade(2, "AAPL", TradeType.BUY, 5, "200.00"));
+        positionBook.record(trade(3, "AAPL", TradeType.SELL, 3, "210.00"));
+
+        Position position = positionBook.getPositions(userId).get("AAPL");
+        assertEquals(12, position.getQuantity());
+        assertEquals(new BigDecimal("2800.00"), position.getTotalCost());
+    }
+
+    @Test
+    void record_insideTransaction_waitsForCommit() {
+        List<Trade> committed = new ArrayList<>();
+        positionBook.addCommitListener(committed::addAll);
+        TransactionSynchronizationManager.initSynchronization();
+        Trade trade = trade(1, "AAPL", TradeType.BUY, 10, "180.00");
+        positionBook.record(trade);
+
+        assertTrue(positionBook.getPositions(userId).isEmpty());
+        assertTrue(committed.isEmpty());
+
+        List<TransactionSynchronization> synchronizations =
+                TransactionSynchronizationManager.getSynchronizations();
+        synchronizations.forEach(TransactionSynchronization::afterCommit);
+
+        assertEquals(10, positionBook.getPositions(userId).get("AAPL").getQuantity());
+        assertEquals(List.of(trade), committed);
+    }
+
+    @Test
+    void record_updatesLockedSnapshot() {
+        PositionSnapshot existing = snapshot("AAPL", 10, "1800.00", 4L);
+        when(snapshotRepository.findForUpdate(userId, "AAPL")).thenReturn(Optional.of(existing));
+
+        positionBook.record(trade(7, "AAPL", TradeType.BUY, 5, "200.00"));
+
+        InOrder inOrder = inOrder(snapshotRepository);
+        inOrder.verify(snapshotRepository).insertIfAbsent(userId, "AAPL");
+        inOrder.verify(snapshotRepository).findForUpdate(userId, "AAPL");
+        inOrder.verify(snapshotRepository).save(existing);
+        assertEquals(15, existing.getQuantity());
+        assertEquals(new BigDecimal("2800.00"), existing.getTotalCost());
+        assertEquals(7L, existing.getLastTradeId());
+    }
+
+    @Test
+    void recordAll_writesEachSnapshotOnce() {
+        positionBook.recordAll(List.of(
+                trade(1, "AAPL", TradeType.BUY, 10, "180.00"),
+                trade(2, "MSFT", TradeType.BUY, 4, "400.00"),
+                trade(3, "AAPL", TradeType.SELL, 3, "190.00")));
+
+        ArgumentCaptor<PositionSnapshot> saved = ArgumentCaptor.forClass(PositionSnapshot.class);
+        verify(snapshotRepository, times(2)).save(saved.capture());
+        PositionSnapshot aapl = saved.getAllValues().get(0);
+        assertEquals("AAPL", aapl.getTicker());
+        assertEquals(7, aapl.getQuantity());
+        assertEquals(3L, aapl.getLastTradeId());
+        assertEquals(7, positionBook.getPositions(userId).get("AAPL").getQuantity());
+        assertEquals(4, positionBook.getPositions(userId).get("MSFT").getQuantity());
+    }
+
+    @Test
+    void rebuild_loadsSnapshotsAndReplaysOnlyNewerTrades() {
+        when(snapshotRepository.findAll()).thenReturn(List.of(snapshot("AAPL", 10, "1800.00", 5L)));
+        when(snapshotRepository.findMaxLastTradeId()).thenReturn(5L);
+        when(tradeRepository.findByIdGreaterThanOrderByIdAsc(eq(5L), any(Pageable.class)))
+                .thenReturn(List.of(
+                        trade(6, "AAPL", TradeType.BUY, 5, "200.00"),
+                        trade(7, "NVDA", TradeType.BUY, 2, "450.00")));
+
+        positionBook.rebuild();
+
+        Map<String, Position> positions = positionBook.getPositions(userId);
+        assertEquals(15, positions.get("AAPL").getQuantity());
+        assertEquals(new BigDecimal("2800.00"), positions.get("AAPL").getTotalCost());
+        assertEquals(2, positions.get("NVDA").getQuantity());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<PositionSnapshot>> saved = ArgumentCaptor.forClass(Collection.class);
+        verify(snapshotRepository).saveAll(saved.capture());
+        assertEquals(2, saved.getValue().size());
+    }
+
+    @Test
+    void rebuild_withoutSnapshots_replaysAllTradesPageByPage() {
+        List<Trade> firstPage = new ArrayList<>();
+        for (int i = 1; i <= PositionBook.REPLAY_PAGE_SIZE; i++) {
+            firstPage.add(trade(i, "AAPL", TradeType.BUY, 1, "1.00"));
+        }
+        List<Trade> secondPage = List.of(trade(1001, "NVDA", TradeType.BUY, 2, "450.00"));
+
+        when(tradeRepository.findByIdGreaterThanOrderByIdAsc(anyLong(), any(Pageable.class)))
+                .thenAnswer(invocation -> (long) invocation.getArgument(0) == 0 ? firstPage : secondPage);
+
+        positionBook.rebuild();
+
+        Map<String, Position> positions = positionBook.getPositions(userId);
+        assertEquals(1000, positions.get("AAPL").getQuantity());
+        assertEquals(2, positions.get("NVDA").getQuantity());
+    }
+
+    @Test
+    void getHeldTickers_excludesClosedPositions() {
+        positionBook.record(trade(1, "AAPL", TradeType.BUY, 10, "180.00"));
+        positionBook.record(trade(2, "AAPL", TradeType.SELL, 10, "190.00"));
+        Trade otherTrade = new Trade(UUID.randomUUID(), "NVDA", TradeType.BUY, 1, new BigDecimal("450.00"));
+        otherTrade.setId(3L);
+        positionBook.record(otherTrade);
+
+        assertEquals(Set.of("NVDA"), positionBook.getHeldTickers());
+    }
+
+    private Trade trade(long id, String ticker, TradeType type, int quantity, String price) {
+        Trade trade = new Trade(userId, ticker, type, quantity, new BigDecimal(price));
+        trade.setId(id);
+        return trade;
+    }
+
+    private PositionSnapshot snapshot(String ticker, int quantity, String totalCost, long lastTradeId) {
+        PositionSnapshot snapshot = new PositionSnapshot(userId, ticker);
+        snapshot.setQuantity(quantity);
+        snapshot.setTotalCost(new BigDecimal(totalCost));
+        snapshot.setLastTradeId(lastTradeId);
+        return snapshot;
+    }
+}
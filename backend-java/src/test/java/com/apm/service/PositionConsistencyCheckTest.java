@@ -0,0 +1,166 @@
+package com.apm.service;
+
+import com.apm.model.PositionSnapshot;
+import com.apm.repository.PositionSnapshotRepository;
+import com.apm.repository.PositionTotals;
+import com.apm.repository.TradeRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for PositionConsistencyCheck.
+ */
+@ExtendWith(MockitoExtension.class)
+class PositionConsistencyCheckTest {
+
+    @Mock
+    private TradeRepository tradeRepository;
+
+    @Mock
+    private PositionSnapshotRepository snapshotRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private PositionBook positionBook;
+    private UUID userId;
+    private PositionConsistencyCheck check;
+
+    @BeforeEach
+    void setUp() {
+        positionBook = new PositionBook(tradeRepository, snapshotRepository);
+        userId = UUID.randomUUID();
+        when(tradeRepository.findMaxId()).thenReturn(3L);
+        // AAPL: BUY 10 @ 180 (id 1), SELL 4 (id 2); NVDA: BUY 2 @ 450 (id 3)
+        when(tradeRepository.findPositionTotals(3L)).thenReturn(List.of(
+                totals("AAPL", 6, "1800.00", 2L),
+                totals("NVDA", 2, "900.00", 3L)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        check.destroy();
+    }
+
+    @Test
+    void check_withMatchingSnapshots_findsNothing() {
+        check = newCheck(false);
+        when(snapshotRepository.findAll()).thenReturn(List.of(
+                snapshot("AAPL", 6, "1800.00", 2L),
+                snapshot("NVDA", 2, "900.00", 3L)));
+
+        assertEquals(0, check.check());
+    }
+
+    @Test
+    void check_reportsDriftedAndMissingSnapshots() {
+        check = newCheck(false);
+        when(snapshotRepository.findAll()).thenReturn(List.of(snapshot("AAPL", 10, "1800.00", 2L)));
+
+        assertEquals(2, check.check());
+        verify(snapshotRepository, never()).save(any());
+    }
+
+    @Test
+    void check_skipsSnapshotsNewerThanReplay() {
+        check = newCheck(false);
+        when(snapshotRepository.findAll()).thenReturn(List.of(
+                snapshot("AAPL", 99, "1.00", 4L),
+                snapshot("NVDA", 2, "900.00", 3L)));
+
+        assertEquals(0, check.check());
+    }
+
+    @Test
+    void check_withRepair_overwritesSnapshotAndBook() {
+        check = newCheck(true);
+        PositionSnapshot drifted = snapshot("AAPL", 10, "1800.00", 2L);
+        when(snapshotRepository.findAll()).thenReturn(List.of(drifted, snapshot("NVDA", 2, "900.00", 3L)));
+        when(snapshotRepository.findForUpdate(userId, "AAPL")).thenReturn(Optional.of(drifted));
+        when(tradeRepository.findPositionTotals(userId, "AAPL"))
+                .thenReturn(Optional.of(totals("AAPL", 6, "1800.00", 2L)));
+
+        assertEquals(1, check.check());
+
+        verify(snapshotRepository).save(drifted);
+        assertEquals(6, drifted.getQuantity());
+        assertEquals(6, positionBook.getPositions(userId).get("AAPL").getQuantity());
+    }
+
+    @Test
+    void check_withRepair_keepsSnapshotThatMatchesTradesCommittedSinceReplay() {
+        check = newCheck(true);
+        // BUY 5 @ 200 (id 2) was still uncommitted when the replay ran
+        PositionSnapshot current = snapshot("AAPL", 11, "2800.00", 2L);
+        when(snapshotRepository.findAll()).thenReturn(List.of(current, snapshot("NVDA", 2, "900.00", 3L)));
+        when(snapshotRepository.findForUpdate(userId, "AAPL")).thenReturn(Optional.of(current));
+        when(tradeRepository.findPositionTotals(userId, "AAPL"))
+                .thenReturn(Optional.of(totals("AAPL", 11, "2800.00", 2L)));
+
+        assertEquals(1, check.check());
+
+        verify(snapshotRepository, never()).save(any());
+        assertEquals(11, current.getQuantity());
+    }
+
+    private PositionConsistencyCheck newCheck(boolean repair) {
+        return new PositionConsistencyCheck(tradeRepository, snapshotRepository, positionBook,
+                new TransactionTemplate(transactionManager), Duration.ofHours(6), repair,
+                new SimpleMeterRegistry());
+    }
+
+    private PositionTotals totals(String ticker, long quantity, String totalCost, long lastTradeId) {
+        return new PositionTotals() {
+            @Override
+            public UUID getUserId() {
+                return userId;
+            }
+
+            @Override
+            public String getTicker() {
+                return ticker;
+            }
+
+            @Override
+            public Long getQuantity() {
+                return quantity;
+            }
+
+            @Override
+            public BigDecimal getTotalCost() {
+                return new BigDecimal(totalCost);
+            }
+
+            @Override
+            public Long getLastTradeId() {
+                return lastTradeId;
+            }
+        };
+    }
+
+    private PositionSnapshot snapshot(String ticker, int quantity, String totalCost, long lastTradeId) {
+        PositionSnapshot snapshot = new PositionSnapshot(userId, ticker);
+        snapshot.setQuantity(quantity);
+        snapshot.setTotalCost(new BigDecimal(totalCost));
+        snapshot.setLastTradeId(lastTradeId);
+        return snapshot;
+    }
+}
@@ -0,0 +1,72 @@
+package com.apm.service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for PriceFetchExecutor.
+ */
+class PriceFetchExecutorTest {
+
+    private final PriceFetchExecutor priceFetchExecutor =
+            new PriceFetchExecutor(4, 10, Duration.ofMillis(300));
+
+    @AfterEach
+    void tearDown() {
+        priceFetchExecutor.destroy();
+    }
+
+    @Test
+    void fetchAll_returnsAllPricesThatAnswer() {
+        Map<String, BigDecimal> prices = priceFetchExecutor.fetchAll(
+                List.of("AAPL", "NVDA"), ticker -> BigDecimal.TEN);
+
+        assertEquals(2, prices.size());
+        assertEquals(BigDecimal.TEN, prices.get("NVDA"));
+    }
+
+    @Test
+    void fetchAll_leavesOutFailedTickers() {
+        Map<String, BigDecimal> prices = priceFetchExecutor.fetchAll(List.of("AAPL", "INVALID"), ticker -> {
+            if ("INVALID".equals(ticker)) {
+                throw new StockServiceException("Ticker not found");
+            }
+            return BigDecimal.ONE;
+        });
+
+        assertEquals(Map.of("AAPL", BigDecimal.ONE), prices);
+    }
+
+    @Test
+    void fetchAll_returnsPartialResultsAtDeadline() {
+        long start = System.nanoTime();
+
+        Map<String, BigDecimal> prices = priceFetchExecutor.fetchAll(List.of("FAST", "SLOW"), ticker -> {
+            if ("SLOW".equals(ticker)) {
+                sleep(5000);
+            }
+            return BigDecimal.ONE;
+        });
+
+        long elapsedMillis = Duration.ofNanos(System.nanoTime() - start).toMillis();
+        assertTrue(prices.containsKey("FAST"));
+        assertFalse(prices.containsKey("SLOW"));
+        assertTrue(elapsedMillis < 2000, "waited " + elapsedMillis + "ms");
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.apm.service;
+
+import com.apm.model.Trade;
+import com.apm.model.TradeType;
+import com.apm.repository.PositionSnapshotRepository;
+import com.apm.repository.TradeRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for PricePrefetcher.
+ */
+@ExtendWith(MockitoExtension.class)
+class PricePrefetcherTest {
+
+    @Mock
+    private TradeRepository tradeRepository;
+
+    @Mock
+    private PositionSnapshotRepository snapshotRepository;
+
+    private PositionBook positionBook;
+    private long lastTradeId;
+    private RecordingStockService priceSource;
+    private CachingStockService cachingStockService;
+    private PricePrefetcher prefetcher;
+
+    @BeforeEach
+    void setUp() {
+        priceSource = new RecordingStockService();
+        cachingStockService = new CachingStockService(priceSource, 100,
+                Duration.ofSeconds(60), null, Runnable::run);
+        positionBook = new PositionBook(tradeRepository, snapshotRepository);
+        prefetcher = new PricePrefetcher(positionBook, cachingStockService,
+                Duration.ofSeconds(30), 0.2, 2, Duration.ofSeconds(5), new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        prefetcher.destroy();
+    }
+
+    @Test
+    void prefetch_refreshesHeldTickersInBatches() {
+        hold("AAPL", "MSFT", "NVDA");
+
+        int refreshed = prefetcher.prefetch();
+
+        assertEquals(3, refreshed);
+        assertEquals(List.of(List.of("AAPL", "MSFT"), List.of("NVDA")), priceSource.batches);
+    }
+
+    @Test
+    void prefetch_warmsCacheForRequestPath() {
+        hold("AAPL", "NVDA");
+        prefetcher.prefetch();
+        priceSource.batches.clear();
+
+        Map<String, BigDecimal> prices = cachingStockService.getCurrentPrices(List.of("AAPL", "NVDA"));
+
+        assertEquals(2, prices.size());
+        assertTrue(priceSource.batches.isEmpty());
+    }
+
+    @Test
+    void prefetch_replacesCachedPrices() {
+        hold("AAPL");
+        cachingStockService.getCurrentPrice("AAPL");
+        priceSource.prices.put("AAPL", new BigDecimal("190.00"));
+
+        prefetcher.prefetch();
+
+        assertEquals(new BigDecimal("190.00"), cachingStockService.getCurrentPrice("AAPL"));
+    }
+
+    @Test
+    void nextDelay_staysWithinJitter() {
+        long interval = Duration.ofSeconds(30).toNanos();
+        for (int i = 0; i < 100; i++) {
+            long delay = prefetcher.nextDelayNanos();
+            assertTrue(delay >= interval * 0.8 && delay <= interval * 1.2, "delay " + delay);
+        }
+    }
+
+    @Test
+    void prefetch_skipsClosedPositions() {
+        UUID userId = UUID.randomUUID();
+        record(new Trade(userId, "AAPL", TradeType.BUY, 5, BigDecimal.TEN));
+        record(new Trade(userId, "AAPL", TradeType.SELL, 5, BigDecimal.TEN));
+        hold("NVDA");
+
+        prefetcher.prefetch();
+
+        assertEquals(List.of(List.of("NVDA")), priceSource.batches);
+    }
+
+    private void hold(String... tickers) {
+        UUID userId = UUID.randomUUID();
+        for (String ticker : tickers) {
+            record(new Trade(userId, ticker, TradeType.BUY, 1, BigDecimal.TEN));
+        }
+    }
+
+    private void record(Trade trade) {
+        trade.setId(++lastTradeId);
+        positionBook.record(trade);
+    }
+
+    /**
+     * Price source that records each bulk request.
+     */
+    private static class RecordingStockService implements StockService {
+
+        private final Map<String, BigDecimal> prices = new HashMap<>(Map.of(
+                "AAPL", new BigDecimal("185.92"),
+                "NVDA", new BigDecimal("485.50"),
+                "MSFT", new BigDecimal("375.00")));
+        private final List<List<String>> batches = new ArrayList<>();
+
+        @Override
+        public BigDecimal getCurrentPrice(String ticker) {
+            return prices.get(ticker);
+        }
+
+        @Override
+        public Map<String, BigDecimal> getCurrentPrices(Collection<String> tickers) {
+            batches.add(new ArrayList<>(tickers));
+            Map<String, BigDecimal> result = new HashMap<>();
+            for (String ticker : tickers) {
+                result.put(ticker, prices.get(ticker));
+            }
+            return result;
+        }
+    }
+}
@@ -1,17 +1,25 @@
 package com.apm.service;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestOperations;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * Unit tests for RealStockService.
@@ -97,12 +105,131 @@ class RealStockServiceTest {
         });
     }
 
+    @Test
+    void getCurrentPrices_withBulkResponse_returnsPricesAndSkipsErrors() {
+        Map<String, Object> prices = new HashMap<>();
+        prices.put("AAPL", Map.of("price", 185.92, "currency", "USD"));
+        prices.put("XYZ", Map.of("error", "Not found"));
+        Map<String, Object> response = new HashMap<>();
+        response.put("prices", prices);
+
+        stubRestOperations.setResponse(response);
+
+        Map<String, BigDecimal> result = realStockService.getCurrentPrices(List.of("aapl", "xyz"));
+
+        assertEquals(1, result.size());
+        assertEquals(new BigDecimal("185.92"), result.get("AAPL"));
+        assertEquals(1, stubRestOperations.postRequests.size());
+    }
+
+    @Test
+    void getCurrentPrices_splitsRequestsIntoChunks() {
+        realStockService = newService(2, newCircuitBreaker());
+
+        Map<String, Object> prices = new HashMap<>();
+        prices.put("AAPL", Map.of("price", 185.92));
+        prices.put("NVDA", Map.of("price", 485.5));
+        prices.put("MSFT", Map.of("price", "375.00"));
+        Map<String, Object> response = new HashMap<>();
+        response.put("prices", prices);
+
+        stubRestOperations.setResponse(response);
+
+        Map<String, BigDecimal> result = realStockService.getCurrentPrices(
+                List.of("AAPL", "NVDA", "MSFT", "aapl"));
+
+        assertEquals(3, result.size());
+        assertEquals(2, stubRestOperations.postRequests.size());
+    }
+
+    @Test
+    void getCurrentPrices_withBulkDisabled_fansOutSingleLookups() {
+        realStockService = newService(0, newCircuitBreaker());
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("price", 185.92);
+        stubRestOperations.setResponse(response);
+
+        Map<String, BigDecimal> result = realStockService.getCurrentPrices(List.of("AAPL", "NVDA"));
+
+        assertEquals(2, result.size());
+        assertTrue(stubRestOperations.postRequests.isEmpty());
+    }
+
+    @Test
+    void getCurrentPrices_withNetworkError_returnsEmptyResult() {
+        stubRestOperations.setException(new RestClientException("Connection refused"));
+
+        Map<String, BigDecimal> result = realStockService.getCurrentPrices(List.of("AAPL"));
+
+        assertTrue(result.isEmpty());
+    }
+
+    @Test
+    void getCurrentPrice_whenCircuitOpen_servesLastKnownPrice() {
+        realStockService = newService(RealStockService.DEFAULT_BATCH_SIZE, newCircuitBreaker());
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("price", 185.92);
+        stubRestOperations.setResponse(response);
+        realStockService.getCurrentPrice("AAPL");
+
+        // One success and one failure reach the 50% threshold of the test breaker
+        stubRestOperations.setException(new ResourceAccessException("Read timed out"));
+        assertThrows(StockServiceException.class, () -> realStockService.getCurrentPrice("AAPL"));
+
+        int callsBefore = stubRestOperations.getCalls;
+        assertEquals(new BigDecimal("185.92"), realStockService.getCurrentPrice("AAPL"));
+        assertEquals(callsBefore, stubRestOperations.getCalls);
+    }
+
+    @Test
+    void getCurrentPrice_whenCircuitOpenWithoutLastPrice_failsFast() {
+        CircuitBreaker circuitBreaker = newCircuitBreaker();
+        realStockService = newService(RealStockService.DEFAULT_BATCH_SIZE, circuitBreaker);
+
+        stubRestOperations.setException(new ResourceAccessException("Connection refused"));
+        assertThrows(StockServiceException.class, () -> realStockService.getCurrentPrice("AAPL"));
+        assertThrows(StockServiceException.class, () -> realStockService.getCurrentPrice("AAPL"));
+
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertThrows(MarketEngineUnavailableException.class, () -> realStockService.getCurrentPrice("NVDA"));
+    }
+
+    @Test
+    void getCurrentPrice_withClientError_doesNotTripCircuit() {
+        CircuitBreaker circuitBreaker = newCircuitBreaker();
+        realStockService = newService(RealStockService.DEFAULT_BATCH_SIZE, circuitBreaker);
+
+        stubRestOperations.setException(HttpClientErrorException.create(
+                HttpStatus.NOT_FOUND, "Not Found", null, null, null));
+        assertThrows(StockServiceException.class, () -> realStockService.getCurrentPrice("XYZ"));
+        assertThrows(StockServiceException.class, () -> realStockService.getCurrentPrice("XYZ"));
+
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    private RealStockService newService(int batchSize, CircuitBreaker circuitBreaker) {
+        return new RealStockService("http://localhost:5000", stubRestOperations, batchSize,
+                new PriceFetchExecutor(2, 10, Duration.ofSeconds(1)), circuitBreaker,
+                new Bulkhead(4, Duration.ofMillis(100)),
+                new RequestHedger(false, 95, Duration.ofMillis(250), Duration.ofMillis(20), 10, 1,
+                        new SimpleMeterRegistry()),
+                Duration.ofMinutes(15), Duration.ofSeconds(5), new SimpleMeterRegistry());
+    }
+
+    private static CircuitBreaker newCircuitBreaker() {
+        return new CircuitBreaker("test", 4, 2, 50, Duration.ofMinutes(1), 1);
+    }
+
     /**
      * Stub implementation of RestOperations for testing.
      */
     private static class StubRestOperations implements RestOperations {
         private Object response;
         private RuntimeException exception;
+        private final List<Object> postRequests = new ArrayList<>();
+        private int getCalls;
 
         public void setResponse(Object response) {
             this.response = response;
@@ -117,6 +244,7 @@ class RealStockServiceTest {
         @Override
         @SuppressWarnings("unchecked")
         public <T> T getForObject(String url, Class<T> responseType, Object... uriVariables) {
+            getCalls++;
             if (exception != null) {
                 throw exception;
             }
@@ -183,8 +311,13 @@ class RealStockServiceTest {
         }
 
         @Override
+        @SuppressWarnings("unchecked")
         public <T> T postForObject(String url, Object request, Class<T> responseType, Object... uriVariables) {
-            return null;
+            postRequests.add(request);
+            if (exception != null) {
+                throw exception;
+            }
+            return (T) response;
         }
 
         @Override
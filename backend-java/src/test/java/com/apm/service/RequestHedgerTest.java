@@ -0,0 +1,166 @@
+package com.apm.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for RequestHedger.
+ */
+class RequestHedgerTest {
+
+    private final CountDownLatch releasePrimary = new CountDownLatch(1);
+    private RequestHedger hedger;
+
+    @AfterEach
+    void tearDown() {
+        releasePrimary.countDown();
+        if (hedger != null) {
+            hedger.destroy();
+        }
+    }
+
+    @Test
+    void disabled_runsCallOnCallerThread() {
+        hedger = newHedger(false, 100);
+        Thread caller = Thread.currentThread();
+
+        assertEquals(caller, hedger.execute(Thread::currentThread));
+    }
+
+    @Test
+    void fastCall_isNotHedged() {
+        hedger = newHedger(true, 100);
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertEquals("ok", hedger.execute(() -> {
+            attempts.incrementAndGet();
+            return "ok";
+        }));
+        assertEquals(1, attempts.get());
+        assertEquals(0, hedger.getHedgeCount());
+    }
+
+    @Test
+    void slowPrimary_isHedgedAndHedgeWins() {
+        hedger = newHedger(true, 100);
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = hedger.execute(() -> {
+            if (attempts.incrementAndGet() == 1) {
+                awaitRelease();
+                return "primary";
+            }
+            return "hedge";
+        });
+
+        assertEquals("hedge", result);
+        assertEquals(1, hedger.getHedgeCount());
+        assertEquals(1, hedger.getHedgeWinCount());
+    }
+
+    @Test
+    void exhaustedBudget_waitsForPrimary() {
+        hedger = newHedger(true, 10);
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = hedger.execute(() -> {
+            attempts.incrementAndGet();
+            sleep(100);
+            return "primary";
+        });
+
+        assertEquals("primary", result);
+        assertEquals(1, attempts.get());
+        assertEquals(0, hedger.getHedgeCount());
+    }
+
+    @Test
+    void failedPrimary_usesHedgeResult() {
+        hedger = newHedger(true, 100);
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = hedger.execute(() -> {
+            if (attempts.incrementAndGet() == 1) {
+                sleep(100);
+                throw new StockServiceException("primary failed");
+            }
+            sleep(200);
+            return "hedge";
+        });
+
+        assertEquals("hedge", result);
+    }
+
+    @Test
+    void bothAttemptsFailing_rethrowsFailure() {
+        hedger = newHedger(true, 100);
+
+        StockServiceException e = assertThrows(StockServiceException.class, () -> hedger.execute(() -> {
+            sleep(100);
+            throw new StockServiceException("down");
+        }));
+        assertEquals("down", e.getMessage());
+        assertEquals(1, hedger.getHedgeCount());
+    }
+
+    @Test
+    void interruptedCaller_failsAsUnavailable() throws InterruptedException {
+        hedger = newHedger(true, 100);
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicBoolean stillInterrupted = new AtomicBoolean();
+
+        Thread caller = new Thread(() -> {
+            try {
+                hedger.execute(() -> {
+                    started.countDown();
+                    awaitRelease();
+                    return "primary";
+                });
+            } catch (Throwable e) {
+                failure.set(e);
+                stillInterrupted.set(Thread.currentThread().isInterrupted());
+            }
+        });
+        caller.start();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        caller.interrupt();
+        caller.join(5000);
+
+        assertInstanceOf(MarketEngineUnavailableException.class, failure.get());
+        assertTrue(stillInterrupted.get());
+    }
+
+    private RequestHedger newHedger(boolean enabled, int maxExtraLoadPercent) {
+        return new RequestHedger(enabled, 95, Duration.ofMillis(20), Duration.ofMillis(5),
+                maxExtraLoadPercent, 4, new SimpleMeterRegistry());
+    }
+
+    private void awaitRelease() {
+        try {
+            releasePrimary.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
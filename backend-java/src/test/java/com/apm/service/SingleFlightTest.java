@@ -0,0 +1,170 @@
+package com.apm.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for SingleFlight.
+ */
+class SingleFlightTest {
+
+    private static final int CALLERS = 8;
+
+    private final SingleFlight<String, String> singleFlight =
+            new SingleFlight<>("test", Duration.ofSeconds(5), StockServiceException::new,
+                    new SimpleMeterRegistry());
+    private final ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void execute_sequentialCalls_eachRunTheCall() {
+        AtomicInteger invocations = new AtomicInteger();
+
+        singleFlight.execute("AAPL", () -> "v" + invocations.incrementAndGet());
+        String second = singleFlight.execute("AAPL", () -> "v" + invocations.incrementAndGet());
+
+        assertEquals("v2", second);
+        assertEquals(0, singleFlight.getCoalescedCount());
+    }
+
+    @Test
+    void execute_concurrentCallers_shareOneCall() throws Exception {
+        AtomicInteger invocations = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<String>> results = submitCallers(() -> {
+            invocations.incrementAndGet();
+            await(release);
+            return "185.92";
+        });
+        awaitCoalesced(CALLERS - 1);
+        release.countDown();
+
+        for (Future<String> result : results) {
+            assertEquals("185.92", result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, invocations.get());
+        assertEquals(CALLERS - 1, singleFlight.getCoalescedCount());
+    }
+
+    @Test
+    void execute_concurrentCallers_shareException() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        StockServiceException failure = new StockServiceException("Market service unavailable");
+
+        List<Future<String>> results = submitCallers(() -> {
+            await(release);
+            throw failure;
+        });
+        awaitCoalesced(CALLERS - 1);
+        release.countDown();
+
+        for (Future<String> result : results) {
+            Exception e = assertThrows(Exception.class, () -> result.get(5, TimeUnit.SECONDS));
+            assertSame(failure, e.getCause());
+        }
+    }
+
+    @Test
+    void execute_callStillRunningAfterMaxWait_waiterGetsWaitFailure() throws Exception {
+        SingleFlight<String, String> shortWait = new SingleFlight<>("test", Duration.ofMillis(50),
+                StockServiceException::new, new SimpleMeterRegistry());
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<String> leader = executor.submit(() -> shortWait.execute("AAPL", () -> {
+            started.countDown();
+            await(release);
+            return "185.92";
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        StockServiceException e = assertThrows(StockServiceException.class,
+                () -> shortWait.execute("AAPL", () -> "unused"));
+        assertInstanceOf(TimeoutException.class, e.getCause());
+
+        release.countDown();
+        assertEquals("185.92", leader.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void execute_waiterInterrupted_getsWaitFailureAndKeepsInterruptFlag() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<String> leader = executor.submit(() -> singleFlight.execute("AAPL", () -> {
+            started.countDown();
+            await(release);
+            return "185.92";
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        AtomicBoolean interruptFlag = new AtomicBoolean();
+        Thread waiter = new Thread(() -> {
+            try {
+                singleFlight.execute("AAPL", () -> "unused");
+            } catch (RuntimeException e) {
+                failure.set(e);
+                interruptFlag.set(Thread.currentThread().isInterrupted());
+            }
+        });
+        waiter.start();
+        awaitCoalesced(1);
+        waiter.interrupt();
+        waiter.join(5_000);
+
+        assertInstanceOf(StockServiceException.class, failure.get());
+        assertInstanceOf(InterruptedException.class, failure.get().getCause());
+        assertTrue(interruptFlag.get());
+
+        release.countDown();
+        assertEquals("185.92", leader.get(5, TimeUnit.SECONDS));
+    }
+
+    private List<Future<String>> submitCallers(Supplier<String> call) {
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(executor.submit(() -> singleFlight.execute("AAPL", call)));
+        }
+        return results;
+    }
+
+    private void awaitCoalesced(long expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (singleFlight.getCoalescedCount() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(singleFlight.getCoalescedCount() >= expected);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.apm.service;
+
+import com.apm.model.TradeType;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Unit tests for TaxLotEngine and its lot queues.
+ */
+class TaxLotEngineTest {
+
+    @Test
+    void fifo_sellsOldestSharesFirst() {
+        LotPosition position = run(CostBasisMethod.FIFO);
+
+        // 10 @ 180 and 5 @ 200 bought; 3 sold @ 210 from the 180 lot
+        assertEquals(12, position.quantity());
+        assertEquals(new BigDecimal("2260.000000"), position.costBasis());
+        assertEquals(new BigDecimal("90.000000"), position.realizedProfitLoss());
+    }
+
+    @Test
+    void lifo_sellsNewestSharesFirst() {
+        LotPosition position = run(CostBasisMethod.LIFO);
+
+        // 3 sold @ 210 from the 200 lot
+        assertEquals(12, position.quantity());
+        assertEquals(new BigDecimal("2200.000000"), position.costBasis());
+        assertEquals(new BigDecimal("30.000000"), position.realizedProfitLoss());
+    }
+
+    @Test
+    void averageCost_sellsAtPooledCost() {
+        LotPosition position = run(CostBasisMethod.AVERAGE_COST);
+
+        // Average cost 2800 / 15 = 186.666667; 3 sold take 560
+        assertEquals(12, position.quantity());
+        assertEquals(new BigDecimal("2240.000000"), position.costBasis());
+        assertEquals(new BigDecimal("70.000000"), position.realizedProfitLoss());
+    }
+
+    @Test
+    void sellBeyondOpenQuantity_leavesUncoveredShort() {
+        TaxLotEngine engine = new TaxLotEngine(CostBasisMethod.FIFO);
+        engine.apply("AAPL", TradeType.BUY, 5, new BigDecimal("100.00"));
+        engine.apply("AAPL", TradeType.SELL, 8, new BigDecimal("110.00"));
+
+        LotPosition position = engine.getPositions().get("AAPL");
+        assertEquals(-3, position.quantity());
+        assertEquals(new BigDecimal("0.000000"), position.costBasis());
+        assertEquals(new BigDecimal("50.000000"), position.realizedProfitLoss());
+    }
+
+    @Test
+    void buyAfterOversell_coversShortBeforeOpeningLot() {
+        for (CostBasisMethod method : CostBasisMethod.values()) {
+            TaxLotEngine engine = new TaxLotEngine(method);
+            engine.apply("AAPL", TradeType.BUY, 10, new BigDecimal("100.00"));
+            engine.apply("AAPL", TradeType.SELL, 15, new BigDecimal("110.00"));
+            engine.apply("AAPL", TradeType.BUY, 10, new BigDecimal("104.00"));
+
+            // Same net quantity as the position book: 10 - 15 + 10
+            LotPosition position = engine.getPositions().get("AAPL");
+            assertEquals(5, position.quantity(), method.name());
+            assertEquals(new BigDecimal("520.000000"), position.costBasis(), method.name());
+            // 10 sold at a 10.00 gain, 5 shorted at 110.00 and covered at 104.00
+            assertEquals(new BigDecimal("130.000000"), position.realizedProfitLoss(), method.name());
+        }
+    }
+
+    @Test
+    void lotQueue_matchesReferenceOverManyTrades() {
+        for (CostBasisMethod method : new CostBasisMethod[] {CostBasisMethod.FIFO, CostBasisMethod.LIFO}) {
+            Random random = new Random(11);
+            LotQueue queue = new LotQueue(method);
+            Deque<long[]> reference = new ArrayDeque<>();
+            long realized = 0;
+            for (int i = 0; i < 20_000; i++) {
+                long price = 1_000_000L + random.nextInt(500_000_000);
+                int shares = 1 + random.nextInt(50);
+                if (random.nextInt(3) > 0) {
+                    queue.buy(shares, price);
+                    reference.addLast(new long[] {shares, price});
+                } else {
+                    int left = Math.min(shares, reference.stream().mapToInt(lot -> (int) lot[0]).sum());
+                    queue.sell(left, price);
+                    realized += price * left;
+                    while (left > 0) {
+                        long[] lot = method == CostBasisMethod.FIFO ? reference.peekFirst() : reference.peekLast();
+                        int used = (int) Math.min(lot[0], left);
+                        realized -= lot[1] * used;
+                        lot[0] -= used;
+                        left -= used;
+                        if (lot[0] == 0) {
+                            if (method == CostBasisMethod.FIFO) {
+                                reference.removeFirst();
+                            } else {
+                                reference.removeLast();
+                            }
+                        }
+                    }
+                }
+                assertEquals(reference.size(), queue.lots());
+            }
+            assertEquals(reference.stream().mapToLong(lot -> lot[0]).sum(), queue.quantity());
+            assertEquals(reference.stream().mapToLong(lot -> lot[0] * lot[1]).sum(), queue.cost());
+            assertEquals(realized, queue.realized());
+        }
+    }
+
+    @Test
+    void averageCost_matchesBigDecimal() {
+        Random random = new Random(5);
+        LotQueue queue = new LotQueue(CostBasisMethod.AVERAGE_COST);
+        BigDecimal cost = BigDecimal.ZERO;
+        int quantity = 0;
+        for (int i = 0; i < 10_000; i++) {
+            long price = 1_000_000L + random.nextInt(500_000_000);
+            int shares = 1 + random.nextInt(50);
+            if (random.nextInt(3) > 0) {
+                queue.buy(shares, price);
+                cost = cost.add(BigDecimal.valueOf(price * shares));
+                quantity += shares;
+            } else if (quantity > 0) {
+                int sold = Math.min(shares, quantity);
+                queue.sell(sold, price);
+                BigDecimal soldCost = sold == quantity ? cost
+                        : cost.multiply(BigDecimal.valueOf(sold))
+                                .divide(BigDecimal.valueOf(quantity), 0, RoundingMode.HALF_UP);
+                cost = cost.subtract(soldCost);
+                quantity -= sold;
+            }
+            assertEquals(quantity, queue.quantity());
+            assertEquals(cost.longValueExact(), queue.cost());
+        }
+    }
+
+    private static LotPosition run(CostBasisMethod method) {
+        TaxLotEngine engine = new TaxLotEngine(method);
+        engine.apply("AAPL", TradeType.BUY, 10, new BigDecimal("180.00"));
+        engine.apply("AAPL", TradeType.BUY, 5, new BigDecimal("200.00"));
+        engine.apply("AAPL", TradeType.SELL, 3, new BigDecimal("210.00"));
+        return engine.getPositions().get("AAPL");
+    }
+}
@@ -0,0 +1,150 @@
+package com.apm.service;
+
+import com.apm.dto.TradeImportResult;
+import com.apm.repository.PositionSnapshotRepository;
+import com.apm.repository.TradeJdbcRepository;
+import com.apm.repository.TradeRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Unit tests for TradeImportService against an in-memory H2 trades table.
+ */
+@ExtendWith(MockitoExtension.class)
+class TradeImportServiceTest {
+
+    private static final UUID USER_ID = UUID.fromString("00000000-0000-0000-0000-000000000001");
+
+    @Mock
+    private TradeRepository tradeRepository;
+
+    @Mock
+    private PositionSnapshotRepository snapshotRepository;
+
+    private JdbcTemplate jdbcTemplate;
+    private PositionBook positionBook;
+    private TradeImportService importService;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:import-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE trades (id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, "
+                + "user_id UUID, ticker VARCHAR(10) NOT NULL, type VARCHAR(4) NOT NULL, "
+                + "quantity INTEGER NOT NULL, price NUMERIC(10, 2) NOT NULL, timestamp TIMESTAMP(6) NOT NULL, "
+                + "idempotency_key VARCHAR(100))");
+
+        positionBook = new PositionBook(tradeRepository, snapshotRepository);
+        importService = new TradeImportService(new TradeJdbcRepository(jdbcTemplate), positionBook,
+                new TransactionTemplate(new DataSourceTransactionManager(dataSource)),
+                new ObjectMapper().findAndRegisterModules(), 2, 1, 2, 1, new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        importService.destroy();
+        jdbcTemplate.execute("SHUTDOWN");
+    }
+
+    @Test
+    void importCsv_insertsValidRowsAndReportsRejectedOnes() throws IOException {
+        TradeImportResult result = importService.importCsv(USER_ID, upload(
+                "Ticker,Type,Quantity,Price,Timestamp\n"
+                        + "aapl,BUY,10,180.00,2024-01-02T10:00:00\n"
+                        + "AAPL,BUY,5,200.00,\n"
+                        + "AAPL,HOLD,1,1.00,\n"
+                        + "\n"
+                        + "MSFT,BUY,2,400.00,\n"
+                        + "AAPL,SELL,3,210.00,\n"
+                        + "MSFT,BUY,0,400.00,\n"));
+
+        assertEquals(4, result.getImported());
+        assertEquals(2, result.getFailed());
+        assertEquals(1, result.getErrors().size());
+        assertEquals(4, result.getErrors().get(0).getRow());
+        assertEquals("Invalid type 'HOLD'", result.getErrors().get(0).getMessage());
+
+        assertEquals(4, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM trades", Integer.class));
+        assertEquals("2024-01-02T10:00", jdbcTemplate.queryForObject(
+                "SELECT timestamp FROM trades WHERE quantity = 10", LocalDateTime.class).toString());
+        assertEquals(12, positionBook.getPositions(USER_ID).get("AAPL").getQuantity());
+        assertEquals(new BigDecimal("2800.00"), positionBook.getPositions(USER_ID).get("AAPL").getTotalCost());
+        assertEquals(2, positionBook.getPositions(USER_ID).get("MSFT").getQuantity());
+    }
+
+    @Test
+    void importCsv_roundsPricesToStoredScale() throws IOException {
+        TradeImportResult result = importService.importCsv(USER_ID, upload(
+                "ticker,type,quantity,price\n"
+                        + "AAPL,BUY,10,150.125\n"
+                        + "AAPL,BUY,1,0.004\n"));
+
+        assertEquals(1, result.getImported());
+        assertEquals("Price is required for imported trades", result.getErrors().get(0).getMessage());
+        assertEquals(new BigDecimal("150.13"), jdbcTemplate.queryForObject("SELECT price FROM trades",
+                BigDecimal.class));
+        assertEquals(new BigDecimal("1501.30"), positionBook.getPositions(USER_ID).get("AAPL").getTotalCost());
+    }
+
+    @Test
+    void importCsv_withoutRequiredColumn_isRejected() {
+        assertThrows(TradeImportException.class,
+                () -> importService.importCsv(USER_ID, upload("ticker,type,quantity\nAAPL,BUY,1\n")));
+    }
+
+    @Test
+    void importJson_skipsInvalidElements() throws IOException {
+        TradeImportResult result = importService.importJson(USER_ID, upload("["
+                + "{\"ticker\":\"NVDA\",\"type\":\"BUY\",\"quantity\":5,\"price\":450.00},"
+                + "{\"ticker\":\"NVDA\",\"type\":\"BUY\",\"quantity\":5},"
+                + "{\"ticker\":\"NVDA\",\"type\":\"SELL\",\"quantity\":2,\"price\":460.00}"
+                + "]"));
+
+        assertEquals(2, result.getImported());
+        assertEquals(1, result.getFailed());
+        assertEquals(2, result.getErrors().get(0).getRow());
+        assertEquals("Price is required for imported trades", result.getErrors().get(0).getMessage());
+        assertEquals(3, positionBook.getPositions(USER_ID).get("NVDA").getQuantity());
+    }
+
+    @Test
+    void importJson_truncatedUpload_keepsRowsBeforeTheError() throws IOException {
+        TradeImportResult result = importService.importJson(USER_ID, upload("["
+                + "{\"ticker\":\"NVDA\",\"type\":\"BUY\",\"quantity\":5,\"price\":450.00},"
+                + "{\"ticker\":"));
+
+        assertEquals(1, result.getImported());
+        assertEquals(1, result.getFailed());
+        assertEquals(2, result.getErrors().get(0).getRow());
+    }
+
+    @Test
+    void importJson_withoutArray_isRejected() {
+        assertThrows(TradeImportException.class,
+                () -> importService.importJson(USER_ID, upload("{\"ticker\":\"NVDA\"}")));
+    }
+
+    private static ByteArrayInputStream upload(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,78 @@
+package com.apm.service;
+
+import com.apm.model.User;
+import com.apm.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for UserLookupCache.
+ */
+@ExtendWith(MockitoExtension.class)
+class UserLookupCacheTest {
+
+    private static final String EMAIL = "trader@example.com";
+
+    @Mock
+    private UserRepository userRepository;
+
+    private UserLookupCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new UserLookupCache(userRepository, 100, Duration.ofMinutes(10), Duration.ofMillis(50),
+                new SimpleMeterRegistry());
+    }
+
+    @Test
+    void find_loadsUserOnce() {
+        User user = new User(EMAIL, "hash");
+        user.setId(UUID.randomUUID());
+        when(userRepository.findByEmail(EMAIL)).thenReturn(Optional.of(user));
+
+        assertEquals(new UserCredentials(user.getId(), EMAIL, "hash"), cache.find(EMAIL).orElseThrow());
+        assertTrue(cache.find(EMAIL).isPresent());
+
+        verify(userRepository).findByEmail(EMAIL);
+    }
+
+    @Test
+    void find_remembersUnknownEmailForNegativeTtl() throws InterruptedException {
+        when(userRepository.findByEmail(EMAIL)).thenReturn(Optional.empty());
+
+        assertFalse(cache.find(EMAIL).isPresent());
+        assertFalse(cache.find(EMAIL).isPresent());
+        verify(userRepository).findByEmail(EMAIL);
+
+        Thread.sleep(100);
+        assertFalse(cache.find(EMAIL).isPresent());
+        verify(userRepository, times(2)).findByEmail(EMAIL);
+    }
+
+    @Test
+    void invalidate_reloadsChangedUser() {
+        User user = new User(EMAIL, "old-hash");
+        when(userRepository.findByEmail(EMAIL)).thenReturn(Optional.of(user));
+        assertEquals("old-hash", cache.find(EMAIL).orElseThrow().passwordHash());
+
+        user.setPasswordHash("new-hash");
+        assertEquals("old-hash", cache.find(EMAIL).orElseThrow().passwordHash());
+        cache.invalidate(EMAIL);
+
+        assertEquals("new-hash", cache.find(EMAIL).orElseThrow().passwordHash());
+    }
+}
@@ -0,0 +1,145 @@
+package com.apm.service;
+
+import com.apm.model.User;
+import com.apm.repository.UserRepository;
+import com.apm.security.JwtUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for UserService.
+ */
+@ExtendWith(MockitoExtension.class)
+class UserServiceTest {
+
+    private static final String EMAIL = "trader@example.com";
+    private static final String PASSWORD = "secret-password!";
+
+    @Mock
+    private UserRepository userRepository;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private PasswordHasher passwordHasher;
+    private UserService userService;
+
+    @BeforeEach
+    void setUp() {
+        passwordHasher = new PasswordHasher(5, 1, 10, Duration.ofSeconds(5), meterRegistry);
+        JwtUtil jwtUtil = new JwtUtil("apm-secret-key-for-jwt-token-generation-min-256-bits", 60_000, 0,
+                meterRegistry);
+        UserLookupCache userLookupCache = new UserLookupCache(userRepository, 100, Duration.ofMinutes(10),
+                Duration.ofSeconds(30), meterRegistry);
+        userService = new UserService(userRepository, userLookupCache, passwordHasher, jwtUtil);
+    }
+
+    @AfterEach
+    void tearDown() {
+        passwordHasher.destroy();
+    }
+
+    @Test
+    void authenticateUser_keepsHashWithCurrentCost() {
+        User user = new User(EMAIL, passwordHasher.hash(PASSWORD));
+        when(userRepository.findByEmail(EMAIL)).thenReturn(Optional.of(user));
+
+        assertNotNull(userService.authenticateUser(EMAIL, PASSWORD));
+
+        verify(userRepository, never()).save(any());
+    }
+
+    @Test
+    void authenticateUser_rehashesWhenCostChanged() {
+        PasswordHasher oldHasher = new PasswordHasher(4, 1, 10, Duration.ofSeconds(5), meterRegistry);
+        String oldHash = oldHasher.hash(PASSWORD);
+        oldHasher.destroy();
+        User user = new User(EMAIL, oldHash);
+        user.setId(UUID.randomUUID());
+        when(userRepository.findByEmail(EMAIL)).thenReturn(Optional.of(user));
+        when(userRepository.findById(user.getId())).thenReturn(Optional.of(user));
+
+        assertNotNull(userService.authenticateUser(EMAIL, PASSWORD));
+
+        verify(userRepository).save(user);
+        assertTrue(user.getPasswordHash().startsWith("$2a$05$"));
+        assertTrue(passwordHasher.matches(PASSWORD, user.getPasswordHash()));
+    }
+
+    @Test
+    void authenticateUser_unknownEmailIsLookedUpOnce() {
+        when(userRepository.findByEmail(EMAIL)).thenReturn(Optional.empty());
+
+        for (int i = 0; i < 3; i++) {
+            assertThrows(IllegalArgumentException.class, () -> userService.authenticateUser(EMAIL, PASSWORD));
+        }
+
+        verify(userRepository).findByEmail(EMAIL);
+    }
+
+    @Test
+    void registerUser_makesNewUserVisibleToLogin() {
+        when(userRepository.findByEmail(EMAIL)).thenReturn(Optional.empty());
+        assertThrows(IllegalArgumentException.class, () -> userService.authenticateUser(EMAIL, PASSWORD));
+        when(userRepository.save(any(User.class))).thenAnswer(invocation -> {
+            User saved = invocation.getArgument(0);
+            when(userRepository.findByEmail(EMAIL)).thenReturn(Optional.of(saved));
+            return saved;
+        });
+
+        userService.registerUser(EMAIL, PASSWORD);
+
+        assertNotNull(userService.authenticateUser(EMAIL, PASSWORD));
+    }
+
+    @Test
+    void registerUser_rejectsKnownEmail() {
+        when(userRepository.findByEmail(EMAIL)).thenReturn(Optional.of(new User(EMAIL, "hash")));
+
+        assertThrows(IllegalArgumentException.class, () -> userService.registerUser(EMAIL, PASSWORD));
+
+        verify(userRepository, never()).save(any());
+    }
+
+    @Test
+    void registerUser_lostRaceForEmail_isRejectedAsKnownEmail() {
+        when(userRepository.findByEmail(EMAIL)).thenReturn(Optional.empty());
+        when(userRepository.save(any(User.class)))
+                .thenThrow(new DataIntegrityViolationException("uk_users_email"));
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> userService.registerUser(EMAIL, PASSWORD));
+
+        assertEquals("Email already registered", e.getMessage());
+    }
+
+    @Test
+    void authenticateUser_rejectsWrongPasswordWithoutRehash() {
+        PasswordHasher oldHasher = new PasswordHasher(4, 1, 10, Duration.ofSeconds(5), meterRegistry);
+        String oldHash = oldHasher.hash(PASSWORD);
+        oldHasher.destroy();
+        User user = new User(EMAIL, oldHash);
+        when(userRepository.findByEmail(EMAIL)).thenReturn(Optional.of(user));
+
+        assertThrows(IllegalArgumentException.class, () -> userService.authenticateUser(EMAIL, "wrong-password!"));
+
+        assertEquals(oldHash, user.getPasswordHash());
+        verify(userRepository, never()).save(any());
+    }
+}